@@ -0,0 +1,88 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.api.dto.ImportResultDTO;
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.service.BookService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads {@code batch} new books into a seeded database, once through
+ * {@link BookService#save(Book)} per book and once through
+ * {@link BookService#importBooks(java.util.Iterator)}. Every invocation uses
+ * fresh ISBNs so neither path hits the duplicate check. With
+ * {@code indexed=true} the ISBN filter answers those checks instead of the
+ * database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class BookImportBenchmark {
+
+  @Param({ "100000" })
+  int rows;
+
+  @Param({ "10000" })
+  int batch;
+
+  @Param({ "true", "false" })
+  boolean indexed;
+
+  LibraryDatabase database;
+  BookService service;
+
+  List<Book> books;
+  int run;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    database = LibraryDatabase.start(rows, 0, "application.search.index.enabled=" + indexed);
+    service = database.getBean(BookService.class);
+  }
+
+  @Setup(Level.Invocation)
+  public void prepareBooks() {
+    books = new ArrayList<>(batch);
+    for (int i = 0; i < batch; i++) {
+      books.add(Book.builder().title("Imported " + i).author("Publisher").isbn("IMPORT-" + run + "-" + i).build());
+    }
+    run++;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  @Benchmark
+  public int saveOneByOne() {
+    for (Book book : books) {
+      service.save(book);
+    }
+    return books.size();
+  }
+
+  @Benchmark
+  public ImportResultDTO importBooks() {
+    return service.importBooks(books.iterator());
+  }
+}
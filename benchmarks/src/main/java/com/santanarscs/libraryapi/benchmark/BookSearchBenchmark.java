@@ -0,0 +1,78 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.service.BookService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * Catalogue search through {@code BookService.find} with the trigram index
+ * on and off. With {@code indexed=false} every search is the contains query
+ * on the table; 10M rows need a larger heap than the default here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BookSearchBenchmark {
+
+  private static final int PAGE_SIZE = 20;
+
+  @Param({ "100000", "1000000", "10000000" })
+  int rows;
+
+  @Param({ "true", "false" })
+  boolean indexed;
+
+  LibraryDatabase database;
+  BookService service;
+  int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    database = LibraryDatabase.start(rows, 0, "application.search.index.enabled=" + indexed);
+    service = database.getBean(BookService.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  /**
+   * A different number each call, matching about one title in a thousand.
+   */
+  @Benchmark
+  public Page<Book> findByTitle() {
+    return service.find(Book.builder().title("itle " + (100 + next++ % 900)).build(), PageRequest.of(0, PAGE_SIZE));
+  }
+
+  @Benchmark
+  public Page<Book> findByTitleAndAuthor() {
+    return service.find(Book.builder().title("itle " + (100 + next++ % 900)).author("hor 4").build(),
+        PageRequest.of(0, PAGE_SIZE));
+  }
+
+  @Benchmark
+  public Page<Book> findByIsbn() {
+    return service.find(Book.builder().isbn("isbn-" + (1000 + next++ % 9000)).build(), PageRequest.of(0, PAGE_SIZE));
+  }
+}
@@ -0,0 +1,71 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.service.BookService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BookServiceBenchmark {
+
+  private static final int PAGE_SIZE = 20;
+
+  @Param({ "10000", "100000", "1000000", "10000000" })
+  int rows;
+
+  LibraryDatabase database;
+  BookService service;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    database = LibraryDatabase.start(rows, rows);
+    service = database.getBean(BookService.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  @Benchmark
+  public Page<Book> findFirstPage() {
+    return service.find(new Book(), PageRequest.of(0, PAGE_SIZE));
+  }
+
+  @Benchmark
+  public Page<Book> findDeepPage() {
+    return service.find(new Book(), PageRequest.of(rows / PAGE_SIZE / 2, PAGE_SIZE));
+  }
+
+  @Benchmark
+  public Slice<Book> findDeepPageByCursor() {
+    return service.findAfter(new Book(), rows / 2, PAGE_SIZE);
+  }
+
+  @Benchmark
+  public Page<Book> findByTitle() {
+    return service.find(Book.builder().title("itle 42").build(), PageRequest.of(0, PAGE_SIZE));
+  }
+}
@@ -0,0 +1,103 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.service.search.BookSuggestIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Typeahead lookups on a {@link BookSuggestIndex} filled with generated
+ * titles, without the database. The setup prints the heap the index retains
+ * per million titles, measured after a full collection, next to the
+ * estimate the memory budget is checked against.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BookSuggestBenchmark {
+
+  private static final int LIMIT = 10;
+
+  private static final String[] WORDS = { "the", "lord", "rings", "dune", "night", "shadow", "river", "house",
+      "garden", "winter", "empire", "secret", "silent", "golden", "last", "first", "city", "ocean", "fire",
+      "stone", "glass", "iron", "king", "queen", "war", "peace", "storm", "light", "dark", "dream", "road", "song" };
+
+  @Param({ "100000", "1000000" })
+  int titles;
+
+  BookSuggestIndex index;
+  String[] prefixes;
+  int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(42);
+    long before = usedHeap();
+    index = new BookSuggestIndex(DataSize.ofGigabytes(2));
+    index.clear();
+    for (long id = 1; id <= titles; id++) {
+      index.load(Book.builder()
+          .id(id)
+          .title(word(random) + " " + word(random) + " " + word(random) + " " + id)
+          .author("Author " + random.nextInt(titles / 10 + 1))
+          .build());
+    }
+    index.ready();
+    long retained = usedHeap() - before;
+    long perMillion = 1_000_000L / titles;
+    System.out.printf("%n%d titles: %d MB retained, %d MB estimated, per million titles%n", titles,
+        retained * perMillion / (1024 * 1024), index.estimatedBytes() * perMillion / (1024 * 1024));
+
+    prefixes = new String[1024];
+    for (int i = 0; i < prefixes.length; i++) {
+      String word = word(random);
+      prefixes[i] = word.substring(0, 1 + random.nextInt(word.length()));
+    }
+  }
+
+  @Benchmark
+  public List<String> suggestTitles() {
+    return index.suggestTitles(prefixes[next++ & 1023], LIMIT);
+  }
+
+  @Benchmark
+  public List<String> suggestLongTitlePrefix() {
+    return index.suggestTitles("the " + prefixes[next++ & 1023], LIMIT);
+  }
+
+  @Benchmark
+  public List<String> suggestAuthors() {
+    return index.suggestAuthors("Author " + (next++ & 1023), LIMIT);
+  }
+
+  private static String word(Random random) {
+    return WORDS[random.nextInt(WORDS.length)];
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,86 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.santanarscs.libraryapi.model.repository.JobCheckpointRepository;
+import com.santanarscs.libraryapi.service.LoanService;
+import com.santanarscs.libraryapi.service.ScheduleService;
+import com.santanarscs.libraryapi.service.lease.JobLeases;
+import com.santanarscs.libraryapi.service.mail.LateLoanTemplate;
+import com.santanarscs.libraryapi.service.overdue.OverdueTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * A full run of the nightly late loan mail over 100k open loans, most of them
+ * late, with {@code parallelism} threads walking {@code partitions} id
+ * ranges. Digests are rendered and counted instead of queued, so the run
+ * measures reading, grouping, rendering and checkpointing. The checkpoints
+ * are cleared before every invocation, so each one starts a new run instead
+ * of finding today's run finished.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class LateLoanScanBenchmark {
+
+  private static final int BOOKS = 1_000_000;
+  private static final int LOANS = 100_000;
+  private static final int CHUNK_SIZE = 500;
+
+  @Param({ "1", "8" })
+  int partitions;
+
+  @Param({ "1", "4" })
+  int parallelism;
+
+  LibraryDatabase database;
+  ScheduleService service;
+  LongAdder mails = new LongAdder();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    database = LibraryDatabase.start(BOOKS, LOANS);
+    service = new ScheduleService(database.getBean(LoanService.class),
+        messages -> mails.add(messages.size()), database.getBean(JobCheckpointRepository.class),
+        database.getBean(JobLeases.class), database.getBean(OverdueTracker.class),
+        database.getBean(LateLoanTemplate.class), new SimpleMeterRegistry(),
+        CHUNK_SIZE, partitions, parallelism, false, false, "{customer}:{#loans} {title}{/loans}");
+    service.start();
+  }
+
+  @Setup(Level.Invocation)
+  public void clearCheckpoints() {
+    database.jdbc().update("delete from job_checkpoint");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    service.stop();
+    database.close();
+  }
+
+  @Benchmark
+  public long sendMailToLateLoans() {
+    service.sendMailToLateLoans();
+    return mails.sum();
+  }
+}
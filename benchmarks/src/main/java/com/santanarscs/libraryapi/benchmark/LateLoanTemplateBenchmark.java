@@ -0,0 +1,90 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.service.mail.LateLoanTemplate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders late loan digests of one to five loans with the template from
+ * {@code application.properties}. {@code compiled} goes through
+ * {@link LateLoanTemplate}; {@code formatted} builds the same text with
+ * {@code String.format} and a {@code DateTimeFormatter}, as a template
+ * interpreted on every message would. Run with {@code -prof gc} to see the
+ * bytes allocated per digest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LateLoanTemplateBenchmark {
+
+  private static final String TEMPLATE = "Olá {customer},\n\nAtenção você tem {count} empréstimo(s) atrasado(s):\n"
+      + "{#loans}- {title}, devolução em {dueDate}: {daysOverdue} dia(s) de atraso\n{/loans}";
+  private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+  private static final LocalDate TODAY = LocalDate.of(2022, 6, 30);
+  private static final int CUSTOMERS = 4096;
+
+  LateLoanTemplate template;
+  String[] customers;
+  List<List<Loan>> loans;
+  int next;
+
+  @Setup
+  public void setup() {
+    template = new LateLoanTemplate(TEMPLATE);
+    Random random = new Random(42);
+    customers = new String[CUSTOMERS];
+    loans = new ArrayList<>(CUSTOMERS);
+    for (int customer = 0; customer < CUSTOMERS; customer++) {
+      customers[customer] = "Customer " + customer;
+      List<Loan> customerLoans = new ArrayList<>();
+      for (int loan = 0, count = 1 + random.nextInt(5); loan < count; loan++) {
+        customerLoans.add(Loan.builder()
+            .book(Book.builder().title("Title " + random.nextInt(1_000_000)).build())
+            .dueDate(TODAY.minusDays(1 + random.nextInt(30)))
+            .build());
+      }
+      loans.add(customerLoans);
+    }
+  }
+
+  @Benchmark
+  public String compiled() {
+    int customer = next++ & (CUSTOMERS - 1);
+    return template.render(customers[customer], loans.get(customer), TODAY);
+  }
+
+  @Benchmark
+  public String formatted() {
+    int customer = next++ & (CUSTOMERS - 1);
+    List<Loan> customerLoans = loans.get(customer);
+    String message = String.format("Olá %s,\n\nAtenção você tem %d empréstimo(s) atrasado(s):\n", customers[customer],
+        customerLoans.size());
+    for (Loan loan : customerLoans) {
+      message += String.format("- %s, devolução em %s: %d dia(s) de atraso\n", loan.getBook().getTitle(),
+          DATE.format(loan.getDueDate()), ChronoUnit.DAYS.between(loan.getDueDate(), TODAY));
+    }
+    return message;
+  }
+}
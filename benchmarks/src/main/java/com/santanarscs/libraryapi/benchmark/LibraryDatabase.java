@@ -0,0 +1,94 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import com.santanarscs.libraryapi.LibraryApiApplication;
+import com.santanarscs.libraryapi.service.search.BookIndexer;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Boots the application against a private in-memory H2 database and fills it
+ * with {@code books} books and {@code loans} loans.
+ *
+ * Loans are spread round-robin over the books. The last tenth of the book
+ * count stays open, everything else is returned, and loan dates go back up to
+ * 30 days, each due four days after, so a share of the open loans is late. Books get explicit ids and
+ * {@code book_seq} is moved past them, leaving room for the pooled optimizer
+ * which hands out the block below each sequence value. H2's result reuse is
+ * turned off so repeating a query measures the query, not a cache hit. The
+ * book indexes are rebuilt once the rows are in, as they would be at startup.
+ */
+public final class LibraryDatabase implements AutoCloseable {
+
+  private final ConfigurableApplicationContext context;
+  private final JdbcTemplate jdbc;
+
+  private LibraryDatabase(ConfigurableApplicationContext context) {
+    this.context = context;
+    this.jdbc = context.getBean(JdbcTemplate.class);
+  }
+
+  /**
+   * Extra {@code name=value} properties are passed as command line arguments
+   * so they win over {@code application.properties}.
+   */
+  public static LibraryDatabase start(int books, int loans, String... properties) {
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApiApplication.class)
+        .web(WebApplicationType.NONE)
+        .logStartupInfo(false)
+        .properties(
+            "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID()
+                + ";DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE",
+            "spring.jpa.show-sql=false",
+            "logging.level.root=WARN")
+        .run(Arrays.stream(properties).map(property -> "--" + property).toArray(String[]::new));
+
+    LibraryDatabase database = new LibraryDatabase(context);
+    database.seed(books, loans);
+    context.getBean(BookIndexer.class).rebuild();
+    return database;
+  }
+
+  private void seed(int books, int loans) {
+    int open = Math.max(1, books / 10);
+
+    jdbc.update("insert into book (id, title, author, isbn) "
+        + "select x, 'Title ' || x, 'Author ' || mod(x, 1000), 'ISBN-' || x from system_range(1, ?)", books);
+    jdbc.execute("alter sequence book_seq restart with " + (books + 100));
+
+    jdbc.update("insert into loan (customer, customer_email, id_book, loan_date, due_date, returned) "
+        + "select 'Customer ' || mod(x, 50000), 'customer' || mod(x, 50000) || '@example.com', "
+        + "mod(x - 1, ?) + 1, dateadd('DAY', -mod(x, 30), current_date), "
+        + "dateadd('DAY', 4 - mod(x, 30), current_date), x <= ? "
+        + "from system_range(1, ?)", books, loans - open, loans);
+
+    jdbc.execute("analyze");
+  }
+
+  /**
+   * Ids of books without an open loan, in id order.
+   */
+  public List<Long> freeBookIds(int limit) {
+    return jdbc.queryForList("select b.id from book b where not exists (select 1 from loan l where l.id_book = b.id "
+        + "and (l.returned is null or l.returned = false)) order by b.id limit ?", Long.class, limit);
+  }
+
+  public <T> T getBean(Class<T> type) {
+    return context.getBean(type);
+  }
+
+  public JdbcTemplate jdbc() {
+    return jdbc;
+  }
+
+  @Override
+  public void close() {
+    context.close();
+  }
+}
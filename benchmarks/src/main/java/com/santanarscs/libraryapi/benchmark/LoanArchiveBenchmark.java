@@ -0,0 +1,107 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
+import com.santanarscs.libraryapi.api.dto.LoanFilterDTO;
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+import com.santanarscs.libraryapi.service.LoanArchiveService;
+import com.santanarscs.libraryapi.service.LoanService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+/**
+ * The open loan queries over a long loan history, ten loans per book with
+ * all but the last tenth of the books returned, before and after
+ * {@link LoanArchiveService} moved the returned loans out of the loan table.
+ * The archive age is set to zero so every returned loan is archived. The
+ * {@code history} benchmarks search with {@code includeArchived}, which reads
+ * both tables either way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LoanArchiveBenchmark {
+
+  private static final int PAGE_SIZE = 20;
+
+  @Param({ "100000" })
+  int rows;
+
+  @Param({ "false", "true" })
+  boolean archived;
+
+  LibraryDatabase database;
+  LoanService service;
+  LoanRepository repository;
+
+  Book returnedBook;
+  Book openBook;
+  LoanFilterDTO filter;
+  LoanFilterDTO historyFilter;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    int books = rows / 10;
+    database = LibraryDatabase.start(books, rows, "application.loans.archive.after=0d");
+    service = database.getBean(LoanService.class);
+    repository = database.getBean(LoanRepository.class);
+    if (archived) {
+      long start = System.nanoTime();
+      long moved = database.getBean(LoanArchiveService.class).archive(LocalDate.now());
+      database.jdbc().execute("analyze");
+      System.out.printf("%nArchived %d loans in %d ms%n", moved, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    returnedBook = Book.builder().id(42L).build();
+    openBook = Book.builder().id((long) books).build();
+    filter = LoanFilterDTO.builder().isbn("ISBN-42").customer("Customer 42").build();
+    historyFilter = LoanFilterDTO.builder().isbn("ISBN-42").customer("Customer 42").includeArchived(true).build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  @Benchmark
+  public boolean existsByBookAndNotReturned() {
+    return repository.existsByBookAndNotReturned(returnedBook) | repository.existsByBookAndNotReturned(openBook);
+  }
+
+  @Benchmark
+  public Slice<Loan> getLateLoans() {
+    return service.getLateLoans(LocalDate.now(), 0, PAGE_SIZE);
+  }
+
+  @Benchmark
+  public Page<LoanDTO> findByIsbnOrCustomer() {
+    return service.find(filter, PageRequest.of(0, PAGE_SIZE));
+  }
+
+  @Benchmark
+  public Page<LoanDTO> findByIsbnOrCustomerHistory() {
+    return service.find(historyFilter, PageRequest.of(0, PAGE_SIZE));
+  }
+}
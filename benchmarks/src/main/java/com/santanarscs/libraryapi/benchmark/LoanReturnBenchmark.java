@@ -0,0 +1,89 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.api.dto.LoanReturnDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnResultDTO;
+import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.service.LoanService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Returns {@code batch} open loans, once the way {@code PATCH /api/loans/{id}}
+ * does it for each loan (load, set, merge) and once through
+ * {@link LoanService#returnAll(List)}. The loans are reopened with plain SQL
+ * after every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class LoanReturnBenchmark {
+
+  @Param({ "100000" })
+  int rows;
+
+  @Param({ "1000" })
+  int batch;
+
+  LibraryDatabase database;
+  LoanService service;
+
+  long firstOpenLoan;
+  List<LoanReturnDTO> loans;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    database = LibraryDatabase.start(rows, rows);
+    service = database.getBean(LoanService.class);
+
+    firstOpenLoan = database.jdbc().queryForObject("select min(id) from loan where returned = false", Long.class);
+    loans = new ArrayList<>(batch);
+    for (long id = firstOpenLoan; id < firstOpenLoan + batch; id++) {
+      loans.add(LoanReturnDTO.builder().id(id).build());
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void reopenLoans() {
+    database.jdbc().update("update loan set returned = false where id between ? and ?", firstOpenLoan,
+        firstOpenLoan + batch - 1);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  @Benchmark
+  public int returnOneByOne() {
+    for (LoanReturnDTO dto : loans) {
+      Loan loan = service.getById(dto.getId()).orElseThrow();
+      loan.setReturned(true);
+      service.update(loan);
+    }
+    return loans.size();
+  }
+
+  @Benchmark
+  public List<LoanReturnResultDTO> returnAll() {
+    return service.returnAll(loans);
+  }
+}
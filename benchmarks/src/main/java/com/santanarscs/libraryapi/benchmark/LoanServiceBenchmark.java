@@ -0,0 +1,104 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
+import com.santanarscs.libraryapi.api.dto.LoanFilterDTO;
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.service.LoanService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LoanServiceBenchmark {
+
+  private static final int PAGE_SIZE = 20;
+
+  @Param({ "10000", "100000", "1000000", "10000000" })
+  int rows;
+
+  LibraryDatabase database;
+  LoanService service;
+
+  Book[] freeBooks;
+  int next;
+  Loan saved;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    database = LibraryDatabase.start(rows, rows);
+    service = database.getBean(LoanService.class);
+
+    List<Long> ids = database.freeBookIds(10_000);
+    freeBooks = ids.stream().map(id -> Book.builder().id(id).build()).toArray(Book[]::new);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  /**
+   * Returns the loan created by {@link #save()} so its book can be loaned
+   * again on a later invocation.
+   */
+  @TearDown(Level.Invocation)
+  public void returnSavedLoan() {
+    if (saved != null) {
+      database.jdbc().update("update loan set returned = true where id = ?", saved.getId());
+      saved = null;
+    }
+  }
+
+  @Benchmark
+  public Loan save() {
+    Book book = freeBooks[next++ % freeBooks.length];
+    saved = service.save(Loan.builder()
+        .book(book)
+        .customer("Benchmark")
+        .customerEmail("benchmark@example.com")
+        .loanDate(LocalDate.now())
+        .build());
+    return saved;
+  }
+
+  @Benchmark
+  public Page<LoanDTO> findByIsbnOrCustomer() {
+    LoanFilterDTO filter = LoanFilterDTO.builder().isbn("ISBN-42").customer("Customer 42").build();
+    return service.find(filter, PageRequest.of(0, PAGE_SIZE));
+  }
+
+  @Benchmark
+  public Slice<Loan> getLateLoansAfterCursor() {
+    return service.getLateLoans(LocalDate.now(), rows / 2, PAGE_SIZE);
+  }
+
+  @Benchmark
+  public Slice<LoanDTO> findByIsbnOrCustomerAfterCursor() {
+    LoanFilterDTO filter = LoanFilterDTO.builder().isbn("ISBN-42").customer("Customer 42").build();
+    return service.findAfter(filter, rows / 2, PAGE_SIZE);
+  }
+}
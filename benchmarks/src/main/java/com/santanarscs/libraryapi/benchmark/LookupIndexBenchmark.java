@@ -0,0 +1,96 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.repository.BookRepository;
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Repository lookups backed by the indexes of the V2 migration that are
+ * still in place. With {@code indexed=false} the indexes, and the loan
+ * foreign key that reuses one of them, are dropped after seeding, which gives
+ * the scan baseline. The setup checks the H2 query plans so a run fails fast
+ * when a lookup does not use the index it is meant to measure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LookupIndexBenchmark {
+
+  private static final String[] INDEXES = {
+      "ux_book_isbn", "ix_loan_book_returned", "ix_loan_customer" };
+
+  @Param({ "10000", "100000", "1000000" })
+  int rows;
+
+  @Param({ "true", "false" })
+  boolean indexed;
+
+  LibraryDatabase database;
+  BookRepository bookRepository;
+  LoanRepository loanRepository;
+
+  int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    database = LibraryDatabase.start(rows, rows);
+    bookRepository = database.getBean(BookRepository.class);
+    loanRepository = database.getBean(LoanRepository.class);
+
+    if (!indexed) {
+      database.jdbc().execute("alter table loan drop constraint fk_loan_book");
+      for (String index : INDEXES) {
+        database.jdbc().execute("drop index " + index);
+      }
+    }
+    expectPlan("select id from book where isbn = 'ISBN-42'", "UX_BOOK_ISBN");
+    expectPlan("select count(id) from loan where id_book = 42 and returned = false", "IX_LOAN_BOOK_RETURNED");
+    expectPlan("select id from loan where customer = 'Customer 42'", "IX_LOAN_CUSTOMER");
+  }
+
+  private void expectPlan(String sql, String index) {
+    String plan = database.jdbc().queryForObject("explain " + sql, String.class);
+    if (plan.contains(index) != indexed) {
+      throw new IllegalStateException("Unexpected plan for indexed=" + indexed + ": " + plan);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  private long nextId() {
+    next = next % rows + 1;
+    return next;
+  }
+
+  @Benchmark
+  public boolean existsByIsbn() {
+    return bookRepository.existsByIsbn("ISBN-" + nextId());
+  }
+
+  @Benchmark
+  public boolean existsByBookAndNotReturned() {
+    return loanRepository.existsByBookAndNotReturned(Book.builder().id(nextId()).build());
+  }
+}
@@ -0,0 +1,92 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.api.dto.BookDTO;
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
+import com.santanarscs.libraryapi.api.mapper.BookMapper;
+import com.santanarscs.libraryapi.api.mapper.LoanMapper;
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+
+import org.mapstruct.factory.Mappers;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-item cost of the entity and DTO conversions done by
+ * {@code BookController} and {@code LoanController}. The {@code modelMapper*}
+ * benchmarks keep the reflective baseline the controllers used before the
+ * generated mappers; a page costs roughly page size times the item score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MappingBenchmark {
+
+  ModelMapper modelMapper;
+  BookMapper bookMapper;
+  LoanMapper loanMapper;
+
+  BookDTO bookDTO;
+  Book book;
+  Loan loan;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    modelMapper = new ModelMapper();
+    bookMapper = Mappers.getMapper(BookMapper.class);
+    loanMapper = Mappers.getMapper(LoanMapper.class);
+
+    bookDTO = BookDTO.builder().title("My Book").author("Jhon Doe").isbn("001").build();
+    book = Book.builder().id(1L).title("My Book").author("Jhon Doe").isbn("001").build();
+    loan = Loan.builder().id(1L).book(book).customer("Jhon Doe").customerEmail("jhon@example.com")
+        .loanDate(LocalDate.now()).returned(false).build();
+  }
+
+  @Benchmark
+  public Book modelMapperBookFromDTO() {
+    return modelMapper.map(bookDTO, Book.class);
+  }
+
+  @Benchmark
+  public Book generatedBookFromDTO() {
+    return bookMapper.toEntity(bookDTO);
+  }
+
+  @Benchmark
+  public BookDTO modelMapperBookToDTO() {
+    return modelMapper.map(book, BookDTO.class);
+  }
+
+  @Benchmark
+  public BookDTO generatedBookToDTO() {
+    return bookMapper.toDTO(book);
+  }
+
+  @Benchmark
+  public LoanDTO modelMapperLoanToDTO() {
+    LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
+    loanDTO.setBook(modelMapper.map(loan.getBook(), BookDTO.class));
+    return loanDTO;
+  }
+
+  @Benchmark
+  public LoanDTO generatedLoanToDTO() {
+    return loanMapper.toDTO(loan);
+  }
+}
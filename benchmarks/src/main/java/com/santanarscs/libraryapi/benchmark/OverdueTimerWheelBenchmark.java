@@ -0,0 +1,117 @@
+package com.santanarscs.libraryapi.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.service.overdue.TimerWheel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The {@link TimerWheel} behind {@code OverdueTracker}, without the
+ * database, at the production shape: one minute ticks, 64 slots, 4 levels,
+ * due dates spread over the next 30 days. {@code scheduleAll} loads every
+ * loan into an empty wheel, as the startup load does; {@code advanceMonth}
+ * ticks a full wheel through 31 days, firing every loan; {@code reschedule}
+ * untracks one loan and tracks another on a full wheel, as returns and new
+ * loans do. The setup prints the heap the wheel retains per million loans,
+ * measured after a full collection, next to its own estimate.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OverdueTimerWheelBenchmark {
+
+  private static final long TICK = TimeUnit.MINUTES.toMillis(1);
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+  @Param({ "1000000" })
+  int loans;
+
+  long[] deadlines;
+  TimerWheel wheel;
+  long fired;
+  int next;
+
+  @Setup(Level.Trial)
+  public void deadlines() {
+    Random random = new Random(42);
+    deadlines = new long[loans];
+    for (int i = 0; i < loans; i++) {
+      deadlines[i] = (1 + random.nextInt(30)) * DAY;
+    }
+    long before = usedHeap();
+    TimerWheel full = fill();
+    long retained = usedHeap() - before;
+    System.out.printf("%n%d loans: %d MB retained, %d MB estimated, per million loans%n", loans,
+        retained * 1_000_000L / loans / (1024 * 1024), full.estimatedBytes() * 1_000_000L / loans / (1024 * 1024));
+  }
+
+  @Setup(Level.Iteration)
+  public void wheel() {
+    wheel = fill();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 5)
+  public TimerWheel scheduleAll() {
+    return fill();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 5)
+  public long advanceMonth() {
+    long before = fired;
+    for (long now = TICK; now <= 31 * DAY; now += TICK) {
+      wheel.advance(now, id -> fired++);
+    }
+    if (fired - before != loans) {
+      throw new IllegalStateException("Fired " + (fired - before) + " of " + loans + " loans");
+    }
+    return fired;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Warmup(iterations = 3, time = 2)
+  @Measurement(iterations = 5, time = 2)
+  public boolean reschedule() {
+    int loan = next++ % loans;
+    boolean cancelled = wheel.cancel(loan + 1);
+    wheel.schedule(loan + 1, deadlines[(loan * 31) % loans]);
+    return cancelled;
+  }
+
+  private TimerWheel fill() {
+    TimerWheel wheel = new TimerWheel(TICK, 64, 4, 0);
+    for (int i = 0; i < loans; i++) {
+      wheel.schedule(i + 1, deadlines[i]);
+    }
+    return wheel;
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -1,8 +1,12 @@
 package com.santanarscs.libraryapi;
 
-import org.modelmapper.ModelMapper;
+import com.santanarscs.libraryapi.api.mapper.BookMapper;
+import com.santanarscs.libraryapi.api.mapper.LoanMapper;
+
+import org.mapstruct.factory.Mappers;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
@@ -12,6 +16,7 @@ import io.swagger.v3.oas.annotations.servers.Server;
 
 @SpringBootApplication
 @EnableScheduling
+@EnableCaching
 @OpenAPIDefinition(
 		info = @Info(title = "Library API", version = "1.0.0", description = "Library Api for control books and loans"),
 		servers = {
@@ -21,8 +26,13 @@ import io.swagger.v3.oas.annotations.servers.Server;
 public class LibraryApiApplication {
 
 	@Bean
-	public ModelMapper modelMapper() {
-		return new ModelMapper();
+	public BookMapper bookMapper() {
+		return Mappers.getMapper(BookMapper.class);
+	}
+
+	@Bean
+	public LoanMapper loanMapper() {
+		return Mappers.getMapper(LoanMapper.class);
 	}
 
 	public static void main(String[] args) {
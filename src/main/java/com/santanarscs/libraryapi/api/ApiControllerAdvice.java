@@ -3,6 +3,7 @@ package com.santanarscs.libraryapi.api;
 import com.santanarscs.libraryapi.api.exception.ApiErrors;
 import com.santanarscs.libraryapi.exception.BusinessException;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -12,9 +13,17 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.server.ResponseStatusException;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @RestControllerAdvice
 public class ApiControllerAdvice {
 
+  private final MeterRegistry meterRegistry;
+
+  public ApiControllerAdvice(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
   @ExceptionHandler(MethodArgumentNotValidException.class)
   @ResponseStatus(HttpStatus.BAD_REQUEST)
   public ApiErrors handleValidationExcepitons(MethodArgumentNotValidException ex) {
@@ -22,9 +31,14 @@ public class ApiControllerAdvice {
     return new ApiErrors(bindingResult);
   }
 
+  /**
+   * Counted by message: business rules have a handful of fixed messages, so
+   * the tag stays bounded.
+   */
   @ExceptionHandler(BusinessException.class)
   @ResponseStatus(HttpStatus.BAD_REQUEST)
   public ApiErrors handleBussinessExcepitons(BusinessException ex) {
+    meterRegistry.counter("business.rejections", "reason", String.valueOf(ex.getMessage())).increment();
     return new ApiErrors(ex);
   }
 
@@ -33,4 +47,13 @@ public class ApiControllerAdvice {
   public ResponseEntity<ApiErrors> handleResponseStatusException(ResponseStatusException ex) {
     return new ResponseEntity(new ApiErrors(ex), ex.getStatus());
   }
+
+  /**
+   * Another request updated the resource since it was read.
+   */
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  public ResponseEntity<ApiErrors> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+    return handleResponseStatusException(
+        new ResponseStatusException(HttpStatus.CONFLICT, "Resource was changed by another request"));
+  }
 }
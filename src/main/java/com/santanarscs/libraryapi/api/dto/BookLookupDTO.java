@@ -0,0 +1,16 @@
+package com.santanarscs.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookLookupDTO {
+  private String key;
+  private boolean found;
+  private BookDTO book;
+}
@@ -0,0 +1,19 @@
+package com.santanarscs.libraryapi.api.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+  private List<T> content;
+  private int size;
+  private String nextCursor;
+  private Long totalElements;
+}
@@ -0,0 +1,18 @@
+package com.santanarscs.libraryapi.api.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResultDTO {
+  private long imported;
+  private long failed;
+  private List<ImportErrorDTO> errors;
+}
@@ -0,0 +1,15 @@
+package com.santanarscs.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanCountDTO {
+  private String key;
+  private long loans;
+}
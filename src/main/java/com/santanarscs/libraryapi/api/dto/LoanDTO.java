@@ -20,4 +20,12 @@ public class LoanDTO {
   @NotEmpty
   private String email;
   private BookDTO book;
+
+  /**
+   * Used by the loan search queries to project a row straight into the DTO,
+   * without loading the loan or its book as entities.
+   */
+  public LoanDTO(Long id, String customer, String email, Long bookId, String title, String author, String isbn) {
+    this(String.valueOf(id), isbn, customer, email, new BookDTO(bookId, title, author, isbn));
+  }
 }
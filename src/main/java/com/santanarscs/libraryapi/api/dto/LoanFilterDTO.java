@@ -12,4 +12,8 @@ import lombok.NoArgsConstructor;
 public class LoanFilterDTO {
   private String isbn;
   private String customer;
+  /**
+   * Also search the loans moved to the archive.
+   */
+  private boolean includeArchived;
 }
@@ -0,0 +1,19 @@
+package com.santanarscs.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A loan to return. When the version is given the loan is only returned if
+ * it is still at that version, the one the client read it at.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanReturnDTO {
+  private Long id;
+  private Long version;
+}
@@ -0,0 +1,19 @@
+package com.santanarscs.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanReturnResultDTO {
+  private Long id;
+  private Status status;
+
+  public enum Status {
+    RETURNED, ALREADY_RETURNED, CONFLICT, NOT_FOUND
+  }
+}
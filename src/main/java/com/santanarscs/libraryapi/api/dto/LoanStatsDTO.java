@@ -0,0 +1,24 @@
+package com.santanarscs.libraryapi.api.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanStatsDTO {
+  private long openLoans;
+  private long overdueLoans;
+  private long totalLoans;
+  private LocalDateTime takenAt;
+  /**
+   * When the counters were last checked against the database, null until
+   * the first check after startup is done.
+   */
+  private LocalDateTime reconciledAt;
+}
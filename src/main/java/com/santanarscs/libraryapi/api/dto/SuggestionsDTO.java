@@ -0,0 +1,17 @@
+package com.santanarscs.libraryapi.api.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionsDTO {
+  private List<String> titles;
+  private List<String> authors;
+}
@@ -0,0 +1,17 @@
+package com.santanarscs.libraryapi.api.mapper;
+
+import com.santanarscs.libraryapi.api.dto.BookDTO;
+import com.santanarscs.libraryapi.model.entity.Book;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper
+public interface BookMapper {
+
+  BookDTO toDTO(Book book);
+
+  @Mapping(target = "loans", ignore = true)
+  @Mapping(target = "version", ignore = true)
+  Book toEntity(BookDTO dto);
+}
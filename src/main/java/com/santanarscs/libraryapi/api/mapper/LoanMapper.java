@@ -0,0 +1,24 @@
+package com.santanarscs.libraryapi.api.mapper;
+
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
+import com.santanarscs.libraryapi.model.entity.Loan;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(uses = BookMapper.class)
+public interface LoanMapper {
+
+  @Mapping(target = "isbn", source = "book.isbn")
+  @Mapping(target = "email", source = "customerEmail")
+  LoanDTO toDTO(Loan loan);
+
+  @Mapping(target = "id", ignore = true)
+  @Mapping(target = "book", ignore = true)
+  @Mapping(target = "loanDate", ignore = true)
+  @Mapping(target = "dueDate", ignore = true)
+  @Mapping(target = "returned", ignore = true)
+  @Mapping(target = "version", ignore = true)
+  @Mapping(target = "customerEmail", source = "email")
+  Loan toEntity(LoanDTO dto);
+}
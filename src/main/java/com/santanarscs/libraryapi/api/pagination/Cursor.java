@@ -0,0 +1,53 @@
+package com.santanarscs.libraryapi.api.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Opaque keyset cursor. The token wraps the id of the last row of a page so
+ * the next page can seek straight to {@code id > lastId} instead of skipping
+ * rows with an offset.
+ */
+public final class Cursor {
+
+  public static final int MAX_SIZE = 2000;
+
+  private static final String PREFIX = "id:";
+
+  private Cursor() {
+  }
+
+  public static String encode(Long lastId) {
+    byte[] value = (PREFIX + lastId).getBytes(StandardCharsets.UTF_8);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+  }
+
+  /**
+   * Returns the id to seek after, or {@code 0} for an empty token that asks
+   * for the first page.
+   */
+  public static long decode(String token) {
+    if (token == null || token.isBlank()) {
+      return 0L;
+    }
+    try {
+      String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      if (!value.startsWith(PREFIX)) {
+        throw new IllegalArgumentException(value);
+      }
+      return Long.parseLong(value.substring(PREFIX.length()));
+    } catch (IllegalArgumentException ex) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+  }
+
+  public static int size(int size) {
+    if (size < 1 || size > MAX_SIZE) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + MAX_SIZE);
+    }
+    return size;
+  }
+}
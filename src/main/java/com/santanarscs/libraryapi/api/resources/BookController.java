@@ -1,19 +1,37 @@
 package com.santanarscs.libraryapi.api.resources;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import javax.validation.Valid;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.santanarscs.libraryapi.api.dto.BookDTO;
+import com.santanarscs.libraryapi.api.dto.BookLookupDTO;
+import com.santanarscs.libraryapi.api.dto.CursorPageDTO;
+import com.santanarscs.libraryapi.api.dto.ImportResultDTO;
+import com.santanarscs.libraryapi.api.dto.SuggestionsDTO;
+import com.santanarscs.libraryapi.api.mapper.BookMapper;
+import com.santanarscs.libraryapi.api.pagination.Cursor;
+import com.santanarscs.libraryapi.api.stream.CsvRowReader;
 import com.santanarscs.libraryapi.model.entity.Book;
 import com.santanarscs.libraryapi.service.BookService;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -21,8 +39,10 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -31,32 +51,81 @@ import io.swagger.v3.oas.annotations.Operation;
 @RequestMapping("/api/books")
 public class BookController {
 
+  private static final int MAX_SUGGESTIONS = 50;
+  private static final int MAX_BATCH_SIZE = 100;
+
   private BookService service;
-  private ModelMapper modelMapper;
+  private BookMapper bookMapper;
+  private ObjectMapper objectMapper;
 
-  public BookController(BookService service, ModelMapper modelMapper) {
+  public BookController(BookService service, BookMapper bookMapper, ObjectMapper objectMapper) {
     this.service = service;
-    this.modelMapper = modelMapper;
+    this.bookMapper = bookMapper;
+    this.objectMapper = objectMapper;
   }
 
   @PostMapping
   @ResponseStatus(HttpStatus.CREATED)
   @Operation(summary = "Should be able to create a new book.")
   public BookDTO create(@RequestBody @Valid BookDTO dto) {
-    Book entity = modelMapper.map(dto, Book.class);
+    Book entity = bookMapper.toEntity(dto);
 
     entity = service.save(entity);
 
-    return modelMapper.map(entity, BookDTO.class);
+    return bookMapper.toDTO(entity);
+  }
+
+  @PostMapping(value = "import", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+  @Operation(summary = "Should be able to import many books from a JSON array or NDJSON body.")
+  public ImportResultDTO importJson(InputStream body) throws IOException {
+    Iterator<BookDTO> rows = objectMapper.readerFor(BookDTO.class).readValues(body);
+    return service.importBooks(toEntities(rows));
+  }
+
+  @PostMapping(value = "import", consumes = "text/csv")
+  @Operation(summary = "Should be able to import many books from a CSV body with a title,author,isbn header.")
+  public ImportResultDTO importCsv(InputStream body) {
+    Iterator<BookDTO> rows = new CsvRowReader<>(body, row -> BookDTO.builder()
+        .title(row.get("title"))
+        .author(row.get("author"))
+        .isbn(row.get("isbn"))
+        .build());
+    return service.importBooks(toEntities(rows));
   }
 
   @GetMapping("{id}")
-  public BookDTO get(@PathVariable Long id) {
-    return service
-        .getById(id)
-        .map(book -> modelMapper.map(book, BookDTO.class))
-        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+  @Operation(summary = "Should be able to get a book, answering 304 when the If-None-Match tag is current.")
+  public ResponseEntity<BookDTO> get(@PathVariable Long id, WebRequest request) {
+    Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    String etag = EntityTags.of(book);
+    if (request.checkNotModified(etag)) {
+      return null;
+    }
+    return ResponseEntity.ok().eTag(etag).body(bookMapper.toDTO(book));
+  }
 
+  @GetMapping("batch")
+  @Operation(summary = "Should be able to get many books by ids or by ISBNs in one call, in the order asked.")
+  public List<BookLookupDTO> getBatch(@RequestParam(required = false) List<Long> ids,
+      @RequestParam(required = false) List<String> isbns) {
+    if ((ids == null) == (isbns == null)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Pass either ids or isbns");
+    }
+    List<?> keys = ids != null ? ids : isbns;
+    if (keys.size() > MAX_BATCH_SIZE) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_BATCH_SIZE + " books per call");
+    }
+    List<Optional<Book>> books = ids != null ? service.getByIds(ids) : service.getByIsbns(isbns);
+    List<BookLookupDTO> result = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      Optional<Book> book = books.get(i);
+      result.add(BookLookupDTO.builder()
+          .key(String.valueOf(keys.get(i)))
+          .found(book.isPresent())
+          .book(book.map(bookMapper::toDTO).orElse(null))
+          .build());
+    }
+    return result;
   }
 
   @DeleteMapping("{id}")
@@ -66,21 +135,59 @@ public class BookController {
     service.delete(book);
   }
 
+  /**
+   * Edits a copy: the book from {@code getById} is the cached instance, and
+   * changing it would show the edit to other requests before it is saved, or
+   * keep it cached when the save fails.
+   */
   @PutMapping("{id}")
   public BookDTO update(@PathVariable Long id, BookDTO dto) {
     return service.getById(id).map(book -> {
-      book.setAuthor(dto.getAuthor());
-      book.setTitle(dto.getTitle());
-      book = service.update(book);
-      return modelMapper.map(book, BookDTO.class);
+      Book changed = book.toBuilder().author(dto.getAuthor()).title(dto.getTitle()).build();
+      return bookMapper.toDTO(service.update(changed));
     }).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
   }
 
   @GetMapping
-  public Page<BookDTO> find(BookDTO dto, Pageable pageRequest) {
-    Book filter = modelMapper.map(dto, Book.class);
+  public ResponseEntity<Page<BookDTO>> find(BookDTO dto, Pageable pageRequest, WebRequest request) {
+    Book filter = bookMapper.toEntity(dto);
     Page<Book> result = service.find(filter, pageRequest);
-    List<BookDTO> list = result.getContent().stream().map( entity -> modelMapper.map(entity, BookDTO.class)).collect(Collectors.toList());
-    return new PageImpl<>(list, pageRequest, result.getTotalElements());
+    String etag = EntityTags.of(result);
+    if (request.checkNotModified(etag)) {
+      return null;
+    }
+    List<BookDTO> list = result.getContent().stream().map(bookMapper::toDTO).collect(Collectors.toList());
+    return ResponseEntity.ok().eTag(etag).body(new PageImpl<>(list, pageRequest, result.getTotalElements()));
+  }
+
+  @GetMapping(params = "cursor")
+  @Operation(summary = "Should be able to seek books after a cursor, without offset scans.")
+  public CursorPageDTO<BookDTO> findByCursor(BookDTO dto, @RequestParam String cursor,
+      @RequestParam(defaultValue = "20") int size, @RequestParam(defaultValue = "false") boolean total) {
+    Book filter = bookMapper.toEntity(dto);
+    Slice<Book> result = service.findAfter(filter, Cursor.decode(cursor), Cursor.size(size));
+    List<BookDTO> list = result.getContent().stream().map(bookMapper::toDTO).collect(Collectors.toList());
+    String nextCursor = result.hasNext() ? Cursor.encode(list.get(list.size() - 1).getId()) : null;
+    return CursorPageDTO.<BookDTO>builder()
+        .content(list)
+        .size(size)
+        .nextCursor(nextCursor)
+        .totalElements(total ? service.count(filter) : null)
+        .build();
+  }
+
+  @GetMapping("suggestions")
+  @Operation(summary = "Should be able to suggest titles and authors starting with a prefix, for typeahead.")
+  public SuggestionsDTO suggest(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+    if (limit < 1 || limit > MAX_SUGGESTIONS) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_SUGGESTIONS);
+    }
+    return service.suggest(prefix, limit);
+  }
+
+  private Iterator<Book> toEntities(Iterator<BookDTO> rows) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED), false)
+        .map(bookMapper::toEntity)
+        .iterator();
   }
 }
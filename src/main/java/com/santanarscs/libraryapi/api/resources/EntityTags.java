@@ -0,0 +1,52 @@
+package com.santanarscs.libraryapi.api.resources;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+
+import org.springframework.data.domain.Page;
+
+/**
+ * Strong entity tags built from the optimistic lock versions. A tag changes
+ * with every committed update and costs a few string appends, so a request
+ * the client already holds is answered with {@code 304 Not Modified} before
+ * anything is mapped or serialized.
+ */
+final class EntityTags {
+
+  private EntityTags() {
+  }
+
+  static String of(Book book) {
+    return "\"b" + book.getId() + "-" + book.getVersion() + "\"";
+  }
+
+  /**
+   * The loan representation shows book fields too, so the book version is
+   * part of the tag.
+   */
+  static String of(Loan loan) {
+    return "\"l" + loan.getId() + "-" + loan.getVersion() + "-" + loan.getBook().getVersion() + "\"";
+  }
+
+  /**
+   * A page of books is tagged by the ids and versions it holds and the total
+   * it reports. The page number and size are in the URL the tag belongs to.
+   */
+  static String of(Page<Book> page) {
+    long hash = mix(page.getTotalElements());
+    for (Book book : page.getContent()) {
+      hash = mix(hash * 31 + book.getId());
+      hash = mix(hash * 31 + book.getVersion());
+    }
+    return "\"p" + Long.toHexString(hash) + "\"";
+  }
+
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
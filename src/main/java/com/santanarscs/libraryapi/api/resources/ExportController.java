@@ -0,0 +1,81 @@
+package com.santanarscs.libraryapi.api.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.santanarscs.libraryapi.api.dto.BookDTO;
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
+import com.santanarscs.libraryapi.api.mapper.BookMapper;
+import com.santanarscs.libraryapi.api.mapper.LoanMapper;
+import com.santanarscs.libraryapi.api.stream.CsvRowWriter;
+import com.santanarscs.libraryapi.api.stream.ExportFormat;
+import com.santanarscs.libraryapi.api.stream.NdjsonRowWriter;
+import com.santanarscs.libraryapi.api.stream.RowWriter;
+import com.santanarscs.libraryapi.service.ExportService;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/export")
+@RequiredArgsConstructor
+public class ExportController {
+
+  private static final String[] BOOK_HEADER = { "id", "title", "author", "isbn" };
+  private static final String[] LOAN_HEADER = { "id", "isbn", "customer", "email", "book_id", "title", "author" };
+
+  private final ExportService service;
+  private final BookMapper bookMapper;
+  private final LoanMapper loanMapper;
+  private final ObjectMapper objectMapper;
+
+  @GetMapping("books")
+  @Operation(summary = "Should be able to stream every book as NDJSON or CSV.")
+  public ResponseEntity<StreamingResponseBody> books(@RequestParam(defaultValue = "ndjson") String format) {
+    ExportFormat exportFormat = ExportFormat.of(format);
+    return response("books", exportFormat, out -> {
+      try (RowWriter<BookDTO> writer = exportFormat == ExportFormat.CSV
+          ? new CsvRowWriter<>(out, BOOK_HEADER,
+              dto -> new Object[] { dto.getId(), dto.getTitle(), dto.getAuthor(), dto.getIsbn() })
+          : new NdjsonRowWriter<>(out, objectMapper)) {
+        service.forEachBook(book -> writer.write(bookMapper.toDTO(book)));
+      }
+    });
+  }
+
+  @GetMapping("loans")
+  @Operation(summary = "Should be able to stream every loan as NDJSON or CSV.")
+  public ResponseEntity<StreamingResponseBody> loans(@RequestParam(defaultValue = "ndjson") String format) {
+    ExportFormat exportFormat = ExportFormat.of(format);
+    return response("loans", exportFormat, out -> {
+      try (RowWriter<LoanDTO> writer = exportFormat == ExportFormat.CSV
+          ? new CsvRowWriter<>(out, LOAN_HEADER, this::loanColumns)
+          : new NdjsonRowWriter<>(out, objectMapper)) {
+        service.forEachLoan(loan -> writer.write(loanMapper.toDTO(loan)));
+      }
+    });
+  }
+
+  private Object[] loanColumns(LoanDTO dto) {
+    BookDTO book = dto.getBook();
+    return new Object[] { dto.getId(), dto.getIsbn(), dto.getCustomer(), dto.getEmail(), book.getId(),
+        book.getTitle(), book.getAuthor() };
+  }
+
+  private ResponseEntity<StreamingResponseBody> response(String name, ExportFormat format, StreamingResponseBody body) {
+    ContentDisposition disposition = ContentDisposition.attachment()
+        .filename(name + "." + format.getExtension())
+        .build();
+    return ResponseEntity.ok()
+        .contentType(format.getMediaType())
+        .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+        .body(body);
+  }
+}
@@ -2,31 +2,35 @@ package com.santanarscs.libraryapi.api.resources;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
 
-import com.santanarscs.libraryapi.api.dto.BookDTO;
+import com.santanarscs.libraryapi.api.dto.CursorPageDTO;
 import com.santanarscs.libraryapi.api.dto.LoanDTO;
 import com.santanarscs.libraryapi.api.dto.LoanFilterDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnResultDTO;
 import com.santanarscs.libraryapi.api.dto.ReturnedLoanDTO;
+import com.santanarscs.libraryapi.api.mapper.LoanMapper;
+import com.santanarscs.libraryapi.api.pagination.Cursor;
 import com.santanarscs.libraryapi.model.entity.Book;
 import com.santanarscs.libraryapi.model.entity.Loan;
 import com.santanarscs.libraryapi.service.BookService;
 import com.santanarscs.libraryapi.service.LoanService;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import lombok.RequiredArgsConstructor;
@@ -36,21 +40,35 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class LoanController {
 
+  private static final int MAX_RETURNS = 1000;
+
   private final LoanService service;
   private final BookService bookService;
 
-  private final ModelMapper modelMapper;
+  private final LoanMapper loanMapper;
 
   @PostMapping
   @ResponseStatus(HttpStatus.CREATED)
   public Long create(@RequestBody LoanDTO dto) {
     Book book = bookService.getBookByIsbn(dto.getIsbn())
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn"));
-    Loan entity = Loan.builder().book(book).customer(dto.getCustomer()).loanDate(LocalDate.now()).build();
+    Loan entity = loanMapper.toEntity(dto);
+    entity.setBook(book);
+    entity.setLoanDate(LocalDate.now());
     entity = service.save(entity);
     return entity.getId();
   }
 
+  @GetMapping("{id}")
+  public ResponseEntity<LoanDTO> get(@PathVariable Long id, WebRequest request) {
+    Loan loan = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    String etag = EntityTags.of(loan);
+    if (request.checkNotModified(etag)) {
+      return null;
+    }
+    return ResponseEntity.ok().eTag(etag).body(loanMapper.toDTO(loan));
+  }
+
   @PatchMapping("{id}")
   public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto) {
     Loan loan = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
@@ -59,22 +77,34 @@ public class LoanController {
     service.update(loan);
   }
 
+  @PatchMapping
+  public List<LoanReturnResultDTO> returnBooks(@RequestBody List<LoanReturnDTO> loans) {
+    if (loans.size() > MAX_RETURNS) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_RETURNS + " loans per call");
+    }
+    if (loans.stream().anyMatch(loan -> loan == null || loan.getId() == null)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Loan id is required");
+    }
+    return service.returnAll(loans);
+  }
+
   @GetMapping
   public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest) {
-    Page<Loan> result = service.find(dto, pageRequest);
-    List<LoanDTO> list =  result
-    .getContent()
-    .stream()
-    .map( entity -> {
-
-      Book book = entity.getBook();
-      BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-      LoanDTO loanDTO = modelMapper.map(entity, LoanDTO.class);
-      loanDTO.setBook(bookDTO);
-      return loanDTO;
-      
-    }).collect(Collectors.toList());
-    return new PageImpl<>(list, pageRequest, result.getTotalElements());
+    return service.find(dto, pageRequest);
+  }
+
+  @GetMapping(params = "cursor")
+  public CursorPageDTO<LoanDTO> findByCursor(LoanFilterDTO dto, @RequestParam String cursor,
+      @RequestParam(defaultValue = "20") int size, @RequestParam(defaultValue = "false") boolean total) {
+    Slice<LoanDTO> result = service.findAfter(dto, Cursor.decode(cursor), Cursor.size(size));
+    List<LoanDTO> content = result.getContent();
+    String nextCursor = result.hasNext() ? Cursor.encode(Long.valueOf(content.get(content.size() - 1).getId())) : null;
+    return CursorPageDTO.<LoanDTO>builder()
+        .content(content)
+        .size(size)
+        .nextCursor(nextCursor)
+        .totalElements(total ? service.count(dto) : null)
+        .build();
   }
 
 }
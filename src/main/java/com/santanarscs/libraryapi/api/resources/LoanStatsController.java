@@ -0,0 +1,49 @@
+package com.santanarscs.libraryapi.api.resources;
+
+import java.time.LocalDate;
+
+import com.santanarscs.libraryapi.api.dto.LoanCountDTO;
+import com.santanarscs.libraryapi.api.dto.LoanStatsDTO;
+import com.santanarscs.libraryapi.service.LoanStatisticsService;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/loans/stats")
+@RequiredArgsConstructor
+public class LoanStatsController {
+
+  private final LoanStatisticsService service;
+
+  @GetMapping
+  @Operation(summary = "Should be able to count open, overdue and all loans without scanning the loans.")
+  public LoanStatsDTO get() {
+    return service.getStatistics(LocalDate.now());
+  }
+
+  @GetMapping("books/{id}")
+  @Operation(summary = "Should be able to count the loans ever made of a book.")
+  public LoanCountDTO book(@PathVariable Long id) {
+    return LoanCountDTO.builder().key(String.valueOf(id)).loans(service.countLoansOfBook(id)).build();
+  }
+
+  @GetMapping("customers/{customer}")
+  @Operation(summary = "Should be able to count the loans ever made by a customer.")
+  public LoanCountDTO customer(@PathVariable String customer) {
+    return LoanCountDTO.builder().key(customer).loans(service.countLoansOfCustomer(customer)).build();
+  }
+
+  @GetMapping("snapshots")
+  @Operation(summary = "Should be able to page the stored snapshots of the loan counters, latest first.")
+  public Page<LoanStatsDTO> snapshots(Pageable pageable) {
+    return service.getSnapshots(pageable);
+  }
+}
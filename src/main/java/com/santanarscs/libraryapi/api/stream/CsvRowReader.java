@@ -0,0 +1,100 @@
+package com.santanarscs.libraryapi.api.stream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Reads a CSV body one record at a time, the counterpart of
+ * {@link CsvRowWriter}. The first record is the header and every following
+ * record is handed to the mapper as a column name to value map.
+ */
+public class CsvRowReader<T> implements Iterator<T> {
+
+  private final BufferedReader reader;
+  private final Function<Map<String, String>, T> mapper;
+  private final List<String> header;
+  private List<String> next;
+
+  public CsvRowReader(InputStream in, Function<Map<String, String>, T> mapper) {
+    this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    this.mapper = mapper;
+    List<String> names = readRecord();
+    this.header = names == null ? List.of() : names;
+    this.next = readRecord();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return next != null;
+  }
+
+  @Override
+  public T next() {
+    if (next == null) {
+      throw new NoSuchElementException();
+    }
+    Map<String, String> row = new HashMap<>();
+    for (int i = 0; i < header.size() && i < next.size(); i++) {
+      row.put(header.get(i).trim().toLowerCase(), next.get(i));
+    }
+    next = readRecord();
+    return mapper.apply(row);
+  }
+
+  private List<String> readRecord() {
+    try {
+      int c = reader.read();
+      while (c == '\r' || c == '\n') {
+        c = reader.read();
+      }
+      if (c == -1) {
+        return null;
+      }
+
+      List<String> values = new ArrayList<>();
+      StringBuilder value = new StringBuilder();
+      boolean quoted = false;
+      while (c != -1) {
+        if (quoted) {
+          if (c == '"') {
+            reader.mark(1);
+            int peek = reader.read();
+            if (peek == '"') {
+              value.append('"');
+            } else {
+              quoted = false;
+              reader.reset();
+            }
+          } else {
+            value.append((char) c);
+          }
+        } else if (c == '"') {
+          quoted = true;
+        } else if (c == ',') {
+          values.add(value.toString());
+          value.setLength(0);
+        } else if (c == '\r' || c == '\n') {
+          break;
+        } else {
+          value.append((char) c);
+        }
+        c = reader.read();
+      }
+      values.add(value.toString());
+      return values;
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
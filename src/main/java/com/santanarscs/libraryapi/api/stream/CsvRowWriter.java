@@ -0,0 +1,62 @@
+package com.santanarscs.libraryapi.api.stream;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+public class CsvRowWriter<T> implements RowWriter<T> {
+
+  private final Writer writer;
+  private final Function<T, Object[]> columns;
+
+  public CsvRowWriter(OutputStream out, String[] header, Function<T, Object[]> columns) throws IOException {
+    this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    this.columns = columns;
+    writeLine(header);
+  }
+
+  @Override
+  public void write(T row) {
+    try {
+      writeLine(columns.apply(row));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  private void writeLine(Object[] values) throws IOException {
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        writer.write(',');
+      }
+      writeValue(values[i]);
+    }
+    writer.write("\r\n");
+  }
+
+  private void writeValue(Object value) throws IOException {
+    if (value == null) {
+      return;
+    }
+    String text = value.toString();
+    boolean quote = text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0
+        || text.indexOf('\r') >= 0;
+    if (!quote) {
+      writer.write(text);
+      return;
+    }
+    writer.write('"');
+    writer.write(text.replace("\"", "\"\""));
+    writer.write('"');
+  }
+}
@@ -0,0 +1,27 @@
+package com.santanarscs.libraryapi.api.stream;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ResponseStatusException;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum ExportFormat {
+  NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+  CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv");
+
+  private final MediaType mediaType;
+  private final String extension;
+
+  public static ExportFormat of(String format) {
+    for (ExportFormat value : values()) {
+      if (value.extension.equalsIgnoreCase(format)) {
+        return value;
+      }
+    }
+    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+  }
+}
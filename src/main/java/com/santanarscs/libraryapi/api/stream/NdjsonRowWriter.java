@@ -0,0 +1,36 @@
+package com.santanarscs.libraryapi.api.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+public class NdjsonRowWriter<T> implements RowWriter<T> {
+
+  private final ObjectWriter writer;
+  private final JsonGenerator generator;
+
+  public NdjsonRowWriter(OutputStream out, ObjectMapper objectMapper) throws IOException {
+    this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    this.generator = objectMapper.getFactory().createGenerator(out).setRootValueSeparator(null);
+  }
+
+  @Override
+  public void write(T row) {
+    try {
+      writer.writeValue(generator, row);
+      generator.writeRaw('\n');
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    generator.close();
+  }
+}
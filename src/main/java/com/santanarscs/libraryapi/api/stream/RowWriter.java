@@ -0,0 +1,18 @@
+package com.santanarscs.libraryapi.api.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes rows to a response one at a time. I/O failures surface as
+ * {@link UncheckedIOException} so a writer can be used from a
+ * {@link java.util.function.Consumer}.
+ */
+public interface RowWriter<T> extends Closeable {
+
+  void write(T row);
+
+  @Override
+  void close() throws IOException;
+}
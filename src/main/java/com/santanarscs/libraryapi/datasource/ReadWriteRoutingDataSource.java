@@ -0,0 +1,97 @@
+package com.santanarscs.libraryapi.datasource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Hands out replica connections to read-only transactions and primary
+ * connections to everything else. It has to sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * the transaction manager asks for its connection before the read-only flag
+ * of the transaction is published, the proxy only asks once the first
+ * statement runs.
+ *
+ * Replicas lag behind the primary, so for {@code readYourWritesWindow} after
+ * a read-write transaction commits, read-only transactions stay on the
+ * primary too and a client reading right after its write sees it. The
+ * window is global, which keeps it correct without knowing who the client
+ * is; it only costs replica reads while writes keep coming. It is also per
+ * node: a write through another instance does not keep this one's reads on
+ * the primary.
+ *
+ * Reads run through {@link #readPrimary} stay on the primary whatever the
+ * window, without counting as writes. Lookups that fill a cache use it, so a
+ * row the replica has not caught up with is not kept for the life of the
+ * cache entry.
+ *
+ * Published meters: {@code datasource.connections.routed} by {@code pool}.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+  public enum Route {
+    PRIMARY, REPLICA
+  }
+
+  private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+  private final long readYourWritesWindowNanos;
+  private final Counter primaryConnections;
+  private final Counter replicaConnections;
+  private volatile long lastWriteNanos;
+
+  public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration readYourWritesWindow,
+      MeterRegistry meterRegistry) {
+    this.readYourWritesWindowNanos = readYourWritesWindow.toNanos();
+    this.lastWriteNanos = System.nanoTime() - readYourWritesWindowNanos;
+    this.primaryConnections = meterRegistry.counter("datasource.connections.routed", "pool", "primary");
+    this.replicaConnections = meterRegistry.counter("datasource.connections.routed", "pool", "replica");
+    setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+    setDefaultTargetDataSource(primary);
+    afterPropertiesSet();
+  }
+
+  /**
+   * Runs the reads on the primary. Only connections taken inside them are
+   * routed there, so the transaction must not have read before.
+   */
+  public static <T> T readPrimary(Supplier<T> reads) {
+    if (PRIMARY_READS.get() != null) {
+      return reads.get();
+    }
+    PRIMARY_READS.set(Boolean.TRUE);
+    try {
+      return reads.get();
+    } finally {
+      PRIMARY_READS.remove();
+    }
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      if (PRIMARY_READS.get() == null && System.nanoTime() - lastWriteNanos >= readYourWritesWindowNanos) {
+        replicaConnections.increment();
+        return Route.REPLICA;
+      }
+    } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          lastWriteNanos = System.nanoTime();
+        }
+      });
+    }
+    primaryConnections.increment();
+    return Route.PRIMARY;
+  }
+}
@@ -0,0 +1,70 @@
+package com.santanarscs.libraryapi.datasource;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Replaces the single auto-configured pool by a primary pool, built from
+ * {@code spring.datasource.*} as before, and a read-only replica pool from
+ * {@code application.datasource.replica.*}, both tuned through their
+ * {@code hikari} prefix. Everything that injects a {@link DataSource}, JPA
+ * and Flyway included, gets the router, so read-only transactions go to the
+ * replica and the rest, migrations too, to the primary. Both pools are
+ * beans, so their {@code hikaricp.*} meters are published per {@code pool}.
+ *
+ * Off unless {@code application.datasource.replica.enabled=true}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "application.datasource.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfiguration {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    dataSource.setPoolName("primary");
+    return dataSource;
+  }
+
+  @Bean
+  @ConfigurationProperties("application.datasource.replica.hikari")
+  public HikariDataSource replicaDataSource(@Value("${application.datasource.replica.url}") String url,
+      @Value("${application.datasource.replica.username}") String username,
+      @Value("${application.datasource.replica.password}") String password) {
+    HikariDataSource dataSource = DataSourceBuilder.create()
+        .type(HikariDataSource.class)
+        .url(url)
+        .username(username)
+        .password(password)
+        .build();
+    dataSource.setPoolName("replica");
+    dataSource.setReadOnly(true);
+    return dataSource;
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+      @Qualifier("replicaDataSource") DataSource replica,
+      @Value("${application.datasource.replica.read-your-writes-window}") Duration readYourWritesWindow,
+      MeterRegistry meterRegistry) {
+    return new LazyConnectionDataSourceProxy(
+        new ReadWriteRoutingDataSource(primary, replica, readYourWritesWindow, meterRegistry));
+  }
+}
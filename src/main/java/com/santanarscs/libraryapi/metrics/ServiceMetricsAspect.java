@@ -0,0 +1,54 @@
+package com.santanarscs.libraryapi.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Times every public method of the service implementations as
+ * {@code service.invocations}, and every scheduled job run as
+ * {@code scheduler.run}. Both are tagged with the class, the method and the
+ * simple name of the exception thrown, or {@code none}. Together with the
+ * {@code http.server.requests} and {@code spring.data.repository.invocations}
+ * timers Spring Boot records, this splits a request into web, service and
+ * query time.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ServiceMetricsAspect {
+
+  private final MeterRegistry meterRegistry;
+
+  @Around("within(com.santanarscs.libraryapi.service.impl..*) && execution(public * *(..))")
+  public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time("service.invocations", joinPoint);
+  }
+
+  @Around("@annotation(org.springframework.scheduling.annotation.Scheduled)")
+  public Object timeScheduler(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time("scheduler.run", joinPoint);
+  }
+
+  private Object time(String name, ProceedingJoinPoint joinPoint) throws Throwable {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String exception = "none";
+    try {
+      return joinPoint.proceed();
+    } catch (Throwable ex) {
+      exception = ex.getClass().getSimpleName();
+      throw ex;
+    } finally {
+      sample.stop(Timer.builder(name)
+          .tag("class", joinPoint.getSignature().getDeclaringType().getSimpleName())
+          .tag("method", joinPoint.getSignature().getName())
+          .tag("exception", exception)
+          .register(meterRegistry));
+    }
+  }
+}
@@ -8,15 +8,19 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
@@ -25,7 +29,8 @@ public class Book {
   
   @Id
   @Column
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+  @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
   private Long id;
 
   @Column
@@ -37,6 +42,15 @@ public class Book {
   @Column
   private String isbn;
 
+  /**
+   * Bumped by every update, so it doubles as the entity tag of the book.
+   */
+  @Version
+  @Column
+  private long version;
+
   @OneToMany(mappedBy = "book")
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
   private List<Loan> loans;
 }
@@ -0,0 +1,52 @@
+package com.santanarscs.libraryapi.model.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Where a keyset driven job stopped: the day the run started and the last id
+ * it fully processed. A job split into id ranges keeps one checkpoint per
+ * range, bounded by {@code untilId}, and walked by the node that claimed it
+ * until {@code claimedUntil}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "job_checkpoint")
+public class JobCheckpoint {
+
+  @Id
+  @Column(length = 100)
+  private String name;
+
+  @Column(name = "run_date")
+  private LocalDate runDate;
+
+  @Column(name = "last_id")
+  private Long lastId;
+
+  @Column(name = "until_id")
+  private Long untilId;
+
+  @Column
+  private Boolean finished;
+
+  @Column(length = 100)
+  private String owner;
+
+  @Column(name = "claimed_until")
+  private LocalDateTime claimedUntil;
+
+}
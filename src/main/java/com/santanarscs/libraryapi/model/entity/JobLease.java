@@ -0,0 +1,36 @@
+package com.santanarscs.libraryapi.model.entity;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The node running a scheduled job, until the lease expires.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "job_lease")
+public class JobLease {
+
+  @Id
+  @Column(length = 100)
+  private String name;
+
+  @Column(length = 100)
+  private String owner;
+
+  @Column(name = "expires_at")
+  private LocalDateTime expiresAt;
+
+}
@@ -4,16 +4,22 @@ import java.time.LocalDate;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Version;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Data
 @Builder
@@ -33,13 +39,34 @@ public class Loan {
   private String customerEmail;
 
   @JoinColumn(name = "id_book")
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
   private Book book;
 
   @Column
   private LocalDate loanDate;
 
+  @Column(name = "due_date")
+  private LocalDate dueDate;
+
   @Column
   private Boolean returned;
 
+  @Version
+  @Column
+  private long version;
+
+  /**
+   * The open loan lookups filter on {@code returned = false}, so a loan is
+   * never stored with an unknown state.
+   */
+  @PrePersist
+  @PreUpdate
+  void defaultReturned() {
+    if (returned == null) {
+      returned = false;
+    }
+  }
+
 }
@@ -0,0 +1,59 @@
+package com.santanarscs.libraryapi.model.entity;
+
+import java.time.LocalDate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Read-only view of every loan, the ones still in the loan table and the
+ * ones moved to loan_archive, for searches that ask for the whole history.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Immutable
+@Table(name = "loan_history")
+public class LoanHistory {
+
+  @Id
+  private Long id;
+
+  @Column(length = 100)
+  private String customer;
+
+  @Column(name = "customer_email")
+  private String customerEmail;
+
+  @JoinColumn(name = "id_book")
+  @ManyToOne(fetch = FetchType.LAZY)
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  private Book book;
+
+  @Column
+  private LocalDate loanDate;
+
+  @Column
+  private Boolean returned;
+
+  @Column
+  private Boolean archived;
+
+}
@@ -0,0 +1,44 @@
+package com.santanarscs.libraryapi.model.entity;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The loan counters as they were at {@code takenAt}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "loan_stats_snapshot")
+public class LoanStatsSnapshot {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "taken_at")
+  private LocalDateTime takenAt;
+
+  @Column(name = "open_loans")
+  private long openLoans;
+
+  @Column(name = "overdue_loans")
+  private long overdueLoans;
+
+  @Column(name = "total_loans")
+  private long totalLoans;
+
+}
@@ -0,0 +1,49 @@
+package com.santanarscs.libraryapi.model.entity;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "mail_dead_letter")
+public class MailDeadLetter {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column
+  private String recipient;
+
+  @Column
+  private String subject;
+
+  @Lob
+  @Column
+  private String text;
+
+  @Column(length = 1000)
+  private String error;
+
+  @Column
+  private Integer attempts;
+
+  @Column(name = "failed_at")
+  private LocalDateTime failedAt;
+
+}
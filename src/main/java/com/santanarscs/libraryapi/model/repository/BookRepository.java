@@ -1,15 +1,45 @@
 package com.santanarscs.libraryapi.model.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import com.santanarscs.libraryapi.model.entity.Book;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
 
   boolean existsByIsbn(String isbn);
 
   Optional<Book> findByIsbn(String isbn);
 
+  @Query(value = "select b from Book b where b.isbn in :isbns")
+  List<Book> findByIsbnIn(@Param("isbns") Collection<String> isbns);
+
+  @Query(value = "select b.isbn from Book b where b.isbn in :isbns")
+  Set<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+  @Query(value = "select distinct b.title from Book b where lower(b.title) like lower(concat(:prefix, '%')) "
+      + "order by b.title")
+  List<String> findTitlesStartingWith(@Param("prefix") String prefix, Pageable pageable);
+
+  @Query(value = "select distinct b.author from Book b where lower(b.author) like lower(concat(:prefix, '%')) "
+      + "order by b.author")
+  List<String> findAuthorsStartingWith(@Param("prefix") String prefix, Pageable pageable);
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query(value = "select b from Book b order by b.id")
+  Stream<Book> streamAll();
+
 }
@@ -0,0 +1,17 @@
+package com.santanarscs.libraryapi.model.repository;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+
+import org.springframework.data.domain.Slice;
+
+public interface BookRepositoryCustom {
+
+  /**
+   * Seeks the books with {@code id > after} in id order. Only the non null
+   * fields of the filter become predicates, each one a case insensitive
+   * containing match.
+   */
+  Slice<Book> findAfter(long after, Book filter, int size);
+
+  long countByFilter(Book filter);
+}
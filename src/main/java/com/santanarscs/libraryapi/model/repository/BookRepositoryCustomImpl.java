@@ -0,0 +1,67 @@
+package com.santanarscs.libraryapi.model.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public Slice<Book> findAfter(long after, Book filter, int size) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Book> query = builder.createQuery(Book.class);
+    Root<Book> book = query.from(Book.class);
+
+    List<Predicate> predicates = filter(builder, book, filter);
+    predicates.add(builder.greaterThan(book.get("id"), after));
+    query.where(predicates.toArray(new Predicate[0])).orderBy(builder.asc(book.get("id")));
+
+    List<Book> content = entityManager.createQuery(query).setMaxResults(size + 1).getResultList();
+    boolean hasNext = content.size() > size;
+    if (hasNext) {
+      content = content.subList(0, size);
+    }
+    return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+  }
+
+  @Override
+  public long countByFilter(Book filter) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+    Root<Book> book = query.from(Book.class);
+
+    query.select(builder.count(book)).where(filter(builder, book, filter).toArray(new Predicate[0]));
+
+    return entityManager.createQuery(query).getSingleResult();
+  }
+
+  private List<Predicate> filter(CriteriaBuilder builder, Root<Book> book, Book filter) {
+    List<Predicate> predicates = new ArrayList<>();
+    containing(builder, book, "title", filter.getTitle(), predicates);
+    containing(builder, book, "author", filter.getAuthor(), predicates);
+    containing(builder, book, "isbn", filter.getIsbn(), predicates);
+    return predicates;
+  }
+
+  private void containing(CriteriaBuilder builder, Root<Book> book, String attribute, String value,
+      List<Predicate> predicates) {
+    if (value != null) {
+      predicates.add(builder.like(builder.lower(book.get(attribute)), "%" + value.toLowerCase() + "%"));
+    }
+  }
+}
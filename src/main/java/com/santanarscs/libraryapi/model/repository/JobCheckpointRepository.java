@@ -0,0 +1,41 @@
+package com.santanarscs.libraryapi.model.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.santanarscs.libraryapi.model.entity.JobCheckpoint;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+
+  /**
+   * The checkpoints of a job split into ranges, in range order.
+   */
+  @Query(value = "select c from JobCheckpoint c where c.name like concat(:prefix, '%') order by c.lastId")
+  List<JobCheckpoint> findByNamePrefix(@Param("prefix") String prefix);
+
+  /**
+   * Claims an unfinished range nobody holds, or whose claim expired.
+   *
+   * @return 1 when the owner holds the range until {@code claimedUntil}
+   */
+  @Modifying
+  @Query("update JobCheckpoint c set c.owner = :owner, c.claimedUntil = :claimedUntil "
+      + "where c.name = :name and c.finished = false and (c.owner is null or c.claimedUntil <= :now)")
+  int claim(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now,
+      @Param("claimedUntil") LocalDateTime claimedUntil);
+
+  /**
+   * Checkpoints a claimed range and renews the claim, when the owner still
+   * holds it.
+   */
+  @Modifying
+  @Query("update JobCheckpoint c set c.lastId = :lastId, c.finished = :finished, c.claimedUntil = :claimedUntil "
+      + "where c.name = :name and c.owner = :owner")
+  int saveClaimed(@Param("name") String name, @Param("owner") String owner, @Param("lastId") Long lastId,
+      @Param("finished") Boolean finished, @Param("claimedUntil") LocalDateTime claimedUntil);
+}
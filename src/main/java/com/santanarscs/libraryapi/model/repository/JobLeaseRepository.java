@@ -0,0 +1,44 @@
+package com.santanarscs.libraryapi.model.repository;
+
+import java.time.LocalDateTime;
+
+import com.santanarscs.libraryapi.model.entity.JobLease;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+  /**
+   * Takes an existing lease when it is already the owner's or has expired.
+   *
+   * @return 1 when the owner holds the lease until {@code expiresAt}
+   */
+  @Modifying
+  @Query("update JobLease l set l.owner = :owner, l.expiresAt = :expiresAt "
+      + "where l.name = :name and (l.owner = :owner or l.expiresAt <= :now)")
+  int take(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now,
+      @Param("expiresAt") LocalDateTime expiresAt);
+
+  /**
+   * Creates a lease nobody held yet. Two nodes racing to create it can both
+   * get past the check; the later one fails on the primary key.
+   *
+   * @return 0 when the lease exists
+   */
+  @Modifying
+  @Query(nativeQuery = true, value = "insert into job_lease (name, owner, expires_at) "
+      + "select :name, :owner, :expiresAt from dual "
+      + "where not exists (select 1 from job_lease where name = :name)")
+  int insert(@Param("name") String name, @Param("owner") String owner,
+      @Param("expiresAt") LocalDateTime expiresAt);
+
+  /**
+   * Lets the lease expire now, when the owner still holds it.
+   */
+  @Modifying
+  @Query("update JobLease l set l.expiresAt = :now where l.name = :name and l.owner = :owner")
+  int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,45 @@
+package com.santanarscs.libraryapi.model.repository;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
+import com.santanarscs.libraryapi.model.entity.LoanHistory;
+import com.santanarscs.libraryapi.model.repository.LoanRepository.LoanCount;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * The loan searches of {@link LoanRepository}, over live and archived loans.
+ */
+public interface LoanHistoryRepository extends Repository<LoanHistory, Long> {
+
+  @Query(value = "select new com.santanarscs.libraryapi.api.dto.LoanDTO(l.id, l.customer, l.customerEmail, b.id, b.title, b.author, b.isbn) from LoanHistory as l join l.book as b where b.isbn = :isbn or l.customer = :customer ",
+      countQuery = "select count(l.id) from LoanHistory as l join l.book as b where b.isbn = :isbn or l.customer = :customer ")
+  Page<LoanDTO> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageRequest);
+
+  @Query(value = "select new com.santanarscs.libraryapi.api.dto.LoanDTO(l.id, l.customer, l.customerEmail, b.id, b.title, b.author, b.isbn) from LoanHistory as l join l.book as b where ( b.isbn = :isbn or l.customer = :customer ) and l.id > :after order by l.id")
+  Slice<LoanDTO> findByBookIsbnOrCustomerAfter(@Param("isbn") String isbn, @Param("customer") String customer, @Param("after") Long after, Pageable pageRequest);
+
+  @Query(value = "select count(l.id) from LoanHistory as l join l.book as b where b.isbn = :isbn or l.customer = :customer ")
+  long countByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
+
+  long count();
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query(value = "select l.book.id as key, count(l.id) as loans from LoanHistory l group by l.book.id")
+  Stream<LoanCount<Long>> streamLoansByBook();
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query(value = "select l.customer as key, count(l.id) as loans from LoanHistory l group by l.customer")
+  Stream<LoanCount<String>> streamLoansByCustomer();
+}
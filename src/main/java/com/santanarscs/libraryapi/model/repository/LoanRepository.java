@@ -1,26 +1,185 @@
 package com.santanarscs.libraryapi.model.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
 import com.santanarscs.libraryapi.model.entity.Book;
 import com.santanarscs.libraryapi.model.entity.Loan;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
 
-  @Query(value = "select case when (count(l.id) > 0) then true else false end from Loan l where l.book = :book and ( l.returned is null or l.returned is false )")
+  /**
+   * Fetches the book with the loan, so a loan can be mapped and tagged
+   * outside the transaction.
+   */
+  @Override
+  @EntityGraph(attributePaths = "book")
+  Optional<Loan> findById(Long id);
+
+  @Query(value = "select case when (count(l.id) > 0) then true else false end from Loan l where l.book = :book and l.returned = false")
   boolean existsByBookAndNotReturned(@Param("book") Book book);
 
-  @Query(value = "select l from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer ")
-  Page<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageRequest);
+  @Query(value = "select new com.santanarscs.libraryapi.api.dto.LoanDTO(l.id, l.customer, l.customerEmail, b.id, b.title, b.author, b.isbn) from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer ",
+      countQuery = "select count(l.id) from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer ")
+  Page<LoanDTO> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageRequest);
+
+  @Query(value = "select new com.santanarscs.libraryapi.api.dto.LoanDTO(l.id, l.customer, l.customerEmail, b.id, b.title, b.author, b.isbn) from Loan as l join l.book as b where ( b.isbn = :isbn or l.customer = :customer ) and l.id > :after order by l.id")
+  Slice<LoanDTO> findByBookIsbnOrCustomerAfter(@Param("isbn") String isbn, @Param("customer") String customer, @Param("after") Long after, Pageable pageRequest);
+
+  @Query(value = "select count(l.id) from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer ")
+  long countByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
+
+  /**
+   * Ordering by {@code returned} too is a no-op for the result, but it lets
+   * the ix_loan_returned_id index hand the rows out already sorted.
+   */
+  @Query(value = "select l from Loan l where l.dueDate <= :dueUntil and l.returned = false and l.id > :after and l.id <= :until "
+      + "order by l.returned, l.id")
+  Slice<Loan> findLateLoansBetween(@Param("dueUntil") LocalDate dueUntil, @Param("after") Long after,
+      @Param("until") Long until, Pageable pageRequest);
+
+  /**
+   * The open loans, with their books, of the customers with a loan due by the
+   * date in {@code (after, until]}, by customer and id. Joined rather than
+   * passed as a list of emails: the id range reads the primary key and each
+   * customer is a seek on ix_loan_customer_email, where H2 plans a long
+   * {@code in} list next to a bound due date as a table scan. The due date of
+   * the loans themselves is left to the caller for the same reason.
+   */
+  @Query(value = "select distinct l from Loan c, Loan l left join fetch l.book "
+      + "where c.id > :after and c.id <= :until and c.returned = false and c.dueDate <= :dueUntil "
+      + "and l.customerEmail = c.customerEmail and l.returned = false order by l.customerEmail, l.id")
+  List<Loan> findOpenLoansOfCustomersBetween(@Param("dueUntil") LocalDate dueUntil, @Param("after") Long after,
+      @Param("until") Long until);
+
+  @Query(value = "select l from Loan l left join fetch l.book where l.id in :ids")
+  List<Loan> findAllWithBookById(@Param("ids") Collection<Long> ids);
+
+  @Query(value = "select l.id as id, l.version as version, l.returned as returned, l.dueDate as dueDate from Loan l where l.id in :ids")
+  List<ReturnState> findReturnStates(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Returns the loans among the ids that are still at the version, and bumps
+   * it as an entity update would. Loans changed since they were read are left
+   * alone, so a count lower than the ids means a concurrent update. Every
+   * update bumps the version, so there is no {@code returned = false} check:
+   * with it H2 walks the open loans index instead of the primary key.
+   */
+  @Modifying
+  @Query(value = "update Loan l set l.returned = true, l.version = l.version + 1 where l.id in :ids and l.version = :version")
+  int markReturned(@Param("ids") Collection<Long> ids, @Param("version") long version);
+
+  /**
+   * Open loans per due date, what the loan statistics are reconciled with.
+   */
+  @Query(value = "select l.dueDate as key, count(l.id) as loans from Loan l where l.returned = false group by l.dueDate")
+  List<LoanCount<LocalDate>> countOpenLoansByDueDate();
+
+  /**
+   * Open loans due after the date, what the overdue tracker is loaded with.
+   */
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query(value = "select l.id as id, l.dueDate as dueDate from Loan l where l.returned = false and l.dueDate > :after")
+  Stream<DueLoan> streamOpenLoansDueAfter(@Param("after") LocalDate after);
+
+  /**
+   * Claims the open loans among the ids, that no one claimed before, for an
+   * overdue notice. Nodes racing for a loan wait on its row lock, so only
+   * the first one to commit finds the claim still empty.
+   */
+  @Modifying
+  @Query(nativeQuery = true, value = "update loan set overdue_notice_claim = :claim "
+      + "where id in :ids and returned = false and overdue_notice_claim is null")
+  int claimOverdueNotices(@Param("ids") Collection<Long> ids, @Param("claim") String claim);
+
+  /**
+   * Lets the overdue notice of the loan be claimed again, for a loan that
+   * was reopened or got another due date.
+   */
+  @Transactional
+  @Modifying
+  @Query(nativeQuery = true, value = "update loan set overdue_notice_claim = null where id = :id")
+  int clearOverdueNoticeClaim(@Param("id") Long id);
+
+  /**
+   * The loans among the ids that {@link #claimOverdueNotices} claimed with
+   * the claim.
+   */
+  @Query(nativeQuery = true, value = "select id from loan where id in :ids and overdue_notice_claim = :claim")
+  List<Long> findOverdueNoticeClaims(@Param("ids") Collection<Long> ids, @Param("claim") String claim);
+
+  @Query(value = "select coalesce(min(l.id), 0) from Loan l")
+  long findMinId();
+
+  @Query(value = "select coalesce(max(l.id), 0) from Loan l")
+  long findMaxId();
+
+  /**
+   * Copies the returned loans up to the cutoff date with an id in
+   * {@code (after, until]} to loan_archive. The id range keeps every batch a
+   * primary key range read, whatever the size of the table; returned is
+   * checked with {@code <> false} because {@code = true} makes H2 walk every
+   * returned loan through an index on returned instead.
+   */
+  @Modifying
+  @Query(nativeQuery = true, value = "insert into loan_archive (id, customer, customer_email, id_book, loan_date, due_date, returned, version, archived_at) "
+      + "select id, customer, customer_email, id_book, loan_date, due_date, returned, version, :archivedAt from loan "
+      + "where id > :after and id <= :until and returned <> false and loan_date <= :cutoff")
+  int copyToArchive(@Param("after") long after, @Param("until") long until, @Param("cutoff") LocalDate cutoff,
+      @Param("archivedAt") LocalDateTime archivedAt);
+
+  /**
+   * Deletes what {@link #copyToArchive} copied for the same arguments, as
+   * long as no loan in the range changed in between.
+   */
+  @Modifying
+  @Query(value = "delete from Loan l where l.id > :after and l.id <= :until and l.returned <> false and l.loanDate <= :cutoff")
+  int deleteArchived(@Param("after") long after, @Param("until") long until, @Param("cutoff") LocalDate cutoff);
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query(value = "select l from Loan l join fetch l.book order by l.id")
+  Stream<Loan> streamAll();
+
+  interface ReturnState {
+    Long getId();
+
+    long getVersion();
+
+    Boolean getReturned();
+
+    LocalDate getDueDate();
+  }
+
+  interface DueLoan {
+    Long getId();
+
+    LocalDate getDueDate();
+  }
+
+  interface LoanCount<K> {
+    K getKey();
 
-  @Query(value = "select l from Loan l where l.loanDate <= :threeDaysAgo and ( l.returned is null or l.returned is false ) ")
-  List<Loan> findByLoanDateLessThanAndNotReturned( @Param("threeDaysAgo") LocalDate threeDaysAgo );
+    long getLoans();
+  }
 }
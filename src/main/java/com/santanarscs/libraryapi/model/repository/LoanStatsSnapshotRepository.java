@@ -0,0 +1,12 @@
+package com.santanarscs.libraryapi.model.repository;
+
+import com.santanarscs.libraryapi.model.entity.LoanStatsSnapshot;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface LoanStatsSnapshotRepository extends JpaRepository<LoanStatsSnapshot, Long> {
+
+  Page<LoanStatsSnapshot> findAllByOrderByTakenAtDesc(Pageable pageable);
+}
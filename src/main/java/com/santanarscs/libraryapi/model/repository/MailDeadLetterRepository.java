@@ -0,0 +1,9 @@
+package com.santanarscs.libraryapi.model.repository;
+
+import com.santanarscs.libraryapi.model.entity.MailDeadLetter;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface MailDeadLetterRepository extends JpaRepository<MailDeadLetter, Long> {
+
+}
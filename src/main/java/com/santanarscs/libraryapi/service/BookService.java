@@ -1,11 +1,16 @@
 package com.santanarscs.libraryapi.service;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 
+import com.santanarscs.libraryapi.api.dto.ImportResultDTO;
+import com.santanarscs.libraryapi.api.dto.SuggestionsDTO;
 import com.santanarscs.libraryapi.model.entity.Book;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 public interface BookService {
   Book save(Book book);
@@ -18,5 +23,23 @@ public interface BookService {
 
   Page<Book> find(Book filter, Pageable pageRequest);
 
+  Slice<Book> findAfter(Book filter, long afterId, int size);
+
+  long count(Book filter);
+
   Optional<Book> getBookByIsbn(String isbn);
+
+  /**
+   * The book of each id, in the order asked, empty where there is none.
+   */
+  List<Optional<Book>> getByIds(List<Long> ids);
+
+  /**
+   * The book of each ISBN, in the order asked, empty where there is none.
+   */
+  List<Optional<Book>> getByIsbns(List<String> isbns);
+
+  ImportResultDTO importBooks(Iterator<Book> books);
+
+  SuggestionsDTO suggest(String prefix, int limit);
 }
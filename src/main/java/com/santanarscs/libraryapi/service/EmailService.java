@@ -1,9 +1,13 @@
 package com.santanarscs.libraryapi.service;
 
-import java.util.List;
+import java.util.Map;
 
 public interface EmailService {
 
-  void sendMails(String message, List<String> mailsList);
+  /**
+   * Queues each message for its address and returns; delivery happens in the
+   * background. Blocks while the send queue is full.
+   */
+  void sendMails(Map<String, String> messagesByAddress);
 
 }
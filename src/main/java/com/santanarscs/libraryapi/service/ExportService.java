@@ -0,0 +1,14 @@
+package com.santanarscs.libraryapi.service;
+
+import java.util.function.Consumer;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+
+public interface ExportService {
+
+  void forEachBook(Consumer<Book> action);
+
+  void forEachLoan(Consumer<Loan> action);
+
+}
@@ -0,0 +1,107 @@
+package com.santanarscs.libraryapi.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+import com.santanarscs.libraryapi.service.lease.JobLeases;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Moves returned loans older than {@code application.loans.archive.after}
+ * from the loan table to loan_archive, so the open loan lookups keep reading
+ * a table that grows with the open and recent loans only. Archived loans are
+ * still found by the loan search when it asks for the history. Of the nodes
+ * sharing the database, the one holding the {@value #ARCHIVE_JOB} lease runs
+ * the archiving.
+ */
+@Service
+public class LoanArchiveService {
+
+  private static final Logger log = LoggerFactory.getLogger(LoanArchiveService.class);
+
+  static final String ARCHIVE_JOB = "loan-archive";
+
+  private final LoanRepository repository;
+  private final TransactionTemplate transactionTemplate;
+  private final JobLeases leases;
+  private final Duration archiveAfter;
+  private final int batchSize;
+  private final Counter archived;
+
+  public LoanArchiveService(LoanRepository repository, TransactionTemplate transactionTemplate,
+      JobLeases leases, MeterRegistry meterRegistry,
+      @Value("${application.loans.archive.after}") Duration archiveAfter,
+      @Value("${application.loans.archive.batch-size}") int batchSize) {
+    this.repository = repository;
+    this.transactionTemplate = transactionTemplate;
+    this.leases = leases;
+    this.archiveAfter = archiveAfter;
+    this.batchSize = batchSize;
+    this.archived = meterRegistry.counter("loans.archived");
+  }
+
+  @Scheduled(cron = "${application.loans.archive.cron}")
+  public void archiveReturnedLoans() {
+    if (!leases.tryAcquire(ARCHIVE_JOB)) {
+      log.info("Loans are archived by another node");
+      return;
+    }
+    try {
+      archive(LocalDate.now());
+    } finally {
+      leases.release(ARCHIVE_JOB);
+    }
+  }
+
+  /**
+   * Walks the loan ids in ranges of {@code batch-size}, each moved in its own
+   * short transaction so the table is never locked for long and an
+   * interrupted run keeps what it already moved. A range where a loan changed
+   * between the copy and the delete is rolled back and left for the next run.
+   *
+   * @return the number of loans archived
+   */
+  public long archive(LocalDate today) {
+    LocalDate cutoff = today.minusDays(archiveAfter.toDays());
+    LocalDateTime archivedAt = LocalDateTime.now();
+    long last = repository.findMaxId();
+    long total = 0;
+    for (long after = Math.max(repository.findMinId(), 1) - 1; after < last; after += batchSize) {
+      long until = Math.min(after + batchSize, last);
+      try {
+        total += moveRange(after, until, cutoff, archivedAt);
+      } catch (ConcurrencyFailureException ex) {
+        log.warn("Loans {} to {} changed while being archived, retrying on the next run", after + 1, until);
+      }
+    }
+    log.info("Archived {} loans returned up to {}", total, cutoff);
+    return total;
+  }
+
+  private int moveRange(long after, long until, LocalDate cutoff, LocalDateTime archivedAt) {
+    Integer moved = transactionTemplate.execute(status -> {
+      int copied = repository.copyToArchive(after, until, cutoff, archivedAt);
+      if (copied == 0) {
+        return 0;
+      }
+      if (repository.deleteArchived(after, until, cutoff) != copied) {
+        throw new ConcurrencyFailureException("Loans changed while being archived");
+      }
+      return copied;
+    });
+    archived.increment(moved);
+    return moved;
+  }
+}
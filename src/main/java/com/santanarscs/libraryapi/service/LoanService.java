@@ -1,13 +1,20 @@
 package com.santanarscs.libraryapi.service;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
 import com.santanarscs.libraryapi.api.dto.LoanFilterDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnResultDTO;
 import com.santanarscs.libraryapi.model.entity.Loan;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Slice;
 
 public interface LoanService {
   Loan save(Loan loan);
@@ -16,7 +23,45 @@ public interface LoanService {
 
   Loan update(Loan loan);
 
-  Page<Loan> find(LoanFilterDTO filter, Pageable pageable);
+  /**
+   * Returns many loans at once, with the outcome of each in the order asked.
+   */
+  List<LoanReturnResultDTO> returnAll(List<LoanReturnDTO> loans);
 
-  List<Loan> getAllLateLoans();
+  Page<LoanDTO> find(LoanFilterDTO filter, Pageable pageable);
+
+  Slice<LoanDTO> findAfter(LoanFilterDTO filter, long afterId, int size);
+
+  long count(LoanFilterDTO filter);
+
+  /**
+   * Loans due on or before the date and not returned, after the id.
+   */
+  default Slice<Loan> getLateLoans(LocalDate today, long afterId, int size) {
+    return getLateLoans(today, afterId, Long.MAX_VALUE, size);
+  }
+
+  /**
+   * Loans due on or before the date and not returned, with an id in
+   * {@code (afterId, untilId]}.
+   */
+  Slice<Loan> getLateLoans(LocalDate today, long afterId, long untilId, int size);
+
+  /**
+   * The lowest and highest loan ids, both zero when there are no loans.
+   */
+  Range<Long> getLoanIds();
+
+  /**
+   * Claims the loans among the ids that are not returned for their overdue
+   * notice and loads them with their books. A loan is claimed once: those
+   * claimed before, on this node or another, are left out.
+   */
+  List<Loan> claimOverdueNotices(Collection<Long> ids);
+
+  /**
+   * Every late loan, with its book, of the customers with a late loan in
+   * {@code (afterId, untilId]}, by customer email and id.
+   */
+  List<Loan> getLateLoansOfCustomersBetween(LocalDate today, long afterId, long untilId);
 }
@@ -0,0 +1,34 @@
+package com.santanarscs.libraryapi.service;
+
+import java.time.LocalDate;
+
+import com.santanarscs.libraryapi.api.dto.LoanStatsDTO;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface LoanStatisticsService {
+
+  /**
+   * The loan counters as of now, read from memory.
+   */
+  LoanStatsDTO getStatistics(LocalDate today);
+
+  long countLoansOfBook(Long bookId);
+
+  long countLoansOfCustomer(String customer);
+
+  /**
+   * The stored snapshots, latest first.
+   */
+  Page<LoanStatsDTO> getSnapshots(Pageable pageable);
+
+  void snapshot();
+
+  /**
+   * Checks the counters against the database and corrects them.
+   *
+   * @return how far off they were
+   */
+  long reconcile();
+}
@@ -1,32 +1,405 @@
 package com.santanarscs.libraryapi.service;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.santanarscs.libraryapi.model.entity.JobCheckpoint;
 import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.model.repository.JobCheckpointRepository;
+import com.santanarscs.libraryapi.service.lease.JobLeases;
+import com.santanarscs.libraryapi.service.mail.LateLoanTemplate;
+import com.santanarscs.libraryapi.service.overdue.DueDatePolicy;
+import com.santanarscs.libraryapi.service.overdue.LoansOverdueEvent;
+import com.santanarscs.libraryapi.service.overdue.OverdueTracker;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Slice;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Service
-@RequiredArgsConstructor
 public class ScheduleService {
 
-  private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
+  private static final Logger log = LoggerFactory.getLogger(ScheduleService.class);
 
-  @Value("${application.mail.lateloans.message}")
-  private String message;
+  private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
+  static final String LATE_LOANS_JOB = "late-loans-mail";
+  static final String LATE_LOANS_PARTITION = LATE_LOANS_JOB + "#";
 
   private final LoanService loanService;
   private final EmailService emailService;
+  private final JobCheckpointRepository checkpointRepository;
+  private final JobLeases leases;
+  private final OverdueTracker overdueTracker;
+  private final LateLoanTemplate template;
+  private final LateLoanTemplate noticeTemplate;
+  private final int chunkSize;
+  private final int partitions;
+  private final int parallelism;
+  private final boolean shareRanges;
+  private final boolean overdueNotices;
+  private final Timer partitionTimer;
+
+  private ExecutorService executor;
+
+  public ScheduleService(LoanService loanService, EmailService emailService,
+      JobCheckpointRepository checkpointRepository, JobLeases leases, OverdueTracker overdueTracker,
+      LateLoanTemplate template,
+      MeterRegistry meterRegistry,
+      @Value("${application.mail.lateloans.chunk-size}") int chunkSize,
+      @Value("${application.mail.lateloans.partitions}") int partitions,
+      @Value("${application.mail.lateloans.parallelism}") int parallelism,
+      @Value("${application.mail.lateloans.share-ranges}") boolean shareRanges,
+      @Value("${application.loans.overdue.enabled}") boolean overdueNotices,
+      @Value("${application.loans.overdue.template}") String noticeTemplate) {
+    if (partitions <= 0 || parallelism <= 0) {
+      throw new IllegalArgumentException("Late loan partitions and parallelism must be positive");
+    }
+    this.loanService = loanService;
+    this.emailService = emailService;
+    this.checkpointRepository = checkpointRepository;
+    this.leases = leases;
+    this.overdueTracker = overdueTracker;
+    this.template = template;
+    this.noticeTemplate = new LateLoanTemplate(noticeTemplate);
+    this.chunkSize = chunkSize;
+    this.partitions = partitions;
+    this.parallelism = parallelism;
+    this.shareRanges = shareRanges;
+    this.overdueNotices = overdueNotices;
+    this.partitionTimer = meterRegistry.timer("late.loans.partition");
+  }
+
+  @PostConstruct
+  public void start() {
+    executor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("late-loans-"));
+  }
 
+  /**
+   * Gives a run in progress a bounded time to finish; whatever it did not
+   * get to is resumed from the checkpoints.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    executor.shutdown();
+    if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Splits the loan ids into {@code application.mail.lateloans.partitions}
+   * ranges and walks them on {@code application.mail.lateloans.parallelism}
+   * threads. Each range reads its late loans by id in chunks, mails one
+   * digest per customer of the chunk, and checkpoints the last mailed id
+   * before reading the next chunk, so a run that was interrupted resumes the
+   * same day with each range right after its own last id. A chunk counts as
+   * mailed once it is queued for sending. The run is finished once every
+   * range is, and a finished run is not repeated the same day. A range that
+   * failed is logged and left unfinished; a run still unfinished the next day
+   * is dropped for that day's run, which mails every loan still late anyway.
+   *
+   * Every node fires this at midnight; the {@value #LATE_LOANS_JOB} lease
+   * decides which one runs. By default the node holding it walks every range
+   * and the others skip the run. With
+   * {@code application.mail.lateloans.share-ranges} the lease only
+   * serializes setting the run up: each node then walks whichever ranges it
+   * claims first, so the run is spread over the nodes that are up. Either
+   * way a range is walked by the node that claimed it only, and one whose
+   * node stopped renewing the claim can be taken over once it expired.
+   *
+   * With {@code application.loans.overdue.enabled} only the loans overdue on
+   * the run date, as {@link DueDatePolicy#overdueUntil} and the loan
+   * statistics count them, are mailed: {@link #notifyOverdueLoans} mailed the
+   * ones falling due that day the moment they did. Without it they are
+   * mailed too, this being the only reminder they get.
+   */
   @Scheduled(cron = CRON_LATE_LOANS)
   public void sendMailToLateLoans() {
-    List<Loan> allLateLoans = loanService.getAllLateLoans();
-    List<String> mailsList = allLateLoans.stream().map(loan -> loan.getCustomerEmail()).collect(Collectors.toList());
-    emailService.sendMails(message, mailsList);
+    long start = System.nanoTime();
+    if (!leases.acquire(LATE_LOANS_JOB, shareRanges ? leases.getTtl() : Duration.ZERO)) {
+      log.info("Late loans are mailed by another node");
+      return;
+    }
+    boolean leased = true;
+    try {
+      JobCheckpoint run = prepare(LocalDate.now());
+      if (shareRanges) {
+        leases.release(LATE_LOANS_JOB);
+        leased = false;
+      }
+      if (run == null) {
+        log.info("Late loans were already mailed today");
+        return;
+      }
+      LocalDate dueUntil = overdueNotices ? DueDatePolicy.overdueUntil(run.getRunDate()) : run.getRunDate();
+      int walked = walkRanges(run, dueUntil);
+      boolean finished = finish(run);
+      log.info("Mailed the late loans of {} in {} ranges in {} ms, run {}", run.getRunDate(), walked,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), finished ? "finished" : "unfinished");
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if (leased) {
+        leases.release(LATE_LOANS_JOB);
+      }
+    }
+  }
+
+  /**
+   * Mails the loans that just became late, a chunk of ids at a time, one
+   * notice per customer of the chunk. They fire on their due date, so the
+   * notice comes from {@code application.loans.overdue.template}, which tells
+   * the loans are due today rather than counting days overdue. Loans returned
+   * since they fired are dropped.
+   *
+   * Every node's tracker fires for the loans it loaded, so each chunk is
+   * claimed in the database before it is mailed: a loan is noticed by
+   * whichever node claims it first, and left out by the others.
+   *
+   * This runs on the tracker's tick, which no longer holds the fired loans,
+   * so a failing chunk does not stop the others. One that could not be
+   * claimed is handed back to the tracker to fire on the next tick; one
+   * claimed but not mailed is logged with its loans, as another try would
+   * find them claimed.
+   */
+  @EventListener
+  public void notifyOverdueLoans(LoansOverdueEvent event) {
+    List<Long> ids = event.getLoanIds();
+    LocalDate today = LocalDate.now();
+    for (int from = 0; from < ids.size(); from += chunkSize) {
+      List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+      List<Loan> claimed;
+      try {
+        claimed = loanService.claimOverdueNotices(chunk);
+      } catch (RuntimeException ex) {
+        log.error("Could not claim the overdue notices of {} loans, retrying them on the next tick", chunk.size(), ex);
+        overdueTracker.retry(chunk);
+        continue;
+      }
+      try {
+        Map<String, String> digests = new LinkedHashMap<>();
+        byCustomer(claimed).forEach((email, loans) -> digests.put(email,
+            noticeTemplate.render(loans.get(0).getCustomer(), loans, today)));
+        send(digests);
+      } catch (RuntimeException ex) {
+        log.error("Could not mail the overdue notices of loans {}", claimed.stream().map(Loan::getId)
+            .collect(Collectors.toList()), ex);
+      }
+    }
+  }
+
+  /**
+   * Even id ranges between the lowest and the highest loan id; the last one
+   * is open ended.
+   */
+  private List<JobCheckpoint> split(LocalDate runDate) {
+    Range<Long> ids = loanService.getLoanIds();
+    long after = ids.getLowerBound().getValue().orElse(0L) - 1;
+    long max = ids.getUpperBound().getValue().orElse(0L);
+    long width = Math.max(1, (max - after + partitions - 1) / partitions);
+    List<JobCheckpoint> ranges = new ArrayList<>(partitions);
+    for (int partition = 0; partition < partitions && (partition == 0 || after < max); partition++) {
+      long until = partition == partitions - 1 || after + width >= max ? Long.MAX_VALUE : after + width;
+      ranges.add(JobCheckpoint.builder()
+          .name(LATE_LOANS_PARTITION + partition)
+          .runDate(runDate)
+          .lastId(after)
+          .untilId(until)
+          .finished(false)
+          .build());
+      after = until;
+    }
+    return ranges;
+  }
+
+  /**
+   * The run to walk: today's unfinished one, or a new one split into ranges;
+   * null when today's run already finished. An unfinished run of an earlier
+   * day is dropped rather than resumed, so today's run is not skipped and its
+   * digests count days overdue from today.
+   */
+  private JobCheckpoint prepare(LocalDate today) {
+    JobCheckpoint run = checkpointRepository.findById(LATE_LOANS_JOB).orElse(null);
+    if (run != null && today.equals(run.getRunDate())) {
+      if (run.getFinished()) {
+        return null;
+      }
+      resume(run);
+      return run;
+    }
+    if (run != null && !run.getFinished()) {
+      log.warn("Dropping the unfinished late loan run of {} for today's run", run.getRunDate());
+    }
+    checkpointRepository.deleteAll(checkpointRepository.findByNamePrefix(LATE_LOANS_PARTITION));
+    checkpointRepository.saveAll(split(today));
+    return checkpointRepository.save(JobCheckpoint.builder()
+        .name(LATE_LOANS_JOB)
+        .runDate(today)
+        .lastId(0L)
+        .finished(false)
+        .build());
+  }
+
+  /**
+   * A run checkpointed before runs were split resumes as one open ended range
+   * after its last id.
+   */
+  private void resume(JobCheckpoint run) {
+    boolean split = checkpointRepository.findByNamePrefix(LATE_LOANS_PARTITION).stream()
+        .anyMatch(range -> run.getRunDate().equals(range.getRunDate()));
+    if (!split) {
+      checkpointRepository.save(JobCheckpoint.builder()
+          .name(LATE_LOANS_PARTITION + 0)
+          .runDate(run.getRunDate())
+          .lastId(run.getLastId())
+          .untilId(Long.MAX_VALUE)
+          .finished(false)
+          .build());
+    }
+  }
+
+  /**
+   * Each thread claims and walks ranges of the run until none is left that
+   * this node did not try already.
+   *
+   * @return how many ranges this node walked
+   */
+  private int walkRanges(JobCheckpoint run, LocalDate dueUntil) throws InterruptedException {
+    Set<String> tried = ConcurrentHashMap.newKeySet();
+    Callable<Integer> worker = () -> {
+      int walked = 0;
+      for (JobCheckpoint range = claimNext(run, tried); range != null; range = claimNext(run, tried)) {
+        try {
+          walk(range, run.getRunDate(), dueUntil);
+          walked++;
+        } catch (RuntimeException ex) {
+          log.error("Could not mail the late loans of range {}, it resumes on the next run", range.getName(), ex);
+        }
+      }
+      return walked;
+    };
+    int walked = 0;
+    for (Future<Integer> walks : executor.invokeAll(Collections.nCopies(parallelism, worker))) {
+      try {
+        walked += walks.get();
+      } catch (ExecutionException ex) {
+        log.error("Could not claim the late loan ranges", ex.getCause());
+      }
+    }
+    return walked;
+  }
+
+  private JobCheckpoint claimNext(JobCheckpoint run, Set<String> tried) {
+    for (JobCheckpoint range : checkpointRepository.findByNamePrefix(LATE_LOANS_PARTITION)) {
+      if (!range.getFinished() && run.getRunDate().equals(range.getRunDate()) && tried.add(range.getName())
+          && leases.claim(range.getName())) {
+        return checkpointRepository.findById(range.getName()).orElse(null);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Marks the run finished once every range is, whichever node walked them.
+   */
+  private boolean finish(JobCheckpoint run) {
+    boolean finished = checkpointRepository.findByNamePrefix(LATE_LOANS_PARTITION).stream()
+        .filter(range -> run.getRunDate().equals(range.getRunDate()))
+        .allMatch(JobCheckpoint::getFinished);
+    if (finished) {
+      run.setFinished(true);
+      checkpointRepository.save(run);
+    }
+    return finished;
+  }
+
+  private void walk(JobCheckpoint range, LocalDate runDate, LocalDate dueUntil) {
+    long start = System.nanoTime();
+    long after = range.getLastId();
+    long until = range.getUntilId() != null ? range.getUntilId() : Long.MAX_VALUE;
+    long loans = 0;
+    long mails = 0;
+    Slice<Loan> lateLoans;
+    do {
+      lateLoans = loanService.getLateLoans(dueUntil, range.getLastId(), until, chunkSize);
+      List<Loan> chunk = lateLoans.getContent();
+      if (!chunk.isEmpty()) {
+        loans += chunk.size();
+        mails += mail(chunk, range.getLastId(), runDate, dueUntil);
+        range.setLastId(chunk.get(chunk.size() - 1).getId());
+      }
+      range.setFinished(!lateLoans.hasNext());
+      if (!leases.saveClaimed(range)) {
+        throw new IllegalStateException("Another node took over late loan range " + range.getName());
+      }
+      if (!shareRanges && lateLoans.hasNext() && !leases.renew(LATE_LOANS_JOB)) {
+        throw new IllegalStateException("Another node took over the late loans mail");
+      }
+    } while (lateLoans.hasNext());
+    long nanos = System.nanoTime() - start;
+    partitionTimer.record(nanos, TimeUnit.NANOSECONDS);
+    log.info("Late loan range {} ({}, {}]: {} loans, {} mails in {} ms", range.getName(), after, until, loans, mails,
+        TimeUnit.NANOSECONDS.toMillis(nanos));
+  }
+
+  /**
+   * One digest per customer of the chunk, listing every late loan they have,
+   * overdue as of the run date. A customer with late loans in several chunks
+   * or ranges is mailed from the one holding their first late loan only, so
+   * each gets a single digest per run. A customer whose first late loan is
+   * returned while the run is on can be skipped by it.
+   *
+   * @return how many were queued
+   */
+  private int mail(List<Loan> chunk, long after, LocalDate runDate, LocalDate dueUntil) {
+    Set<Long> ids = new HashSet<>();
+    chunk.forEach(loan -> ids.add(loan.getId()));
+    long until = chunk.get(chunk.size() - 1).getId();
+    Map<String, String> digests = new LinkedHashMap<>();
+    byCustomer(loanService.getLateLoansOfCustomersBetween(dueUntil, after, until)).forEach((email, loans) -> {
+      if (ids.contains(loans.get(0).getId())) {
+        digests.put(email, template.render(loans.get(0).getCustomer(), loans, runDate));
+      }
+    });
+    return send(digests);
+  }
+
+  private static Map<String, List<Loan>> byCustomer(List<Loan> loans) {
+    return loans.stream().filter(loan -> loan.getCustomerEmail() != null)
+        .collect(Collectors.groupingBy(Loan::getCustomerEmail, LinkedHashMap::new, Collectors.toList()));
+  }
+
+  private int send(Map<String, String> digests) {
+    if (!digests.isEmpty()) {
+      emailService.sendMails(digests);
+    }
+    return digests.size();
   }
 }
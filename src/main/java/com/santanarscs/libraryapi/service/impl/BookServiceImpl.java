@@ -1,74 +1,398 @@
 package com.santanarscs.libraryapi.service.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import com.santanarscs.libraryapi.api.dto.ImportErrorDTO;
+import com.santanarscs.libraryapi.api.dto.ImportResultDTO;
+import com.santanarscs.libraryapi.api.dto.SuggestionsDTO;
+import com.santanarscs.libraryapi.datasource.ReadWriteRoutingDataSource;
 import com.santanarscs.libraryapi.exception.BusinessException;
 import com.santanarscs.libraryapi.model.entity.Book;
 import com.santanarscs.libraryapi.model.repository.BookRepository;
 import com.santanarscs.libraryapi.service.BookService;
+import com.santanarscs.libraryapi.service.search.BookIndexer;
+import com.santanarscs.libraryapi.service.search.BookSearchIndex;
+import com.santanarscs.libraryapi.service.search.BookSuggestIndex;
+import com.santanarscs.libraryapi.service.search.IsbnBloomFilter;
 
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.ExampleMatcher.StringMatcher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 @Service
 public class BookServiceImpl implements BookService {
 
+  public static final String BOOKS_CACHE = "books";
+  public static final String BOOKS_BY_ISBN_CACHE = "booksByIsbn";
+
+  private static final int IMPORT_CHUNK_SIZE = 1000;
+  private static final int MAX_REPORTED_ERRORS = 1000;
+  private static final int LOOKUP_CHUNK_SIZE = 500;
+
   private BookRepository repository;
+  private BookIndexer indexer;
+  private BookSearchIndex searchIndex;
+  private BookSuggestIndex suggestIndex;
+  private IsbnBloomFilter isbnFilter;
+  private CacheManager cacheManager;
 
-  public BookServiceImpl(BookRepository repository) {
+  public BookServiceImpl(BookRepository repository, BookIndexer indexer, BookSearchIndex searchIndex,
+      BookSuggestIndex suggestIndex, IsbnBloomFilter isbnFilter, CacheManager cacheManager) {
     this.repository = repository;
+    this.indexer = indexer;
+    this.searchIndex = searchIndex;
+    this.suggestIndex = suggestIndex;
+    this.isbnFilter = isbnFilter;
+    this.cacheManager = cacheManager;
   }
 
   @Override
   public Book save(Book book) {
-    if (repository.existsByIsbn(book.getIsbn())) {
+    if (isbnExists(book.getIsbn())) {
+      throw new BusinessException("Alread exists ISBN registred");
+    }
+    Book saved;
+    try {
+      saved = repository.save(book);
+    } catch (DataIntegrityViolationException ex) {
       throw new BusinessException("Alread exists ISBN registred");
     }
-    return repository.save(book);
+    indexer.indexed(saved);
+    return saved;
   }
 
+  /**
+   * Read from the primary even with a replica: the cached copy lives far
+   * longer than the replica lag.
+   */
   @Override
+  @Cacheable(cacheNames = BOOKS_CACHE, unless = "#result == null")
+  @Transactional(readOnly = true)
   public Optional<Book> getById(Long id) {
-    return repository.findById(id);
+    return ReadWriteRoutingDataSource.readPrimary(() -> repository.findById(id));
   }
 
   @Override
+  @Caching(evict = {
+      @CacheEvict(cacheNames = BOOKS_CACHE, key = "#book.id"),
+      @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#book.isbn", condition = "#book.isbn != null") })
   public void delete(Book book) {
     if (book == null || book.getId() == null) {
       throw new IllegalArgumentException("Book id cant be null");
     }
     this.repository.delete(book);
-
+    indexer.removed(book);
   }
 
+  /**
+   * The api never changes the isbn of a stored book, so evicting the entry of
+   * the current isbn is enough to drop the stale copy from both caches.
+   */
   @Override
+  @Caching(evict = {
+      @CacheEvict(cacheNames = BOOKS_CACHE, key = "#book.id"),
+      @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#book.isbn", condition = "#book.isbn != null") })
   public Book update(Book book) {
     if (book == null || book.getId() == null) {
       throw new IllegalArgumentException("Book id cant be null");
     }
-    return this.repository.save(book);
-
+    Book saved = this.repository.save(book);
+    indexer.indexed(saved);
+    return saved;
   }
 
+  /**
+   * Served by the search index when it is ready and the page needs no sort
+   * order other than the ranking, otherwise by a contains query on the
+   * table. The query ignores the version, a primitive that would otherwise
+   * match only books never updated, and the loans.
+   */
   @Override
+  @Transactional(readOnly = true)
   public Page<Book> find(Book filter, Pageable pageRequest) {
+    if (pageRequest.isPaged() && pageRequest.getSort().isUnsorted() && searchIndex.canSearch(filter)) {
+      return findInIndex(filter, pageRequest);
+    }
     Example<Book> example = Example.of(filter,
         ExampleMatcher
             .matching()
             .withIgnoreCase()
             .withIgnoreNullValues()
+            .withIgnorePaths("version", "loans")
             .withStringMatcher(StringMatcher.CONTAINING));
 
     return repository.findAll(example, pageRequest);
   }
 
+  /**
+   * Loads the ranked page of ids with one primary key query. A book deleted
+   * between the two steps is left out of the page.
+   */
+  private Page<Book> findInIndex(Book filter, Pageable pageRequest) {
+    BookSearchIndex.Hits hits = searchIndex.search(filter, pageRequest.getOffset(), pageRequest.getPageSize());
+    Map<Long, Book> books = repository.findAllById(hits.getIds()).stream()
+        .collect(Collectors.toMap(Book::getId, Function.identity()));
+    List<Book> content = hits.getIds().stream()
+        .map(books::get)
+        .filter(book -> book != null)
+        .collect(Collectors.toList());
+    return new PageImpl<>(content, pageRequest, hits.getTotal());
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Slice<Book> findAfter(Book filter, long afterId, int size) {
+    return repository.findAfter(afterId, filter, size);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public long count(Book filter) {
+    return repository.countByFilter(filter);
+  }
+
+  /**
+   * Read from the primary, as {@link #getById}.
+   */
   @Override
+  @Cacheable(cacheNames = BOOKS_BY_ISBN_CACHE, unless = "#result == null")
+  @Transactional(readOnly = true)
   public Optional<Book> getBookByIsbn(String isbn) {
-    return repository.findByIsbn(isbn);
+    return ReadWriteRoutingDataSource.readPrimary(() -> repository.findByIsbn(isbn));
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<Optional<Book>> getByIds(List<Long> ids) {
+    return getAll(ids, BOOKS_CACHE, repository::findAllById, Book::getId);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<Optional<Book>> getByIsbns(List<String> isbns) {
+    return getAll(isbns, BOOKS_BY_ISBN_CACHE, repository::findByIsbnIn, Book::getIsbn);
+  }
+
+  /**
+   * Takes what it can from the same cache {@link #getById} and
+   * {@link #getBookByIsbn} use and loads the rest with one {@code in} query
+   * per chunk from the primary, caching what it finds. Repeated keys are
+   * loaded once.
+   */
+  private <K> List<Optional<Book>> getAll(List<K> keys, String cacheName,
+      Function<Collection<K>, List<Book>> finder, Function<Book, K> keyOf) {
+    Cache cache = cacheManager.getCache(cacheName);
+    Map<K, Book> found = new HashMap<>();
+    Set<K> missing = new LinkedHashSet<>();
+    for (K key : keys) {
+      if (key == null || found.containsKey(key) || missing.contains(key)) {
+        continue;
+      }
+      Book cached = cache == null ? null : cache.get(key, Book.class);
+      if (cached != null) {
+        found.put(key, cached);
+      } else {
+        missing.add(key);
+      }
+    }
+    List<K> chunk = new ArrayList<>();
+    for (Iterator<K> it = missing.iterator(); it.hasNext();) {
+      chunk.add(it.next());
+      if (chunk.size() == LOOKUP_CHUNK_SIZE || !it.hasNext()) {
+        List<K> keysToLoad = chunk;
+        for (Book book : ReadWriteRoutingDataSource.readPrimary(() -> finder.apply(keysToLoad))) {
+          K key = keyOf.apply(book);
+          found.put(key, book);
+          if (cache != null) {
+            cache.put(key, book);
+          }
+        }
+        chunk = new ArrayList<>();
+      }
+    }
+    return keys.stream()
+        .map(key -> Optional.ofNullable(key == null ? null : found.get(key)))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public ImportResultDTO importBooks(Iterator<Book> books) {
+    ImportReport report = new ImportReport();
+    Map<Long, Book> chunk = new LinkedHashMap<>();
+    long row = 0;
+    while (true) {
+      Book book;
+      try {
+        if (!books.hasNext()) {
+          break;
+        }
+        book = books.next();
+      } catch (RuntimeException ex) {
+        report.fail(row + 1, null, "Malformed row, import stopped: " + ex.getMessage());
+        break;
+      }
+      chunk.put(++row, book);
+      if (chunk.size() == IMPORT_CHUNK_SIZE) {
+        importChunk(chunk, report);
+        chunk.clear();
+      }
+    }
+    importChunk(chunk, report);
+    return report.toDTO();
+  }
+
+  /**
+   * Served by the suggestion index once it is ready, otherwise by prefix
+   * queries on the table.
+   */
+  @Override
+  @Transactional(readOnly = true)
+  public SuggestionsDTO suggest(String prefix, int limit) {
+    if (!StringUtils.hasLength(prefix)) {
+      return SuggestionsDTO.builder().titles(List.of()).authors(List.of()).build();
+    }
+    if (suggestIndex.isReady()) {
+      return SuggestionsDTO.builder()
+          .titles(suggestIndex.suggestTitles(prefix, limit))
+          .authors(suggestIndex.suggestAuthors(prefix, limit))
+          .build();
+    }
+    String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    return SuggestionsDTO.builder()
+        .titles(repository.findTitlesStartingWith(pattern, PageRequest.of(0, limit)))
+        .authors(repository.findAuthorsStartingWith(pattern, PageRequest.of(0, limit)))
+        .build();
+  }
+
+  /**
+   * Checks the ISBNs of a chunk with one query and inserts the new books with
+   * one batched saveAll. When the batch hits the unique ISBN index (a
+   * concurrent insert) the chunk is retried row by row so only the
+   * offending rows are reported.
+   */
+  private void importChunk(Map<Long, Book> chunk, ImportReport report) {
+    Map<String, Long> rowsByIsbn = new LinkedHashMap<>();
+    Map<String, Book> booksByIsbn = new LinkedHashMap<>();
+    chunk.forEach((row, book) -> {
+      if (!StringUtils.hasText(book.getTitle()) || !StringUtils.hasText(book.getAuthor())
+          || !StringUtils.hasText(book.getIsbn())) {
+        report.fail(row, book.getIsbn(), "Title, author and isbn are required");
+      } else if (rowsByIsbn.containsKey(book.getIsbn())) {
+        report.fail(row, book.getIsbn(), "Duplicated ISBN in import");
+      } else {
+        rowsByIsbn.put(book.getIsbn(), row);
+        booksByIsbn.put(book.getIsbn(), book);
+      }
+    });
+    if (booksByIsbn.isEmpty()) {
+      return;
+    }
+
+    Set<String> existing = existingIsbns(booksByIsbn.keySet());
+    List<Book> newBooks = new ArrayList<>(booksByIsbn.size());
+    booksByIsbn.forEach((isbn, book) -> {
+      if (existing.contains(isbn)) {
+        report.fail(rowsByIsbn.get(isbn), isbn, "Alread exists ISBN registred");
+      } else {
+        book.setId(null);
+        newBooks.add(book);
+      }
+    });
+    if (newBooks.isEmpty()) {
+      return;
+    }
+
+    try {
+      repository.saveAll(newBooks).forEach(indexer::indexed);
+      report.imported(newBooks.size());
+    } catch (DataIntegrityViolationException ex) {
+      for (Book book : newBooks) {
+        book.setId(null);
+        try {
+          indexer.indexed(repository.save(book));
+          report.imported(1);
+        } catch (DataIntegrityViolationException rowEx) {
+          report.fail(rowsByIsbn.get(book.getIsbn()), book.getIsbn(), "Alread exists ISBN registred");
+        }
+      }
+    }
+  }
+
+  /**
+   * The ISBN filter answers for ISBNs that are certainly new, the database
+   * for the rest. The unique index still has the last word on a race.
+   */
+  private boolean isbnExists(String isbn) {
+    if (isbn == null || !isbnFilter.isReady()) {
+      return repository.existsByIsbn(isbn);
+    }
+    if (!isbnFilter.mightContain(isbn)) {
+      return false;
+    }
+    boolean exists = repository.existsByIsbn(isbn);
+    if (!exists) {
+      isbnFilter.falsePositives(1);
+    }
+    return exists;
+  }
+
+  private Set<String> existingIsbns(Collection<String> isbns) {
+    if (!isbnFilter.isReady()) {
+      return repository.findExistingIsbns(isbns);
+    }
+    List<String> candidates = isbns.stream().filter(isbnFilter::mightContain).collect(Collectors.toList());
+    if (candidates.isEmpty()) {
+      return Set.of();
+    }
+    Set<String> existing = repository.findExistingIsbns(candidates);
+    isbnFilter.falsePositives(candidates.size() - existing.size());
+    return existing;
+  }
+
+  private static class ImportReport {
+    private long imported;
+    private long failed;
+    private final List<ImportErrorDTO> errors = new ArrayList<>();
+
+    void imported(int count) {
+      imported += count;
+    }
+
+    void fail(long row, String isbn, String message) {
+      failed++;
+      if (errors.size() < MAX_REPORTED_ERRORS) {
+        errors.add(ImportErrorDTO.builder().row(row).isbn(isbn).message(message).build());
+      }
+    }
+
+    ImportResultDTO toDTO() {
+      return ImportResultDTO.builder().imported(imported).failed(failed).errors(errors).build();
+    }
   }
 
 }
@@ -1,12 +1,15 @@
 package com.santanarscs.libraryapi.service.impl;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import com.santanarscs.libraryapi.service.EmailService;
+import com.santanarscs.libraryapi.service.mail.MailDispatcher;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
 import lombok.RequiredArgsConstructor;
@@ -17,19 +20,31 @@ public class EmailServiceImpl implements EmailService {
 
   @Value("${application.mail.default-remetent}")
   private String remetent;
-  private final JavaMailSender javaMailSender;
+  private final MailDispatcher mailDispatcher;
 
+  /**
+   * Queues one message per recipient, so no address sees the others and a bad
+   * address only fails its own message. The {@link MailDispatcher} sends them
+   * in the background.
+   */
   @Override
-  public void sendMails(String message, List<String> mailsList) {
-    SimpleMailMessage mailMessage = new SimpleMailMessage();
-    String[] mails = mailsList.toArray(new String[mailsList.size()]);
-
-    mailMessage.setFrom(remetent);
-    mailMessage.setSubject("Livro com empréstimo atrasado.");
-    mailMessage.setText(message);
-    mailMessage.setTo(mails);
-
-    javaMailSender.send(mailMessage);
+  public void sendMails(Map<String, String> messagesByAddress) {
+    List<SimpleMailMessage> mailMessages = new ArrayList<>(messagesByAddress.size());
+    messagesByAddress.forEach((mail, message) -> {
+      SimpleMailMessage mailMessage = new SimpleMailMessage();
+      mailMessage.setFrom(remetent);
+      mailMessage.setSubject("Livro com empréstimo atrasado.");
+      mailMessage.setText(message);
+      mailMessage.setTo(mail);
+      mailMessages.add(mailMessage);
+    });
+
+    try {
+      mailDispatcher.dispatch(mailMessages);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new MailSendException("Interrupted while queueing mails", ex);
+    }
   }
 
 }
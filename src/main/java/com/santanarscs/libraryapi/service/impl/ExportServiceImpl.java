@@ -0,0 +1,61 @@
+package com.santanarscs.libraryapi.service.impl;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.model.repository.BookRepository;
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+import com.santanarscs.libraryapi.service.ExportService;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.RequiredArgsConstructor;
+
+@Service
+@RequiredArgsConstructor
+public class ExportServiceImpl implements ExportService {
+
+  /**
+   * Rows handed to the action before the persistence context is cleared, so
+   * memory stays flat however large the table is.
+   */
+  private static final int CLEAR_INTERVAL = 1000;
+
+  private final BookRepository bookRepository;
+  private final LoanRepository loanRepository;
+  private final EntityManager entityManager;
+
+  @Override
+  @Transactional(readOnly = true)
+  public void forEachBook(Consumer<Book> action) {
+    try (Stream<Book> books = bookRepository.streamAll()) {
+      forEach(books, action);
+    }
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public void forEachLoan(Consumer<Loan> action) {
+    try (Stream<Loan> loans = loanRepository.streamAll()) {
+      forEach(loans, action);
+    }
+  }
+
+  private <T> void forEach(Stream<T> rows, Consumer<T> action) {
+    Iterator<T> iterator = rows.iterator();
+    int count = 0;
+    while (iterator.hasNext()) {
+      action.accept(iterator.next());
+      if (++count % CLEAR_INTERVAL == 0) {
+        entityManager.clear();
+      }
+    }
+  }
+
+}
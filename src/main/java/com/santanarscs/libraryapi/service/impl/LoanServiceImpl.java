@@ -1,56 +1,279 @@
 package com.santanarscs.libraryapi.service.impl;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
 import com.santanarscs.libraryapi.api.dto.LoanFilterDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnResultDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnResultDTO.Status;
 import com.santanarscs.libraryapi.exception.BusinessException;
 import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.model.repository.LoanHistoryRepository;
 import com.santanarscs.libraryapi.model.repository.LoanRepository;
+import com.santanarscs.libraryapi.model.repository.LoanRepository.ReturnState;
 import com.santanarscs.libraryapi.service.LoanService;
+import com.santanarscs.libraryapi.service.overdue.DueDatePolicy;
+import com.santanarscs.libraryapi.service.overdue.OverdueTracker;
+import com.santanarscs.libraryapi.service.stats.LoanStatistics;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Range;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 public class LoanServiceImpl implements LoanService {
 
+  private static final int RETURN_CHUNK_SIZE = 500;
+
   private LoanRepository repository;
+  private LoanHistoryRepository historyRepository;
+  private LoanStatistics statistics;
+  private DueDatePolicy dueDatePolicy;
+  private OverdueTracker overdueTracker;
 
-  public LoanServiceImpl(LoanRepository repository) {
+  public LoanServiceImpl(LoanRepository repository, LoanHistoryRepository historyRepository,
+      LoanStatistics statistics, DueDatePolicy dueDatePolicy, OverdueTracker overdueTracker) {
     this.repository = repository;
+    this.historyRepository = historyRepository;
+    this.statistics = statistics;
+    this.dueDatePolicy = dueDatePolicy;
+    this.overdueTracker = overdueTracker;
   }
 
+  /**
+   * The exists check turns most conflicts away cheaply; two requests racing
+   * past it are settled by the unique open loan index, so no lock is needed.
+   */
   @Override
   public Loan save(Loan loan) {
     if (repository.existsByBookAndNotReturned(loan.getBook())) {
       throw new BusinessException("Book already loaned");
     }
-    return repository.save(loan);
+    if (loan.getDueDate() == null) {
+      loan.setDueDate(dueDatePolicy.dueDate(loan));
+    }
+    Loan saved;
+    try {
+      saved = repository.save(loan);
+    } catch (DataIntegrityViolationException ex) {
+      throw new BusinessException("Book already loaned");
+    }
+    afterCommit(() -> {
+      statistics.loaned(saved);
+      if (!Boolean.TRUE.equals(saved.getReturned())) {
+        overdueTracker.track(saved.getId(), saved.getDueDate());
+      }
+    });
+    return saved;
   }
 
   @Override
+  @Transactional(readOnly = true)
   public Optional<Loan> getById(Long id) {
     return repository.findById(id);
   }
 
+  /**
+   * The state the loan had is read first, to tell the statistics and the
+   * overdue tracker whether it was returned, reopened or got another due
+   * date. It is read after the loan being saved was, so if the loan changed
+   * in between the save fails on the version and nothing is counted. A loan
+   * reopened or due on another day gets its overdue notice claim cleared, so
+   * it is noticed again when it falls due.
+   */
   @Override
   public Loan update(Loan loan) {
-    return repository.save(loan);
+    ReturnState before = loan.getId() == null ? null
+        : repository.findReturnStates(List.of(loan.getId())).stream().findFirst().orElse(null);
+    Loan saved;
+    try {
+      saved = repository.save(loan);
+    } catch (DataIntegrityViolationException ex) {
+      throw new BusinessException("Book already loaned");
+    }
+    boolean wasOpen = before != null && !Boolean.TRUE.equals(before.getReturned());
+    boolean open = !Boolean.TRUE.equals(saved.getReturned());
+    boolean reopened = before != null && !wasOpen && open;
+    boolean moved = wasOpen && open && !Objects.equals(before.getDueDate(), saved.getDueDate());
+    if (reopened || moved) {
+      repository.clearOverdueNoticeClaim(saved.getId());
+    }
+    afterCommit(() -> {
+      if (before == null) {
+        statistics.loaned(saved);
+      } else if (wasOpen && !open) {
+        statistics.returned(before.getDueDate());
+        overdueTracker.untrack(saved.getId());
+      } else if (reopened) {
+        statistics.reopened(saved.getDueDate());
+        overdueTracker.track(saved.getId(), saved.getDueDate());
+      } else if (moved) {
+        statistics.returned(before.getDueDate());
+        statistics.reopened(saved.getDueDate());
+        overdueTracker.track(saved.getId(), saved.getDueDate());
+      }
+    });
+    return saved;
   }
 
+  /**
+   * Each chunk of ids costs one select of their state and one update per
+   * distinct version among the returnable loans, which is usually one: the
+   * loans are returned by set-based updates instead of a select and a merge
+   * each. The update only touches loans still at the version just read, so
+   * a loan changed in between is caught by the count and the whole call
+   * fails as an optimistic lock conflict, to be retried.
+   */
   @Override
-  public Page<Loan> find(LoanFilterDTO filter, Pageable pageable) {
+  @Transactional
+  public List<LoanReturnResultDTO> returnAll(List<LoanReturnDTO> loans) {
+    Map<Long, Long> expectedVersions = new LinkedHashMap<>();
+    loans.forEach(loan -> expectedVersions.putIfAbsent(loan.getId(), loan.getVersion()));
+    Map<Long, Status> statuses = new HashMap<>();
+    List<Long> chunk = new ArrayList<>();
+    for (Long id : expectedVersions.keySet()) {
+      chunk.add(id);
+      if (chunk.size() == RETURN_CHUNK_SIZE) {
+        returnChunk(chunk, expectedVersions, statuses);
+        chunk = new ArrayList<>();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      returnChunk(chunk, expectedVersions, statuses);
+    }
+    return loans.stream()
+        .map(loan -> LoanReturnResultDTO.builder().id(loan.getId()).status(statuses.get(loan.getId())).build())
+        .collect(Collectors.toList());
+  }
+
+  private void returnChunk(List<Long> ids, Map<Long, Long> expectedVersions, Map<Long, Status> statuses) {
+    Map<Long, ReturnState> states = repository.findReturnStates(ids).stream()
+        .collect(Collectors.toMap(ReturnState::getId, Function.identity()));
+    Map<Long, List<Long>> returnableByVersion = new HashMap<>();
+    for (Long id : ids) {
+      ReturnState state = states.get(id);
+      Long expectedVersion = expectedVersions.get(id);
+      if (state == null) {
+        statuses.put(id, Status.NOT_FOUND);
+      } else if (Boolean.TRUE.equals(state.getReturned())) {
+        statuses.put(id, Status.ALREADY_RETURNED);
+      } else if (expectedVersion != null && expectedVersion != state.getVersion()) {
+        statuses.put(id, Status.CONFLICT);
+      } else {
+        returnableByVersion.computeIfAbsent(state.getVersion(), version -> new ArrayList<>()).add(id);
+      }
+    }
+    returnableByVersion.forEach((version, returnable) -> {
+      if (repository.markReturned(returnable, version) != returnable.size()) {
+        throw new ObjectOptimisticLockingFailureException(Loan.class, returnable);
+      }
+      returnable.forEach(id -> statuses.put(id, Status.RETURNED));
+      afterCommit(() -> returnable.forEach(id -> {
+        statistics.returned(states.get(id).getDueDate());
+        overdueTracker.untrack(id);
+      }));
+    });
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Page<LoanDTO> find(LoanFilterDTO filter, Pageable pageable) {
+    if (filter.isIncludeArchived()) {
+      return historyRepository.findByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer(), pageable);
+    }
     return repository.findByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer(), pageable);
   }
 
   @Override
-  public List<Loan> getAllLateLoans() {
-    final Integer loanDays = 4;
-    LocalDate threeDaysAgo = LocalDate.now().minusDays(loanDays);
-    return repository.findByLoanDateLessThanAndNotReturned(threeDaysAgo);
+  @Transactional(readOnly = true)
+  public Slice<LoanDTO> findAfter(LoanFilterDTO filter, long afterId, int size) {
+    if (filter.isIncludeArchived()) {
+      return historyRepository.findByBookIsbnOrCustomerAfter(filter.getIsbn(), filter.getCustomer(), afterId,
+          PageRequest.of(0, size));
+    }
+    return repository.findByBookIsbnOrCustomerAfter(filter.getIsbn(), filter.getCustomer(), afterId, PageRequest.of(0, size));
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public long count(LoanFilterDTO filter) {
+    if (filter.isIncludeArchived()) {
+      return historyRepository.countByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer());
+    }
+    return repository.countByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer());
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Slice<Loan> getLateLoans(LocalDate today, long afterId, long untilId, int size) {
+    return repository.findLateLoansBetween(today, afterId, untilId, PageRequest.of(0, size));
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Range<Long> getLoanIds() {
+    return Range.closed(repository.findMinId(), repository.findMaxId());
+  }
+
+  /**
+   * Claimed and loaded by primary key, so it stays cheap whatever the number
+   * of open loans. The claim commits with this transaction, before any
+   * notice is mailed: a notice that then fails is dead lettered rather than
+   * mailed again by another node.
+   */
+  @Override
+  @Transactional
+  public List<Loan> claimOverdueNotices(Collection<Long> ids) {
+    String claim = UUID.randomUUID().toString();
+    if (repository.claimOverdueNotices(ids, claim) == 0) {
+      return List.of();
+    }
+    return repository.findAllWithBookById(repository.findOverdueNoticeClaims(ids, claim));
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<Loan> getLateLoansOfCustomersBetween(LocalDate today, long afterId, long untilId) {
+    return repository.findOpenLoansOfCustomersBetween(today, afterId, untilId).stream()
+        .filter(loan -> loan.getDueDate() != null && !loan.getDueDate().isAfter(today))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Counts only what was committed: inside a transaction the statistics wait
+   * for its commit, outside one the repository call has already committed.
+   */
+  private static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
   }
 
 }
@@ -0,0 +1,211 @@
+package com.santanarscs.libraryapi.service.impl;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.santanarscs.libraryapi.api.dto.LoanStatsDTO;
+import com.santanarscs.libraryapi.model.entity.LoanStatsSnapshot;
+import com.santanarscs.libraryapi.model.repository.LoanHistoryRepository;
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+import com.santanarscs.libraryapi.model.repository.LoanRepository.LoanCount;
+import com.santanarscs.libraryapi.model.repository.LoanStatsSnapshotRepository;
+import com.santanarscs.libraryapi.service.LoanStatisticsService;
+import com.santanarscs.libraryapi.service.lease.JobLeases;
+import com.santanarscs.libraryapi.service.overdue.DueDatePolicy;
+import com.santanarscs.libraryapi.service.stats.LoanStatistics;
+import com.santanarscs.libraryapi.service.stats.LoanStatistics.Counts;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Serves the dashboards from {@link LoanStatistics} and looks after it: the
+ * counters are loaded from the database once the application is up, checked
+ * against it again every {@code application.loans.stats.reconcile-cron}, and
+ * copied to loan_stats_snapshot every
+ * {@code application.loans.stats.snapshot-interval}.
+ *
+ * The counters of a node follow the loans made and returned through it. With
+ * several nodes on one database each one also misses the others' writes until
+ * its next reconciliation, so the nodes agree only right after one, and
+ * {@code /api/loans/stats} can differ by the writes made elsewhere since.
+ * Only the node holding the {@value #SNAPSHOT_JOB} lease stores snapshots; it
+ * keeps the lease for its ttl, so the others skip the intervals in between.
+ *
+ * The database is read in a read-write transaction on purpose: a replica
+ * that is behind would show up as drift and be "corrected" into the
+ * counters.
+ */
+@Service
+public class LoanStatisticsServiceImpl implements LoanStatisticsService {
+
+  private static final Logger log = LoggerFactory.getLogger(LoanStatisticsServiceImpl.class);
+
+  public static final String SNAPSHOT_JOB = "loan-stats-snapshot";
+
+  private final LoanStatistics statistics;
+  private final LoanRepository loanRepository;
+  private final LoanHistoryRepository historyRepository;
+  private final LoanStatsSnapshotRepository snapshotRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final JobLeases leases;
+  private final boolean enabled;
+  private final Counter drift;
+  private volatile LocalDateTime reconciledAt;
+
+  public LoanStatisticsServiceImpl(LoanStatistics statistics, LoanRepository loanRepository,
+      LoanHistoryRepository historyRepository, LoanStatsSnapshotRepository snapshotRepository,
+      TransactionTemplate transactionTemplate, JobLeases leases, MeterRegistry meterRegistry,
+      @Value("${application.loans.stats.enabled}") boolean enabled) {
+    this.statistics = statistics;
+    this.loanRepository = loanRepository;
+    this.historyRepository = historyRepository;
+    this.snapshotRepository = snapshotRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.leases = leases;
+    this.enabled = enabled;
+    this.drift = meterRegistry.counter("loans.stats.drift");
+    Gauge.builder("loans.overdue", this, service -> service.overdueLoans(LocalDate.now())).register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void reconcileOnStartup() {
+    if (!enabled) {
+      return;
+    }
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("loan-stats-");
+    threadFactory.setDaemon(true);
+    threadFactory.newThread(() -> {
+      try {
+        reconcile();
+      } catch (RuntimeException ex) {
+        log.error("Could not load the loan statistics", ex);
+      }
+    }).start();
+  }
+
+  @Override
+  public LoanStatsDTO getStatistics(LocalDate today) {
+    return LoanStatsDTO.builder()
+        .openLoans(statistics.openLoans())
+        .overdueLoans(overdueLoans(today))
+        .totalLoans(statistics.totalLoans())
+        .takenAt(LocalDateTime.now())
+        .reconciledAt(reconciledAt)
+        .build();
+  }
+
+  @Override
+  public long countLoansOfBook(Long bookId) {
+    return statistics.loansOfBook(bookId);
+  }
+
+  @Override
+  public long countLoansOfCustomer(String customer) {
+    return statistics.loansOfCustomer(customer);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Page<LoanStatsDTO> getSnapshots(Pageable pageable) {
+    return snapshotRepository.findAllByOrderByTakenAtDesc(pageable).map(snapshot -> LoanStatsDTO.builder()
+        .openLoans(snapshot.getOpenLoans())
+        .overdueLoans(snapshot.getOverdueLoans())
+        .totalLoans(snapshot.getTotalLoans())
+        .takenAt(snapshot.getTakenAt())
+        .build());
+  }
+
+  /**
+   * Counters that were never loaded would only store zeros, so nothing is
+   * taken until the first reconciliation is done. The lease is not released,
+   * so one node takes the snapshots while it keeps taking them in time.
+   */
+  @Override
+  @Scheduled(fixedDelayString = "${application.loans.stats.snapshot-interval}",
+      initialDelayString = "${application.loans.stats.snapshot-interval}")
+  public void snapshot() {
+    if (!enabled || reconciledAt == null) {
+      return;
+    }
+    if (!leases.tryAcquire(SNAPSHOT_JOB)) {
+      log.debug("Loan statistics snapshots are taken by another node");
+      return;
+    }
+    LoanStatsDTO current = getStatistics(LocalDate.now());
+    snapshotRepository.save(LoanStatsSnapshot.builder()
+        .takenAt(current.getTakenAt())
+        .openLoans(current.getOpenLoans())
+        .overdueLoans(current.getOverdueLoans())
+        .totalLoans(current.getTotalLoans())
+        .build());
+  }
+
+  @Scheduled(cron = "${application.loans.stats.reconcile-cron}")
+  public void scheduledReconcile() {
+    if (enabled) {
+      reconcile();
+    }
+  }
+
+  @Override
+  public synchronized long reconcile() {
+    long start = System.nanoTime();
+    Counts before = statistics.counts();
+    Counts database = transactionTemplate.execute(status -> readCounts());
+    long difference = statistics.correct(before, database);
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    if (reconciledAt == null) {
+      log.info("Loaded the statistics of {} loans in {} ms", database.getTotal(), millis);
+    } else if (difference > 0) {
+      drift.increment(difference);
+      log.warn("Loan statistics were off by {} and have been corrected", difference);
+    }
+    reconciledAt = LocalDateTime.now();
+    return difference;
+  }
+
+  private long overdueLoans(LocalDate today) {
+    return statistics.openLoansDueUntil(DueDatePolicy.overdueUntil(today));
+  }
+
+  private Counts readCounts() {
+    Map<LocalDate, Long> openByDueDate = new HashMap<>();
+    long open = 0;
+    for (LoanCount<LocalDate> count : loanRepository.countOpenLoansByDueDate()) {
+      open += count.getLoans();
+      if (count.getKey() != null) {
+        openByDueDate.put(count.getKey(), count.getLoans());
+      }
+    }
+    long total = historyRepository.count();
+    Map<Long, Long> byBook = new HashMap<>();
+    try (Stream<LoanCount<Long>> counts = historyRepository.streamLoansByBook()) {
+      counts.filter(count -> count.getKey() != null).forEach(count -> byBook.put(count.getKey(), count.getLoans()));
+    }
+    Map<String, Long> byCustomer = new HashMap<>();
+    try (Stream<LoanCount<String>> counts = historyRepository.streamLoansByCustomer()) {
+      counts.filter(count -> count.getKey() != null)
+          .forEach(count -> byCustomer.put(count.getKey(), count.getLoans()));
+    }
+    return new Counts(open, total, openByDueDate, byBook, byCustomer);
+  }
+}
@@ -0,0 +1,151 @@
+package com.santanarscs.libraryapi.service.lease;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import com.santanarscs.libraryapi.model.entity.JobCheckpoint;
+import com.santanarscs.libraryapi.model.repository.JobCheckpointRepository;
+import com.santanarscs.libraryapi.model.repository.JobLeaseRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Leases on the scheduled jobs, kept in the job_lease table so the nodes
+ * sharing the database agree on which one runs a job. A node holds a lease
+ * until it expires and renews it while it works; once it expired, because the
+ * node finished, died or hung, any node can take it. The ranges of a split
+ * job are claimed the same way on their checkpoint rows.
+ *
+ * Each call commits on its own. Expiry compares the clocks of the nodes,
+ * which must agree to well within {@code application.scheduling.lease-ttl}.
+ */
+@Component
+public class JobLeases {
+
+  private static final Logger log = LoggerFactory.getLogger(JobLeases.class);
+
+  private static final long POLL_MILLIS = 100;
+
+  private final JobLeaseRepository leaseRepository;
+  private final JobCheckpointRepository checkpointRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final String owner;
+  private final Duration ttl;
+
+  /**
+   * @param nodeId the name this node holds leases under; blank for the JVM
+   *               name with a random suffix, unique per start
+   */
+  public JobLeases(JobLeaseRepository leaseRepository, JobCheckpointRepository checkpointRepository,
+      TransactionTemplate transactionTemplate,
+      @Value("${application.scheduling.node-id}") String nodeId,
+      @Value("${application.scheduling.lease-ttl}") Duration ttl) {
+    if (ttl.isNegative() || ttl.isZero()) {
+      throw new IllegalArgumentException("Lease ttl must be positive");
+    }
+    this.leaseRepository = leaseRepository;
+    this.checkpointRepository = checkpointRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.owner = nodeId.isBlank()
+        ? ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8)
+        : nodeId;
+    this.ttl = ttl;
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  public Duration getTtl() {
+    return ttl;
+  }
+
+  /**
+   * Takes the lease when it is free, expired or already this node's.
+   *
+   * @return whether this node holds the lease for the next ttl
+   */
+  public boolean tryAcquire(String name) {
+    LocalDateTime now = LocalDateTime.now();
+    LocalDateTime expiresAt = now.plus(ttl);
+    try {
+      return Boolean.TRUE.equals(transactionTemplate.execute(status ->
+          leaseRepository.take(name, owner, now, expiresAt) == 1
+              || leaseRepository.insert(name, owner, expiresAt) == 1));
+    } catch (DataIntegrityViolationException | ConcurrencyFailureException ex) {
+      log.debug("Lease {} is taken by another node", name, ex);
+      return false;
+    }
+  }
+
+  /**
+   * Tries to take the lease until {@code wait} has passed.
+   */
+  public boolean acquire(String name, Duration wait) {
+    long deadline = System.nanoTime() + wait.toNanos();
+    while (!tryAcquire(name)) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      try {
+        Thread.sleep(POLL_MILLIS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Extends a lease this node holds by another ttl.
+   *
+   * @return false when the lease expired and another node took it
+   */
+  public boolean renew(String name) {
+    LocalDateTime now = LocalDateTime.now();
+    Integer renewed = transactionTemplate.execute(status -> leaseRepository.take(name, owner, now, now.plus(ttl)));
+    return renewed != null && renewed == 1;
+  }
+
+  public void release(String name) {
+    transactionTemplate.executeWithoutResult(status -> leaseRepository.release(name, owner, LocalDateTime.now()));
+  }
+
+  /**
+   * Claims an unfinished range of a split job for the next ttl.
+   *
+   * @return false when it is finished or another node holds it
+   */
+  public boolean claim(String checkpointName) {
+    LocalDateTime now = LocalDateTime.now();
+    Integer claimed = transactionTemplate.execute(status ->
+        checkpointRepository.claim(checkpointName, owner, now, now.plus(ttl)));
+    return claimed != null && claimed == 1;
+  }
+
+  /**
+   * Saves the progress of a range this node claimed and renews the claim.
+   *
+   * @return false when the claim expired and another node took the range
+   */
+  public boolean saveClaimed(JobCheckpoint range) {
+    LocalDateTime claimedUntil = LocalDateTime.now().plus(ttl);
+    Integer saved = transactionTemplate.execute(status -> checkpointRepository.saveClaimed(range.getName(), owner,
+        range.getLastId(), range.getFinished(), claimedUntil));
+    if (saved == null || saved != 1) {
+      return false;
+    }
+    range.setOwner(owner);
+    range.setClaimedUntil(claimedUntil);
+    return true;
+  }
+}
@@ -0,0 +1,187 @@
+package com.santanarscs.libraryapi.service.mail;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The late loan digest a customer gets, compiled once from
+ * {@code application.mail.lateloans.template}. The template may use
+ * {@code {customer}} and {@code {count}}, and repeats the block between
+ * {@code {#loans}} and {@code {/loans}} for each loan, with
+ * {@code {title}}, {@code {dueDate}} and {@code {daysOverdue}}. At most
+ * {@value #MAX_LISTED} loans are listed, so a customer with thousands of
+ * loans still gets a mail of a sensible size; {@code {count}} counts them
+ * all.
+ *
+ * Compiling splits the template into literal text and field codes, so
+ * rendering only appends them to a builder kept per thread. Numbers and dates
+ * are written digit by digit. Once the builder has grown to the longest
+ * digest, the message string is the only allocation per render.
+ */
+@Component
+public class LateLoanTemplate {
+
+  private static final int CUSTOMER = 0;
+  private static final int COUNT = 1;
+  private static final int TITLE = 2;
+  private static final int DUE_DATE = 3;
+  private static final int DAYS_OVERDUE = 4;
+
+  private static final Map<String, Integer> FIELDS = Map.of("customer", CUSTOMER, "count", COUNT, "title", TITLE,
+      "dueDate", DUE_DATE, "daysOverdue", DAYS_OVERDUE);
+  private static final Set<Integer> DIGEST_FIELDS = Set.of(CUSTOMER, COUNT);
+  private static final Set<Integer> LOAN_FIELDS = Set.of(CUSTOMER, COUNT, TITLE, DUE_DATE, DAYS_OVERDUE);
+
+  private static final String LOANS_START = "{#loans}";
+  private static final String LOANS_END = "{/loans}";
+
+  /** Loans listed per digest at most. */
+  public static final int MAX_LISTED = 100;
+
+  /** Builders past this size are dropped after rendering instead of kept. */
+  private static final int MAX_RETAINED = 64 * 1024;
+
+  private final Segments head;
+  private final Segments loan;
+  private final Segments tail;
+  private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+  public LateLoanTemplate(@Value("${application.mail.lateloans.template}") String source) {
+    int start = source.indexOf(LOANS_START);
+    int end = source.indexOf(LOANS_END);
+    if (start < 0 && end < 0) {
+      this.head = Segments.compile(source, DIGEST_FIELDS);
+      this.loan = Segments.compile("", LOAN_FIELDS);
+      this.tail = Segments.compile("", DIGEST_FIELDS);
+    } else if (start >= 0 && end > start && source.indexOf(LOANS_START, start + 1) < 0
+        && source.indexOf(LOANS_END, end + 1) < 0) {
+      this.head = Segments.compile(source.substring(0, start), DIGEST_FIELDS);
+      this.loan = Segments.compile(source.substring(start + LOANS_START.length(), end), LOAN_FIELDS);
+      this.tail = Segments.compile(source.substring(end + LOANS_END.length()), DIGEST_FIELDS);
+    } else {
+      throw new IllegalArgumentException("The late loan template needs one " + LOANS_START + " block closed by "
+          + LOANS_END);
+    }
+  }
+
+  /**
+   * The digest of a customer's loans, with the days overdue counted up to
+   * {@code today}.
+   */
+  public String render(String customer, List<Loan> loans, LocalDate today) {
+    StringBuilder out = buffers.get();
+    out.setLength(0);
+    render(out, customer, loans, today);
+    String message = out.toString();
+    if (out.capacity() > MAX_RETAINED) {
+      buffers.remove();
+    }
+    return message;
+  }
+
+  /**
+   * Appends the digest to {@code out}.
+   */
+  public void render(StringBuilder out, String customer, List<Loan> loans, LocalDate today) {
+    head.append(out, customer, loans.size(), null, today);
+    for (int i = 0; i < Math.min(loans.size(), MAX_LISTED); i++) {
+      loan.append(out, customer, loans.size(), loans.get(i), today);
+    }
+    tail.append(out, customer, loans.size(), null, today);
+  }
+
+  /**
+   * Literal text around field codes: {@code literals[i]}, then
+   * {@code fields[i]}, ending with the last literal.
+   */
+  private static final class Segments {
+
+    private final String[] literals;
+    private final int[] fields;
+
+    private Segments(String[] literals, int[] fields) {
+      this.literals = literals;
+      this.fields = fields;
+    }
+
+    static Segments compile(String part, Set<Integer> allowed) {
+      List<String> literals = new ArrayList<>();
+      List<Integer> fields = new ArrayList<>();
+      int at = 0;
+      for (int open = part.indexOf('{'); open >= 0; open = part.indexOf('{', at)) {
+        int close = part.indexOf('}', open);
+        if (close < 0) {
+          throw new IllegalArgumentException("Unclosed placeholder in the late loan template: " + part.substring(open));
+        }
+        Integer field = FIELDS.get(part.substring(open + 1, close));
+        if (field == null || !allowed.contains(field)) {
+          throw new IllegalArgumentException("Unknown placeholder in the late loan template: "
+              + part.substring(open, close + 1));
+        }
+        literals.add(part.substring(at, open));
+        fields.add(field);
+        at = close + 1;
+      }
+      literals.add(part.substring(at));
+      return new Segments(literals.toArray(String[]::new), fields.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    void append(StringBuilder out, String customer, int count, Loan loan, LocalDate today) {
+      for (int i = 0; i < fields.length; i++) {
+        out.append(literals[i]);
+        switch (fields[i]) {
+          case CUSTOMER:
+            appendText(out, customer);
+            break;
+          case COUNT:
+            out.append(count);
+            break;
+          case TITLE:
+            Book book = loan.getBook();
+            appendText(out, book != null ? book.getTitle() : null);
+            break;
+          case DUE_DATE:
+            appendDate(out, loan.getDueDate());
+            break;
+          default:
+            if (loan.getDueDate() != null) {
+              out.append(today.toEpochDay() - loan.getDueDate().toEpochDay());
+            }
+        }
+      }
+      out.append(literals[fields.length]);
+    }
+
+    private static void appendText(StringBuilder out, String text) {
+      if (text != null) {
+        out.append(text);
+      }
+    }
+
+    /**
+     * dd/MM/yyyy, without going through a formatter.
+     */
+    private static void appendDate(StringBuilder out, LocalDate date) {
+      if (date == null) {
+        return;
+      }
+      appendTwoDigits(out, date.getDayOfMonth());
+      out.append('/');
+      appendTwoDigits(out, date.getMonthValue());
+      out.append('/').append(date.getYear());
+    }
+
+    private static void appendTwoDigits(StringBuilder out, int value) {
+      out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+  }
+}
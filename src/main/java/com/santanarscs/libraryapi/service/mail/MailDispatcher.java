@@ -0,0 +1,230 @@
+package com.santanarscs.libraryapi.service.mail;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.santanarscs.libraryapi.model.entity.MailDeadLetter;
+import com.santanarscs.libraryapi.model.repository.MailDeadLetterRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Sends mail off the caller's thread. Messages wait in a bounded queue, which
+ * blocks the producer when it is full. A pool of workers drains it in batches.
+ * Each batch goes through one {@link JavaMailSender#send(SimpleMailMessage...)}
+ * call, so it shares one SMTP connection. Batches are throttled by a shared
+ * {@link TokenBucket}. Failed messages are retried with exponential backoff
+ * and stored as {@link MailDeadLetter} once the attempts run out.
+ */
+@Component
+public class MailDispatcher {
+
+  private static final Logger log = LoggerFactory.getLogger(MailDispatcher.class);
+
+  private final JavaMailSender javaMailSender;
+  private final MailDeadLetterRepository deadLetterRepository;
+
+  private final BlockingQueue<SimpleMailMessage> queue;
+  private final TokenBucket rateLimiter;
+  private final int workers;
+  private final int batchSize;
+  private final int maxAttempts;
+  private final long backoffMillis;
+
+  private final Timer sendTimer;
+  private final Counter sent;
+  private final Counter failed;
+  private final Counter retries;
+  private final Counter deadLetters;
+
+  private ExecutorService executor;
+  private volatile boolean running;
+
+  public MailDispatcher(JavaMailSender javaMailSender, MailDeadLetterRepository deadLetterRepository,
+      MeterRegistry meterRegistry,
+      @Value("${application.mail.dispatch.queue-capacity}") int queueCapacity,
+      @Value("${application.mail.dispatch.workers}") int workers,
+      @Value("${application.mail.dispatch.batch-size}") int batchSize,
+      @Value("${application.mail.dispatch.rate-per-second}") int ratePerSecond,
+      @Value("${application.mail.dispatch.max-attempts}") int maxAttempts,
+      @Value("${application.mail.dispatch.backoff-millis}") long backoffMillis) {
+    this.javaMailSender = javaMailSender;
+    this.deadLetterRepository = deadLetterRepository;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.rateLimiter = new TokenBucket(ratePerSecond);
+    this.workers = workers;
+    this.batchSize = batchSize;
+    this.maxAttempts = maxAttempts;
+    this.backoffMillis = backoffMillis;
+
+    meterRegistry.gauge("mail.queue.size", queue, BlockingQueue::size);
+    this.sendTimer = meterRegistry.timer("mail.send");
+    this.sent = meterRegistry.counter("mail.sent");
+    this.failed = meterRegistry.counter("mail.failed");
+    this.retries = meterRegistry.counter("mail.retries");
+    this.deadLetters = meterRegistry.counter("mail.dead.letters");
+  }
+
+  @PostConstruct
+  public void start() {
+    running = true;
+    executor = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("mail-dispatcher-"));
+    for (int i = 0; i < workers; i++) {
+      executor.execute(this::work);
+    }
+  }
+
+  /**
+   * Stops taking new batches once the queue is empty, giving the workers a
+   * bounded time to finish what is already queued.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    executor.shutdown();
+    if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+      executor.shutdownNow();
+      log.warn("Mail dispatcher stopped with {} queued messages", queue.size());
+    }
+  }
+
+  /**
+   * Queues the messages, waiting for room when the queue is full.
+   */
+  public void dispatch(List<SimpleMailMessage> messages) throws InterruptedException {
+    if (!running) {
+      throw new IllegalStateException("Mail dispatcher is not running");
+    }
+    for (SimpleMailMessage message : messages) {
+      queue.put(message);
+    }
+  }
+
+  /**
+   * Takes batches until stopped. A batch failing with anything but a
+   * {@link MailException}, which {@link #deliver} retries, is dead lettered
+   * as is, so the worker keeps draining the queue.
+   */
+  private void work() {
+    List<SimpleMailMessage> batch = new ArrayList<>(batchSize);
+    try {
+      while (running || !queue.isEmpty()) {
+        SimpleMailMessage first = queue.poll(500, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        try {
+          deliver(batch);
+        } catch (RuntimeException ex) {
+          log.error("Could not deliver a batch of {} mails, dead lettering it", batch.size(), ex);
+          failed.increment(batch.size());
+          for (SimpleMailMessage message : batch) {
+            deadLetter(message, ex, 1);
+          }
+        } finally {
+          batch.clear();
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  void deliver(List<SimpleMailMessage> batch) throws InterruptedException {
+    List<SimpleMailMessage> pending = batch;
+    for (int attempt = 1;; attempt++) {
+      rateLimiter.acquire(pending.size());
+      MailException failure = send(pending);
+      if (failure == null) {
+        sent.increment(pending.size());
+        return;
+      }
+      int attempted = pending.size();
+      pending = failedMessages(pending, failure);
+      sent.increment(attempted - pending.size());
+      if (attempt >= maxAttempts) {
+        failed.increment(pending.size());
+        for (SimpleMailMessage message : pending) {
+          deadLetter(message, failure, attempt);
+        }
+        return;
+      }
+      retries.increment(pending.size());
+      TimeUnit.MILLISECONDS.sleep(backoffMillis << (attempt - 1));
+    }
+  }
+
+  private MailException send(List<SimpleMailMessage> messages) {
+    long start = System.nanoTime();
+    try {
+      javaMailSender.send(messages.toArray(new SimpleMailMessage[0]));
+      return null;
+    } catch (MailException ex) {
+      return ex;
+    } finally {
+      sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * The messages a failed send has to retry: the ones the server rejected, or
+   * all of them when the failure happened before any was sent.
+   */
+  private List<SimpleMailMessage> failedMessages(List<SimpleMailMessage> sent, MailException failure) {
+    if (failure instanceof MailSendException) {
+      Map<Object, Exception> failed = ((MailSendException) failure).getFailedMessages();
+      if (!failed.isEmpty()) {
+        List<SimpleMailMessage> retry = new ArrayList<>(failed.size());
+        for (SimpleMailMessage message : sent) {
+          if (failed.containsKey(message)) {
+            retry.add(message);
+          }
+        }
+        return retry;
+      }
+    }
+    return new ArrayList<>(sent);
+  }
+
+  private void deadLetter(SimpleMailMessage message, RuntimeException failure, int attempts) {
+    String[] to = message.getTo();
+    String error = String.valueOf(failure.getMessage());
+    try {
+      deadLetterRepository.save(MailDeadLetter.builder()
+          .recipient(to != null && to.length > 0 ? to[0] : null)
+          .subject(message.getSubject())
+          .text(message.getText())
+          .error(error.length() > 1000 ? error.substring(0, 1000) : error)
+          .attempts(attempts)
+          .failedAt(LocalDateTime.now())
+          .build());
+      deadLetters.increment();
+    } catch (RuntimeException ex) {
+      log.error("Could not store dead letter for {}", (Object) to, ex);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.santanarscs.libraryapi.service.mail;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out permits so that no more than {@code permitsPerSecond} are handed
+ * out per second on average, shared by every caller. A caller reserves its
+ * permits and then sleeps until the previous reservations have been paid for,
+ * so a batch goes out at once and the next one waits for it.
+ */
+public class TokenBucket {
+
+  private final long nanosPerPermit;
+  private long nextFreeNanos;
+
+  public TokenBucket(int permitsPerSecond) {
+    if (permitsPerSecond <= 0) {
+      throw new IllegalArgumentException("Permits per second must be positive");
+    }
+    this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+    this.nextFreeNanos = System.nanoTime();
+  }
+
+  public void acquire(int permits) throws InterruptedException {
+    long waitNanos = reserve(permits, System.nanoTime());
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * Books {@code permits} and returns how long the caller has to wait before
+   * using them.
+   */
+  synchronized long reserve(int permits, long nowNanos) {
+    long waitNanos = Math.max(0, nextFreeNanos - nowNanos);
+    nextFreeNanos = Math.max(nextFreeNanos, nowNanos) + permits * nanosPerPermit;
+    return waitNanos;
+  }
+}
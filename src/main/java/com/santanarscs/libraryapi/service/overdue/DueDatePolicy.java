@@ -0,0 +1,50 @@
+package com.santanarscs.libraryapi.service.overdue;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.santanarscs.libraryapi.model.entity.Loan;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * When a loan is due back: {@code application.loans.due.loan-period} after
+ * it was made, moved to the next day the library is open when that falls on
+ * one of {@code application.loans.due.closed-days}. A loan may be returned
+ * up to the end of its due date, so it is overdue from the day after.
+ */
+@Component
+public class DueDatePolicy {
+
+  private final long loanDays;
+  private final Set<DayOfWeek> closedDays;
+
+  public DueDatePolicy(@Value("${application.loans.due.loan-period}") Duration loanPeriod,
+      @Value("${application.loans.due.closed-days}") Set<DayOfWeek> closedDays) {
+    if (loanPeriod.toDays() <= 0 || closedDays.size() == DayOfWeek.values().length) {
+      throw new IllegalArgumentException("The loan period must be at least a day and the library open on some day");
+    }
+    this.loanDays = loanPeriod.toDays();
+    this.closedDays = closedDays.isEmpty() ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(closedDays);
+  }
+
+  public LocalDate dueDate(Loan loan) {
+    LocalDate loanDate = loan.getLoanDate() != null ? loan.getLoanDate() : LocalDate.now();
+    LocalDate dueDate = loanDate.plusDays(loanDays);
+    while (closedDays.contains(dueDate.getDayOfWeek())) {
+      dueDate = dueDate.plusDays(1);
+    }
+    return dueDate;
+  }
+
+  /**
+   * The last due date of the loans overdue on {@code today}.
+   */
+  public static LocalDate overdueUntil(LocalDate today) {
+    return today.minusDays(1);
+  }
+}
@@ -0,0 +1,16 @@
+package com.santanarscs.libraryapi.service.overdue;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Loans that just reached their due date, published by
+ * {@link OverdueTracker}. Some may have been returned since.
+ */
+@Getter
+@RequiredArgsConstructor
+public class LoansOverdueEvent {
+  private final List<Long> loanIds;
+}
@@ -0,0 +1,187 @@
+package com.santanarscs.libraryapi.service.overdue;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+import com.santanarscs.libraryapi.model.repository.LoanRepository.DueLoan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Every open loan not yet due, on a {@link TimerWheel} that publishes a
+ * {@link LoansOverdueEvent} in the tick the loan reaches its due date, so
+ * nothing scans the loan table to find the loans that just became late.
+ * {@code LoanService} tracks loans as they are made and reopened and drops
+ * them as they are returned; the open loans due after today are loaded from
+ * the database once the application is up, on a background thread. Loans
+ * already late at startup are left to the daily late loan job.
+ *
+ * A loan is due from the start of its due date in the system time zone and
+ * fires within {@code application.loans.overdue.tick} of it. The wheel is
+ * guarded by this object's lock, which is never held while publishing.
+ *
+ * Each node has its own wheel, so a loan loaded by several nodes fires on
+ * each of them; the listener claims the loans before mailing them.
+ *
+ * Published meters: {@code loans.overdue.tracked}.
+ */
+@Component
+public class OverdueTracker {
+
+  private static final Logger log = LoggerFactory.getLogger(OverdueTracker.class);
+
+  private static final int WHEEL_SIZE = 64;
+  private static final int WHEEL_LEVELS = 4;
+
+  private final LoanRepository repository;
+  private final TransactionTemplate transactionTemplate;
+  private final ApplicationEventPublisher publisher;
+  private final boolean enabled;
+  private final ZoneId zone = ZoneId.systemDefault();
+  private final TimerWheel wheel;
+  private Set<Long> touched;
+
+  public OverdueTracker(LoanRepository repository, TransactionTemplate transactionTemplate,
+      ApplicationEventPublisher publisher, MeterRegistry meterRegistry,
+      @Value("${application.loans.overdue.tick}") Duration tick,
+      @Value("${application.loans.overdue.enabled}") boolean enabled) {
+    this.repository = repository;
+    this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+    this.transactionTemplate.setReadOnly(true);
+    this.publisher = publisher;
+    this.enabled = enabled;
+    this.wheel = new TimerWheel(tick.toMillis(), WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+    this.touched = new HashSet<>();
+    Gauge.builder("loans.overdue.tracked", this, OverdueTracker::size).register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadOnStartup() {
+    if (!enabled) {
+      return;
+    }
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("overdue-tracker-");
+    threadFactory.setDaemon(true);
+    threadFactory.newThread(() -> load(LocalDate.now())).start();
+  }
+
+  /**
+   * Adds the open loans due after today. Loans tracked or untracked since
+   * the tracker was created are skipped, as what was done to them is newer
+   * than the row being read.
+   */
+  public void load(LocalDate today) {
+    long start = System.nanoTime();
+    long[] loans = new long[1];
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        try (Stream<DueLoan> open = repository.streamOpenLoansDueAfter(today)) {
+          open.forEach(loan -> {
+            synchronized (this) {
+              if (!touched.contains(loan.getId())) {
+                wheel.schedule(loan.getId(), deadline(loan.getDueDate()));
+                loans[0]++;
+              }
+            }
+          });
+        }
+      });
+      log.info("Tracking {} open loans for their due date, loaded in {} ms", loans[0],
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (RuntimeException ex) {
+      log.error("Could not load the open loans, only loans made from now on will be tracked", ex);
+    } finally {
+      synchronized (this) {
+        touched = null;
+      }
+    }
+  }
+
+  public synchronized void track(Long loanId, LocalDate dueDate) {
+    if (!enabled || loanId == null || dueDate == null) {
+      return;
+    }
+    if (touched != null) {
+      touched.add(loanId);
+    }
+    wheel.schedule(loanId, deadline(dueDate));
+  }
+
+  /**
+   * Fires the loans again on the next tick, for those whose notice could not
+   * be claimed when they fired.
+   */
+  public synchronized void retry(Collection<Long> loanIds) {
+    if (!enabled) {
+      return;
+    }
+    for (Long loanId : loanIds) {
+      if (touched != null) {
+        touched.add(loanId);
+      }
+      wheel.schedule(loanId, 0L);
+    }
+  }
+
+  public synchronized void untrack(Long loanId) {
+    if (!enabled || loanId == null) {
+      return;
+    }
+    if (touched != null) {
+      touched.add(loanId);
+    }
+    wheel.cancel(loanId);
+  }
+
+  @Scheduled(fixedDelayString = "${application.loans.overdue.tick}")
+  public void tick() {
+    if (enabled) {
+      tick(System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * Fires every loan due by the time given.
+   *
+   * @return the loans that fired
+   */
+  public List<Long> tick(long nowMillis) {
+    List<Long> overdue = new ArrayList<>();
+    synchronized (this) {
+      wheel.advance(nowMillis, overdue::add);
+    }
+    if (!overdue.isEmpty()) {
+      publisher.publishEvent(new LoansOverdueEvent(overdue));
+    }
+    return overdue;
+  }
+
+  public synchronized int size() {
+    return wheel.size();
+  }
+
+  private long deadline(LocalDate dueDate) {
+    return dueDate.atStartOfDay(zone).toInstant().toEpochMilli();
+  }
+}
@@ -0,0 +1,350 @@
+package com.santanarscs.libraryapi.service.overdue;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timing wheel of ids with a deadline, firing each id once its
+ * deadline has passed. Level 0 has one slot per tick, each level above has
+ * slots as wide as a whole turn of the level below, and deadlines beyond the
+ * top level wait in an overflow list. Scheduling and cancelling cost the
+ * same whatever the number of ids tracked; a tick only touches the slots
+ * that come due, moving their ids one level down until they reach level 0
+ * and fire.
+ *
+ * Ids are kept as primitives: a slot is a growable {@code long[]} and the
+ * deadline of every live id sits in an open addressing map, which is what
+ * scheduling, cancelling and firing check. Cancelling only drops the id from
+ * that map and leaves it in its slot, to be skipped when the slot comes due;
+ * rescheduling adds it again and whichever copy comes due first moves it to
+ * the deadline in the map. Once the slots hold more than twice as many
+ * entries as there are live ids, they are rebuilt from the map, so memory
+ * follows the ids tracked however much they churn between ticks.
+ *
+ * Not thread-safe: callers serialize access.
+ */
+public class TimerWheel {
+
+  private static final int COMPACT_SLACK = 1024;
+
+  private final long tickMillis;
+  private final int bits;
+  private final int mask;
+  private final LongList[][] slots;
+  private final LongList overflow = new LongList();
+  private final LongList due = new LongList();
+  private final Deadlines deadlines = new Deadlines();
+  private long currentTick;
+  private long entries;
+
+  /**
+   * @param wheelSize slots per level, a power of two
+   */
+  public TimerWheel(long tickMillis, int wheelSize, int levels, long nowMillis) {
+    if (tickMillis <= 0 || Integer.bitCount(wheelSize) != 1 || levels <= 0
+        || Integer.numberOfTrailingZeros(wheelSize) * levels >= Long.SIZE - 1) {
+      throw new IllegalArgumentException("The tick must be positive, the wheel size a power of two and the levels fit a long");
+    }
+    this.tickMillis = tickMillis;
+    this.bits = Integer.numberOfTrailingZeros(wheelSize);
+    this.mask = wheelSize - 1;
+    this.slots = new LongList[levels][wheelSize];
+    for (LongList[] level : slots) {
+      for (int slot = 0; slot < level.length; slot++) {
+        level[slot] = new LongList();
+      }
+    }
+    this.currentTick = nowMillis / tickMillis;
+  }
+
+  /**
+   * Fires the id at the first tick at or after the deadline, replacing any
+   * deadline it had. A deadline already passed fires on the next
+   * {@link #advance}.
+   *
+   * @param id a positive id
+   */
+  public void schedule(long id, long deadlineMillis) {
+    if (id <= 0) {
+      throw new IllegalArgumentException("Ids must be positive");
+    }
+    long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+    deadlines.put(id, deadlineTick);
+    place(id, deadlineTick);
+    compactIfStale();
+  }
+
+  /**
+   * @return whether the id was waiting to fire
+   */
+  public boolean cancel(long id) {
+    boolean cancelled = deadlines.remove(id);
+    compactIfStale();
+    return cancelled;
+  }
+
+  public boolean contains(long id) {
+    return deadlines.get(id) != Deadlines.MISSING;
+  }
+
+  /**
+   * Ids waiting to fire.
+   */
+  public int size() {
+    return deadlines.size();
+  }
+
+  /**
+   * Moves the wheel to the time given, one tick at a time, handing every id
+   * whose deadline has passed to the consumer.
+   *
+   * @return how many ids fired
+   */
+  public int advance(long nowMillis, LongConsumer expired) {
+    int fired = fire(due, expired);
+    long targetTick = nowMillis / tickMillis;
+    while (currentTick < targetTick) {
+      currentTick++;
+      cascade();
+      fired += fire(slots[0][(int) (currentTick & mask)], expired);
+      fired += fire(due, expired);
+    }
+    return fired;
+  }
+
+  /**
+   * Rough heap used by the slots and the deadline map, in bytes.
+   */
+  public long estimatedBytes() {
+    long bytes = deadlines.estimatedBytes() + overflow.estimatedBytes() + due.estimatedBytes();
+    for (LongList[] level : slots) {
+      for (LongList slot : level) {
+        bytes += slot.estimatedBytes();
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Deadlines already reached, those scheduled late and those a cascade
+   * hands down in their own tick, go to the due list fired in the same
+   * advance.
+   */
+  private void place(long id, long deadlineTick) {
+    entries++;
+    long delta = deadlineTick - currentTick;
+    if (delta <= 0) {
+      due.add(id);
+      return;
+    }
+    for (int level = 0; level < slots.length; level++) {
+      if (delta < 1L << (bits * (level + 1))) {
+        slots[level][(int) ((deadlineTick >>> (bits * level)) & mask)].add(id);
+        return;
+      }
+    }
+    overflow.add(id);
+  }
+
+  /**
+   * When a level finishes a turn, the slot the level above has reached is
+   * spread over the levels below. Upper levels go first, so what they hand
+   * down is spread again in the same tick.
+   */
+  private void cascade() {
+    int level = 1;
+    while (level <= slots.length && (currentTick & ((1L << (bits * level)) - 1)) == 0) {
+      level++;
+    }
+    for (int upper = level - 1; upper >= 1; upper--) {
+      if (upper == slots.length) {
+        replace(overflow);
+      } else {
+        replace(slots[upper][(int) ((currentTick >>> (bits * upper)) & mask)]);
+      }
+    }
+  }
+
+  private void replace(LongList slot) {
+    long[] ids = slot.ids;
+    int size = slot.size;
+    slot.reset();
+    entries -= size;
+    for (int i = 0; i < size; i++) {
+      long deadlineTick = deadlines.get(ids[i]);
+      if (deadlineTick != Deadlines.MISSING) {
+        place(ids[i], deadlineTick);
+      }
+    }
+  }
+
+  private int fire(LongList slot, LongConsumer expired) {
+    if (slot.size == 0) {
+      return 0;
+    }
+    long[] ids = slot.ids;
+    int size = slot.size;
+    slot.reset();
+    entries -= size;
+    int fired = 0;
+    for (int i = 0; i < size; i++) {
+      long id = ids[i];
+      long deadlineTick = deadlines.get(id);
+      if (deadlineTick == Deadlines.MISSING) {
+        continue;
+      }
+      if (deadlineTick <= currentTick) {
+        deadlines.remove(id);
+        expired.accept(id);
+        fired++;
+      } else {
+        place(id, deadlineTick);
+      }
+    }
+    return fired;
+  }
+
+  private void compactIfStale() {
+    if (entries <= 2L * deadlines.size() + COMPACT_SLACK) {
+      return;
+    }
+    for (LongList[] level : slots) {
+      for (LongList slot : level) {
+        slot.reset();
+      }
+    }
+    overflow.reset();
+    due.reset();
+    entries = 0;
+    deadlines.forEach(this::place);
+  }
+
+  private static final class LongList {
+    private static final long[] EMPTY = new long[0];
+
+    long[] ids = EMPTY;
+    int size;
+
+    void add(long id) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, Math.max(4, size + (size >> 1)));
+      }
+      ids[size++] = id;
+    }
+
+    /**
+     * Drops the contents, leaving the old array to whoever is reading it.
+     */
+    void reset() {
+      ids = EMPTY;
+      size = 0;
+    }
+
+    long estimatedBytes() {
+      return 8L * ids.length;
+    }
+  }
+
+  /**
+   * Id to deadline tick, open addressing with linear probing. Zero marks an
+   * empty slot, which is why ids must be positive.
+   */
+  private static final class Deadlines {
+    static final long MISSING = Long.MIN_VALUE;
+
+    private long[] keys = new long[16];
+    private long[] values = new long[16];
+    private int size;
+
+    long get(long key) {
+      int mask = keys.length - 1;
+      for (int index = index(key, mask); keys[index] != 0; index = (index + 1) & mask) {
+        if (keys[index] == key) {
+          return values[index];
+        }
+      }
+      return MISSING;
+    }
+
+    void put(long key, long value) {
+      if ((size + 1) * 4L > keys.length * 3L) {
+        resize();
+      }
+      int mask = keys.length - 1;
+      int index = index(key, mask);
+      while (keys[index] != 0 && keys[index] != key) {
+        index = (index + 1) & mask;
+      }
+      if (keys[index] == 0) {
+        keys[index] = key;
+        size++;
+      }
+      values[index] = value;
+    }
+
+    /**
+     * Shifts the entries after the removed one back, so lookups never need
+     * tombstones.
+     */
+    boolean remove(long key) {
+      int mask = keys.length - 1;
+      int index = index(key, mask);
+      while (keys[index] != key) {
+        if (keys[index] == 0) {
+          return false;
+        }
+        index = (index + 1) & mask;
+      }
+      int gap = index;
+      for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+        int home = index(keys[next], mask);
+        if (((next - home) & mask) >= ((next - gap) & mask)) {
+          keys[gap] = keys[next];
+          values[gap] = values[next];
+          gap = next;
+        }
+      }
+      keys[gap] = 0;
+      size--;
+      return true;
+    }
+
+    int size() {
+      return size;
+    }
+
+    void forEach(Entry entry) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] != 0) {
+          entry.accept(keys[i], values[i]);
+        }
+      }
+    }
+
+    long estimatedBytes() {
+      return 16L * keys.length;
+    }
+
+    private void resize() {
+      long[] oldKeys = keys;
+      long[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new long[oldValues.length * 2];
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != 0) {
+          put(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+
+    private static int index(long key, int mask) {
+      long hash = key * 0x9e3779b97f4a7c15L;
+      return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    interface Entry {
+      void accept(long key, long value);
+    }
+  }
+}
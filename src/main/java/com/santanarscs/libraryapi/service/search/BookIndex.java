@@ -0,0 +1,40 @@
+package com.santanarscs.libraryapi.service.search;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+
+/**
+ * An in-memory view of the book table kept by {@link BookIndexer}. It is
+ * filled from the database by a rebuild and then follows every change made
+ * through {@code BookService}.
+ *
+ * Live changes may arrive while a rebuild is still streaming the table, so
+ * {@link #load(Book)} must not overwrite a book that {@link #add(Book)} or
+ * {@link #remove(Book)} already handled since the last {@link #clear()}.
+ */
+public interface BookIndex {
+
+  /**
+   * Drops every entry and stops answering queries until {@link #ready()}.
+   */
+  void clear();
+
+  /**
+   * Adds a book read by a rebuild.
+   */
+  void load(Book book);
+
+  /**
+   * Marks the end of a rebuild.
+   */
+  void ready();
+
+  boolean isReady();
+
+  /**
+   * Adds a saved book, replacing the previous version of it.
+   */
+  void add(Book book);
+
+  void remove(Book book);
+
+}
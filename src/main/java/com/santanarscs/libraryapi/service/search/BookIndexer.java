@@ -0,0 +1,84 @@
+package com.santanarscs.libraryapi.service.search;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.service.ExportService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps every {@link BookIndex} in step with the book table. The indexes are
+ * rebuilt from the database once the application is up, on a background
+ * thread so a large catalogue does not hold back startup; until a rebuild is
+ * done the indexes report not ready and searches use the database.
+ */
+@Component
+public class BookIndexer {
+
+  private static final Logger log = LoggerFactory.getLogger(BookIndexer.class);
+
+  private final ExportService exportService;
+  private final List<BookIndex> indexes;
+  private final boolean enabled;
+
+  public BookIndexer(ExportService exportService, List<BookIndex> indexes,
+      @Value("${application.search.index.enabled}") boolean enabled) {
+    this.exportService = exportService;
+    this.indexes = indexes;
+    this.enabled = enabled;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuildOnStartup() {
+    if (!enabled) {
+      return;
+    }
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("book-indexer-");
+    threadFactory.setDaemon(true);
+    threadFactory.newThread(this::rebuild).start();
+  }
+
+  /**
+   * Reloads every index from the database. Changes made while the table is
+   * streamed go to the indexes as usual and win over the rows being loaded.
+   */
+  public synchronized void rebuild() {
+    if (!enabled) {
+      return;
+    }
+    long start = System.nanoTime();
+    long[] books = new long[1];
+    indexes.forEach(BookIndex::clear);
+    try {
+      exportService.forEachBook(book -> {
+        indexes.forEach(index -> index.load(book));
+        books[0]++;
+      });
+    } catch (RuntimeException ex) {
+      log.error("Could not rebuild the book indexes, searches will use the database", ex);
+      return;
+    }
+    indexes.forEach(BookIndex::ready);
+    log.info("Indexed {} books in {} ms", books[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  public void indexed(Book book) {
+    if (enabled) {
+      indexes.forEach(index -> index.add(book));
+    }
+  }
+
+  public void removed(Book book) {
+    if (enabled) {
+      indexes.forEach(index -> index.remove(book));
+    }
+  }
+}
@@ -0,0 +1,393 @@
+package com.santanarscs.libraryapi.service.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Trigram index over the title, author and isbn of every book, answering the
+ * same case-insensitive "contains" filter as the catalogue search without
+ * scanning the table.
+ *
+ * Each book is kept as its lower-cased fields in one byte array, slotted by
+ * id, and each trigram of each field points to a {@link PostingList} of ids.
+ * A query reads only the shortest posting list among the trigrams of its
+ * terms and checks every candidate against the stored fields, so the cost is
+ * the number of books sharing the rarest trigram, not the table size. Updates
+ * only append the trigrams a book did not have before, and a removed book
+ * just loses its slot: stale postings are dropped by the check and go away
+ * with the next rebuild.
+ *
+ * The index is per node. It follows the writes made through this node and is
+ * only rebuilt at startup, so a book created or changed through another
+ * instance on the same database is missing or stale here until this node
+ * restarts.
+ */
+@Component
+public class BookSearchIndex implements BookIndex {
+
+  private static final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+  /**
+   * Terms shorter than a trigram have no posting list to start from.
+   */
+  public static final int MIN_TERM_LENGTH = 3;
+
+  private static final int TITLE = 0;
+  private static final int AUTHOR = 1;
+  private static final int ISBN = 2;
+  private static final byte SEPARATOR = 0;
+  private static final int MAX_SLOT = Integer.MAX_VALUE - 8;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Long, PostingList> postings = new HashMap<>();
+  private final BitSet touched = new BitSet();
+  private byte[][] docs = new byte[1024][];
+  private int size;
+  private volatile boolean ready;
+  private volatile boolean overflow;
+
+  @Override
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      ready = false;
+      postings.clear();
+      touched.clear();
+      docs = new byte[1024][];
+      size = 0;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void load(Book book) {
+    int slot = slot(book);
+    if (slot < 0) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      if (!touched.get(slot) && (slot >= docs.length || docs[slot] == null)) {
+        put(slot, book);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void ready() {
+    lock.writeLock().lock();
+    try {
+      postings.values().forEach(PostingList::trim);
+      ready = true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return ready && !overflow;
+  }
+
+  @Override
+  public void add(Book book) {
+    int slot = slot(book);
+    if (slot < 0) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      touched.set(slot);
+      put(slot, book);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void remove(Book book) {
+    int slot = slot(book);
+    if (slot < 0) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      touched.set(slot);
+      if (slot < docs.length && docs[slot] != null) {
+        docs[slot] = null;
+        size--;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Whether {@link #search} can answer the filter: at least one of its fields
+   * has to be long enough to have a trigram. Shorter fields are still applied
+   * to the candidates. A filter on the id is left to the table, which the
+   * index does not match on.
+   */
+  public boolean canSearch(Book filter) {
+    return isReady() && filter.getId() == null && longestTerm(filter) >= MIN_TERM_LENGTH;
+  }
+
+  /**
+   * Ids of the books matching every non null field of the filter, best match
+   * first: a field equal to the term scores over one starting with it, which
+   * scores over a match at a word start, which scores over any other match.
+   * Ties go to the lower id.
+   */
+  public Hits search(Book filter, long offset, int limit) {
+    String[] terms = terms(filter);
+    byte[][] patterns = new byte[terms.length][];
+    for (int field = 0; field < terms.length; field++) {
+      if (terms[field] != null) {
+        patterns[field] = terms[field].getBytes(StandardCharsets.UTF_8);
+      }
+    }
+    int wanted = (int) Math.min(offset + limit, MAX_SLOT);
+    PriorityQueue<Long> best = new PriorityQueue<>();
+    long[] total = new long[1];
+
+    lock.readLock().lock();
+    try {
+      PostingList candidates = shortestPostingList(terms);
+      if (candidates == null) {
+        return new Hits(List.of(), 0);
+      }
+      byte[][] docs = this.docs;
+      BitSet seen = candidates.isStrictlyAscending() ? null : new BitSet();
+      candidates.forEach(id -> {
+        if (seen != null) {
+          if (seen.get(id)) {
+            return;
+          }
+          seen.set(id);
+        }
+        byte[] doc = id < docs.length ? docs[id] : null;
+        int score = doc == null ? 0 : score(doc, patterns);
+        if (score == 0) {
+          return;
+        }
+        total[0]++;
+        long hit = ((long) score << 32) | (Integer.MAX_VALUE - id);
+        if (best.size() < wanted) {
+          best.add(hit);
+        } else if (wanted > 0 && hit > best.peek()) {
+          best.poll();
+          best.add(hit);
+        }
+      });
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    long[] sorted = best.stream().mapToLong(Long::longValue).sorted().toArray();
+    List<Long> ids = new ArrayList<>(limit);
+    for (int i = sorted.length - 1 - (int) Math.min(offset, sorted.length); i >= 0 && ids.size() < limit; i--) {
+      ids.add((long) (Integer.MAX_VALUE - (int) sorted[i]));
+    }
+    return new Hits(ids, total[0]);
+  }
+
+  private void put(int slot, Book book) {
+    if (slot >= docs.length) {
+      docs = Arrays.copyOf(docs, Math.max(slot + 1, Math.min(MAX_SLOT, docs.length + (docs.length >> 1))));
+    }
+    String[] fields = fields(book);
+    byte[] previous = docs[slot];
+    long[] oldTrigrams = previous == null ? new long[0] : trigrams(fields(previous));
+    for (long trigram : trigrams(fields)) {
+      if (Arrays.binarySearch(oldTrigrams, trigram) < 0) {
+        postings.computeIfAbsent(trigram, key -> new PostingList()).add(slot);
+      }
+    }
+    docs[slot] = String.join("\0", fields).getBytes(StandardCharsets.UTF_8);
+    if (previous == null) {
+      size++;
+    }
+  }
+
+  /**
+   * Book ids from a sequence fit an array index for any realistic catalogue.
+   * A book that does not fit turns the index off for good, so searches fall
+   * back to the database instead of missing it.
+   */
+  private int slot(Book book) {
+    Long id = book.getId();
+    if (id == null) {
+      return -1;
+    }
+    if (id < 0 || id > MAX_SLOT) {
+      if (!overflow) {
+        log.warn("Book id {} does not fit the search index, searches will use the database", id);
+      }
+      overflow = true;
+      return -1;
+    }
+    return id.intValue();
+  }
+
+  private PostingList shortestPostingList(String[] terms) {
+    PostingList shortest = null;
+    for (int field = 0; field < terms.length; field++) {
+      String term = terms[field];
+      if (term == null || term.length() < MIN_TERM_LENGTH) {
+        continue;
+      }
+      for (int i = 0; i + MIN_TERM_LENGTH <= term.length(); i++) {
+        PostingList list = postings.get(trigram(field, term, i));
+        if (list == null) {
+          return null;
+        }
+        if (shortest == null || list.size() < shortest.size()) {
+          shortest = list;
+        }
+      }
+    }
+    return shortest;
+  }
+
+  private static int score(byte[] doc, byte[][] patterns) {
+    int score = 0;
+    int start = 0;
+    for (int field = 0; field < patterns.length; field++) {
+      int end = start;
+      while (end < doc.length && doc[end] != SEPARATOR) {
+        end++;
+      }
+      if (patterns[field] != null) {
+        int match = matchScore(doc, start, end, patterns[field]);
+        if (match == 0) {
+          return 0;
+        }
+        score += match;
+      }
+      start = end + 1;
+    }
+    return score;
+  }
+
+  private static int matchScore(byte[] doc, int start, int end, byte[] pattern) {
+    int best = 0;
+    for (int from = start; from + pattern.length <= end; from++) {
+      if (!regionMatches(doc, from, pattern)) {
+        continue;
+      }
+      if (from == start) {
+        return from + pattern.length == end ? 8 : 4;
+      }
+      byte previous = doc[from - 1];
+      best = Math.max(best, previous >= 0 && !Character.isLetterOrDigit(previous) ? 2 : 1);
+    }
+    return best;
+  }
+
+  private static boolean regionMatches(byte[] doc, int from, byte[] pattern) {
+    for (int i = 0; i < pattern.length; i++) {
+      if (doc[from + i] != pattern[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int longestTerm(Book filter) {
+    int longest = -1;
+    for (String term : terms(filter)) {
+      if (term != null) {
+        longest = Math.max(longest, term.length());
+      }
+    }
+    return longest;
+  }
+
+  private static String[] terms(Book filter) {
+    String[] terms = new String[3];
+    terms[TITLE] = lower(filter.getTitle());
+    terms[AUTHOR] = lower(filter.getAuthor());
+    terms[ISBN] = lower(filter.getIsbn());
+    return terms;
+  }
+
+  private static String[] fields(Book book) {
+    String[] fields = terms(book);
+    for (int field = 0; field < fields.length; field++) {
+      if (fields[field] == null) {
+        fields[field] = "";
+      }
+    }
+    return fields;
+  }
+
+  private static String[] fields(byte[] doc) {
+    return new String(doc, StandardCharsets.UTF_8).split("\0", -1);
+  }
+
+  private static String lower(String value) {
+    return value == null ? null : value.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * The distinct trigrams of the fields, sorted.
+   */
+  private static long[] trigrams(String[] fields) {
+    int count = 0;
+    for (String field : fields) {
+      count += Math.max(0, field.length() - MIN_TERM_LENGTH + 1);
+    }
+    long[] trigrams = new long[count];
+    int next = 0;
+    for (int field = 0; field < fields.length; field++) {
+      for (int i = 0; i + MIN_TERM_LENGTH <= fields[field].length(); i++) {
+        trigrams[next++] = trigram(field, fields[field], i);
+      }
+    }
+    Arrays.sort(trigrams);
+    int distinct = 0;
+    for (int i = 0; i < trigrams.length; i++) {
+      if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+        trigrams[distinct++] = trigrams[i];
+      }
+    }
+    return Arrays.copyOf(trigrams, distinct);
+  }
+
+  private static long trigram(int field, String value, int at) {
+    return ((long) field << 48) | ((long) value.charAt(at) << 32) | ((long) value.charAt(at + 1) << 16)
+        | value.charAt(at + 2);
+  }
+
+  @Getter
+  @RequiredArgsConstructor
+  public static class Hits {
+    private final List<Long> ids;
+    private final long total;
+  }
+}
@@ -0,0 +1,211 @@
+package com.santanarscs.libraryapi.service.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Distinct titles and authors in case-insensitive order, for typeahead.
+ * A prefix lookup is a range read on a skip list, so it costs the number of
+ * suggestions asked for and never takes a lock; writers are serialized.
+ *
+ * Every distinct value is stored once, as the map key, with the number of
+ * books using it. Books only keep references to those keys, which is what
+ * an update or a delete releases. Titles and authors that differ only in
+ * case share the first spelling seen. New values stop being added once the
+ * estimated size, references included, reaches
+ * {@code application.search.suggest.max-memory}; known values keep being
+ * counted, so suggestions degrade to the values indexed so far instead of
+ * growing the heap.
+ */
+@Component
+public class BookSuggestIndex implements BookIndex {
+
+  private static final Logger log = LoggerFactory.getLogger(BookSuggestIndex.class);
+
+  /**
+   * Rough heap cost of one entry on top of its characters: the string and
+   * its array, the skip list node with its share of index nodes and the
+   * boxed count.
+   */
+  static final int ENTRY_OVERHEAD_BYTES = 96;
+
+  private static final int SLOT_BYTES = 2 * 4;
+  private static final int MAX_SLOT = Integer.MAX_VALUE - 8;
+
+  private final ConcurrentSkipListMap<String, Integer> titles = new ConcurrentSkipListMap<>(
+      String.CASE_INSENSITIVE_ORDER);
+  private final ConcurrentSkipListMap<String, Integer> authors = new ConcurrentSkipListMap<>(
+      String.CASE_INSENSITIVE_ORDER);
+  private final long maxBytes;
+  private final BitSet touched = new BitSet();
+  private String[] bookTitles = new String[0];
+  private String[] bookAuthors = new String[0];
+  private long bytes;
+  private boolean full;
+  private volatile boolean ready;
+  private volatile boolean overflow;
+
+  public BookSuggestIndex(@Value("${application.search.suggest.max-memory}") DataSize maxMemory) {
+    this.maxBytes = maxMemory.toBytes();
+  }
+
+  @Override
+  public synchronized void clear() {
+    ready = false;
+    titles.clear();
+    authors.clear();
+    touched.clear();
+    bookTitles = new String[0];
+    bookAuthors = new String[0];
+    bytes = 0;
+    full = false;
+  }
+
+  @Override
+  public synchronized void load(Book book) {
+    int slot = slot(book);
+    if (slot >= 0 && !touched.get(slot) && (slot >= bookTitles.length || bookTitles[slot] == null)) {
+      put(slot, book);
+    }
+  }
+
+  @Override
+  public synchronized void ready() {
+    ready = true;
+    log.info("Suggesting {} titles and {} authors in about {} MB", titles.size(), authors.size(),
+        bytes / (1024 * 1024));
+  }
+
+  @Override
+  public boolean isReady() {
+    return ready && !overflow;
+  }
+
+  @Override
+  public synchronized void add(Book book) {
+    int slot = slot(book);
+    if (slot >= 0) {
+      touched.set(slot);
+      put(slot, book);
+    }
+  }
+
+  @Override
+  public synchronized void remove(Book book) {
+    int slot = slot(book);
+    if (slot < 0) {
+      return;
+    }
+    touched.set(slot);
+    if (slot < bookTitles.length) {
+      release(titles, bookTitles[slot]);
+      release(authors, bookAuthors[slot]);
+      bookTitles[slot] = null;
+      bookAuthors[slot] = null;
+    }
+  }
+
+  /**
+   * Up to {@code limit} titles starting with the prefix, ignoring case, in
+   * alphabetical order.
+   */
+  public List<String> suggestTitles(String prefix, int limit) {
+    return suggest(titles, prefix, limit);
+  }
+
+  public List<String> suggestAuthors(String prefix, int limit) {
+    return suggest(authors, prefix, limit);
+  }
+
+  public synchronized long estimatedBytes() {
+    return bytes;
+  }
+
+  private static List<String> suggest(NavigableMap<String, Integer> values, String prefix, int limit) {
+    return values.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet().stream()
+        .limit(limit)
+        .collect(Collectors.toList());
+  }
+
+  private void put(int slot, Book book) {
+    if (slot >= bookTitles.length) {
+      int length = Math.max(slot + 1, Math.min(MAX_SLOT, bookTitles.length + (bookTitles.length >> 1)));
+      bytes += (long) (length - bookTitles.length) * SLOT_BYTES;
+      bookTitles = Arrays.copyOf(bookTitles, length);
+      bookAuthors = Arrays.copyOf(bookAuthors, length);
+    }
+    String title = retain(titles, book.getTitle());
+    String author = retain(authors, book.getAuthor());
+    release(titles, bookTitles[slot]);
+    release(authors, bookAuthors[slot]);
+    bookTitles[slot] = title;
+    bookAuthors[slot] = author;
+  }
+
+  /**
+   * Counts one more book for the value and returns the stored key, or
+   * {@code null} when the value is new and there is no room left for it.
+   */
+  private String retain(ConcurrentSkipListMap<String, Integer> values, String value) {
+    if (value == null || value.isEmpty()) {
+      return null;
+    }
+    String key = values.ceilingKey(value);
+    if (key != null && String.CASE_INSENSITIVE_ORDER.compare(key, value) == 0) {
+      values.merge(key, 1, Integer::sum);
+      return key;
+    }
+    long entryBytes = ENTRY_OVERHEAD_BYTES + 2L * value.length();
+    if (bytes + entryBytes > maxBytes) {
+      if (!full) {
+        log.warn("Suggestion index reached its {} MB budget, new titles and authors are not suggested",
+            maxBytes / (1024 * 1024));
+      }
+      full = true;
+      return null;
+    }
+    bytes += entryBytes;
+    values.put(value, 1);
+    return value;
+  }
+
+  private void release(ConcurrentSkipListMap<String, Integer> values, String key) {
+    if (key == null) {
+      return;
+    }
+    Integer count = values.get(key);
+    if (count == null) {
+      return;
+    }
+    if (count > 1) {
+      values.put(key, count - 1);
+    } else {
+      values.remove(key);
+      bytes -= ENTRY_OVERHEAD_BYTES + 2L * key.length();
+    }
+  }
+
+  private int slot(Book book) {
+    Long id = book.getId();
+    if (id == null) {
+      return -1;
+    }
+    if (id < 0 || id > MAX_SLOT) {
+      overflow = true;
+      return -1;
+    }
+    return id.intValue();
+  }
+}
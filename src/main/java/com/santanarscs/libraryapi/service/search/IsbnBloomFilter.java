@@ -0,0 +1,182 @@
+package com.santanarscs.libraryapi.service.search;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Bloom filter over the ISBNs in the book table. A negative answer means the
+ * ISBN is certainly not stored, so {@code BookService} can skip the
+ * existence query; a positive answer still goes to the database.
+ *
+ * The filter is sized once for
+ * {@code application.search.isbn-filter.expected-insertions} ISBNs at
+ * {@code application.search.isbn-filter.false-positive-rate}. Bits are set
+ * with compare-and-set, so adds and lookups never lock. A Bloom filter
+ * cannot forget, so a deleted ISBN keeps answering "maybe" until the next
+ * rebuild, which only costs the query it would have cost anyway.
+ *
+ * Published meters:
+ * <ul>
+ * <li>{@code isbn.filter.memory}, the size of the bit array in bytes;</li>
+ * <li>{@code isbn.filter.fill}, the share of bits set;</li>
+ * <li>{@code isbn.filter.false.positive.expected}, the rate that fill
+ * gives;</li>
+ * <li>{@code isbn.filter.checks} by {@code result}: {@code negative},
+ * {@code positive} and {@code false_positive}. False positives over
+ * negatives plus false positives is the observed rate.</li>
+ * </ul>
+ */
+@Component
+public class IsbnBloomFilter implements BookIndex {
+
+  private final int hashes;
+  private final long bits;
+  private volatile AtomicLongArray words;
+  private final AtomicLong bitsSet = new AtomicLong();
+  private volatile boolean ready;
+
+  private final Counter negatives;
+  private final Counter positives;
+  private final Counter falsePositives;
+
+  public IsbnBloomFilter(MeterRegistry meterRegistry,
+      @Value("${application.search.isbn-filter.expected-insertions}") long expectedInsertions,
+      @Value("${application.search.isbn-filter.false-positive-rate}") double falsePositiveRate) {
+    if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("Expected insertions must be positive and the rate between 0 and 1");
+    }
+    double ln2 = Math.log(2);
+    long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+    this.bits = Math.max(64, (optimalBits + 63) / 64 * 64);
+    this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * ln2));
+    this.words = new AtomicLongArray((int) (bits / 64));
+
+    Gauge.builder("isbn.filter.memory", this, filter -> filter.bits / 8d).baseUnit("bytes").register(meterRegistry);
+    Gauge.builder("isbn.filter.fill", this, IsbnBloomFilter::fill).register(meterRegistry);
+    Gauge.builder("isbn.filter.false.positive.expected", this, IsbnBloomFilter::expectedFalsePositiveRate)
+        .register(meterRegistry);
+    this.negatives = meterRegistry.counter("isbn.filter.checks", "result", "negative");
+    this.positives = meterRegistry.counter("isbn.filter.checks", "result", "positive");
+    this.falsePositives = meterRegistry.counter("isbn.filter.checks", "result", "false_positive");
+  }
+
+  @Override
+  public void clear() {
+    ready = false;
+    words = new AtomicLongArray((int) (bits / 64));
+    bitsSet.set(0);
+  }
+
+  @Override
+  public void load(Book book) {
+    put(book.getIsbn());
+  }
+
+  @Override
+  public void ready() {
+    ready = true;
+  }
+
+  @Override
+  public boolean isReady() {
+    return ready;
+  }
+
+  @Override
+  public void add(Book book) {
+    put(book.getIsbn());
+  }
+
+  @Override
+  public void remove(Book book) {
+  }
+
+  /**
+   * Whether the ISBN may be stored. {@code false} is certain.
+   */
+  public boolean mightContain(String isbn) {
+    AtomicLongArray words = this.words;
+    long hash = hash(isbn);
+    long step = step(hash);
+    for (int i = 0; i < hashes; i++) {
+      long bit = Math.floorMod(hash + i * step, bits);
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        negatives.increment();
+        return false;
+      }
+    }
+    positives.increment();
+    return true;
+  }
+
+  /**
+   * Records ISBNs the filter answered "maybe" for that the database did not
+   * have.
+   */
+  public void falsePositives(int count) {
+    falsePositives.increment(count);
+  }
+
+  public double fill() {
+    return (double) bitsSet.get() / bits;
+  }
+
+  public double expectedFalsePositiveRate() {
+    return Math.pow(fill(), hashes);
+  }
+
+  private void put(String isbn) {
+    if (isbn == null) {
+      return;
+    }
+    AtomicLongArray words = this.words;
+    long hash = hash(isbn);
+    long step = step(hash);
+    for (int i = 0; i < hashes; i++) {
+      long bit = Math.floorMod(hash + i * step, bits);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long current;
+      do {
+        current = words.get(word);
+        if ((current & mask) != 0) {
+          break;
+        }
+      } while (!words.compareAndSet(word, current, current | mask));
+      if ((current & mask) == 0) {
+        bitsSet.incrementAndGet();
+      }
+    }
+  }
+
+  private static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return mix(hash);
+  }
+
+  private static long step(long hash) {
+    return mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+  }
+
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
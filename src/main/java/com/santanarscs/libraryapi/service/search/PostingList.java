@@ -0,0 +1,77 @@
+package com.santanarscs.libraryapi.service.search;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Append-only list of book ids for one trigram. Ids are stored as zigzag
+ * varint deltas from the previous id, so the dense runs a rebuild produces
+ * take one byte each. Ids added out of order are still kept, they just cost
+ * a few more bytes, and such a list may then hold an id twice, which readers
+ * check with {@link #isStrictlyAscending()}. Not thread safe,
+ * {@link BookSearchIndex} guards it.
+ */
+class PostingList {
+
+  private byte[] bytes = new byte[4];
+  private int length;
+  private int size;
+  private int last;
+  private boolean strictlyAscending = true;
+
+  void add(int id) {
+    if (size > 0 && id <= last) {
+      strictlyAscending = false;
+    }
+    int delta = id - last;
+    int zigzag = (delta << 1) ^ (delta >> 31);
+    ensureCapacity(length + 5);
+    while ((zigzag & ~0x7F) != 0) {
+      bytes[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+      zigzag >>>= 7;
+    }
+    bytes[length++] = (byte) zigzag;
+    last = id;
+    size++;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isStrictlyAscending() {
+    return strictlyAscending;
+  }
+
+  void forEach(IntConsumer action) {
+    int id = 0;
+    int position = 0;
+    while (position < length) {
+      int zigzag = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes[position++];
+        zigzag |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      id += (zigzag >>> 1) ^ -(zigzag & 1);
+      action.accept(id);
+    }
+  }
+
+  /**
+   * Drops the spare capacity left by growing, once a rebuild is done.
+   */
+  void trim() {
+    if (bytes.length > length) {
+      bytes = Arrays.copyOf(bytes, length);
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length + (bytes.length >> 1)));
+    }
+  }
+}
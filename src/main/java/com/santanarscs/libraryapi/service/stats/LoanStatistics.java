@@ -0,0 +1,176 @@
+package com.santanarscs.libraryapi.service.stats;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.santanarscs.libraryapi.model.entity.Loan;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Loan counters kept up to date by {@code LoanService} as loans are made and
+ * returned, so the dashboards never aggregate the loan table: open loans,
+ * open loans per due date (what the overdue count is summed from), and all
+ * loans ever made, archived ones included, in total, per book and per
+ * customer.
+ *
+ * Every counter is a {@link LongAdder}, so concurrent loans never contend
+ * on a lock or a single CAS. Reading a total costs the number of adder cells,
+ * a lookup by book or customer one map read, and the overdue count one read
+ * per distinct due date of the open loans. The counters start empty and are
+ * filled and kept honest by {@link #correct}, which the reconciliation job
+ * calls with what the database holds.
+ *
+ * Published meters: {@code loans.open} and {@code loans.total}.
+ */
+@Component
+public class LoanStatistics {
+
+  private final LongAdder open = new LongAdder();
+  private final LongAdder total = new LongAdder();
+  private final ConcurrentSkipListMap<LocalDate, LongAdder> openByDueDate = new ConcurrentSkipListMap<>();
+  private final ConcurrentMap<Long, LongAdder> byBook = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LongAdder> byCustomer = new ConcurrentHashMap<>();
+
+  public LoanStatistics(MeterRegistry meterRegistry) {
+    Gauge.builder("loans.open", open, LongAdder::sum).register(meterRegistry);
+    Gauge.builder("loans.total", total, LongAdder::sum).register(meterRegistry);
+  }
+
+  /**
+   * Counts a loan that was just stored.
+   */
+  public void loaned(Loan loan) {
+    total.increment();
+    if (loan.getBook() != null && loan.getBook().getId() != null) {
+      counter(byBook, loan.getBook().getId()).increment();
+    }
+    if (loan.getCustomer() != null) {
+      counter(byCustomer, loan.getCustomer()).increment();
+    }
+    if (!Boolean.TRUE.equals(loan.getReturned())) {
+      opened(loan.getDueDate(), 1);
+    }
+  }
+
+  public void returned(LocalDate dueDate) {
+    opened(dueDate, -1);
+  }
+
+  public void reopened(LocalDate dueDate) {
+    opened(dueDate, 1);
+  }
+
+  public long openLoans() {
+    return open.sum();
+  }
+
+  /**
+   * Open loans due on or before the date.
+   */
+  public long openLoansDueUntil(LocalDate dueDate) {
+    long loans = 0;
+    for (LongAdder counter : openByDueDate.headMap(dueDate, true).values()) {
+      loans += counter.sum();
+    }
+    return loans;
+  }
+
+  public long totalLoans() {
+    return total.sum();
+  }
+
+  public long loansOfBook(Long bookId) {
+    LongAdder counter = byBook.get(bookId);
+    return counter == null ? 0 : counter.sum();
+  }
+
+  public long loansOfCustomer(String customer) {
+    LongAdder counter = byCustomer.get(customer);
+    return counter == null ? 0 : counter.sum();
+  }
+
+  /**
+   * What the counters hold right now. Taken before the database is read,
+   * it lets {@link #correct} keep the changes counted while the database
+   * was being read.
+   */
+  public Counts counts() {
+    return new Counts(open.sum(), total.sum(), sums(openByDueDate), sums(byBook), sums(byCustomer));
+  }
+
+  /**
+   * Moves every counter by the difference between the database and
+   * {@code before}, rather than setting it, so loans counted since
+   * {@code before} was taken are kept. Loans committed between the two reads
+   * but counted after {@code before} are off until the next run.
+   *
+   * @return the sum of the differences, zero when nothing had drifted
+   */
+  public long correct(Counts before, Counts database) {
+    long drift = Math.abs(database.open - before.open) + Math.abs(database.total - before.total);
+    open.add(database.open - before.open);
+    total.add(database.total - before.total);
+    drift += correct(openByDueDate, before.openByDueDate, database.openByDueDate);
+    drift += correct(byBook, before.byBook, database.byBook);
+    drift += correct(byCustomer, before.byCustomer, database.byCustomer);
+    return drift;
+  }
+
+  private void opened(LocalDate dueDate, int loans) {
+    open.add(loans);
+    if (dueDate != null) {
+      counter(openByDueDate, dueDate).add(loans);
+    }
+  }
+
+  private static <K> long correct(ConcurrentMap<K, LongAdder> counters, Map<K, Long> before, Map<K, Long> database) {
+    Set<K> keys = new HashSet<>(before.keySet());
+    keys.addAll(database.keySet());
+    long drift = 0;
+    for (K key : keys) {
+      long difference = database.getOrDefault(key, 0L) - before.getOrDefault(key, 0L);
+      if (difference != 0) {
+        counter(counters, key).add(difference);
+        drift += Math.abs(difference);
+      }
+    }
+    return drift;
+  }
+
+  private static <K> LongAdder counter(ConcurrentMap<K, LongAdder> counters, K key) {
+    LongAdder counter = counters.get(key);
+    return counter != null ? counter : counters.computeIfAbsent(key, ignored -> new LongAdder());
+  }
+
+  private static <K> Map<K, Long> sums(Map<K, LongAdder> counters) {
+    Map<K, Long> sums = new HashMap<>(counters.size() * 4 / 3 + 1);
+    counters.forEach((key, counter) -> sums.put(key, counter.sum()));
+    return sums;
+  }
+
+  /**
+   * A copy of the counters, or what the database says they should be.
+   */
+  @Getter
+  @RequiredArgsConstructor
+  public static class Counts {
+    private final long open;
+    private final long total;
+    private final Map<LocalDate, Long> openByDueDate;
+    private final Map<Long, Long> byBook;
+    private final Map<String, Long> byCustomer;
+  }
+}
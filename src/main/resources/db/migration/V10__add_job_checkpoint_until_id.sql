@@ -0,0 +1,4 @@
+-- Upper bound of the id range a job partition walks; null for a job walking
+-- every id. The late loan mail splits its run into one checkpoint per range
+-- so the ranges can be walked in parallel and resumed one by one.
+alter table job_checkpoint add column until_id bigint;
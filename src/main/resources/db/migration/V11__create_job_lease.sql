@@ -0,0 +1,19 @@
+-- Which node runs a scheduled job: the owner holds the lease until
+-- expires_at and renews it while it works; once it expired any node may take
+-- it over. See JobLeases.
+create table job_lease (
+  name varchar(100) not null,
+  owner varchar(100) not null,
+  expires_at timestamp not null,
+  primary key (name)
+);
+
+-- The scheduled jobs start out with an expired lease, so the nodes firing
+-- them together only race on the update.
+insert into job_lease (name, owner, expires_at) values ('late-loans-mail', '', timestamp '1970-01-01 00:00:00');
+insert into job_lease (name, owner, expires_at) values ('loan-archive', '', timestamp '1970-01-01 00:00:00');
+
+-- A range of a split job is walked by the node that claimed it, until
+-- claimed_until; the claim is renewed with every checkpoint.
+alter table job_checkpoint add column owner varchar(100);
+alter table job_checkpoint add column claimed_until timestamp;
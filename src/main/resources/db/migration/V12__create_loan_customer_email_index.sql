@@ -0,0 +1,3 @@
+-- Open loans of the customers in a chunk of the late loan mail
+-- (findOpenLoansOfCustomersBetween), so each customer gets one digest of all their loans.
+create index ix_loan_customer_email on loan (customer_email, returned);
@@ -0,0 +1,3 @@
+-- Only one node stores the loan statistics snapshots; like the other
+-- scheduled jobs, the lease starts out expired. See LoanStatisticsServiceImpl.
+insert into job_lease (name, owner, expires_at) values ('loan-stats-snapshot', '', timestamp '1970-01-01 00:00:00');
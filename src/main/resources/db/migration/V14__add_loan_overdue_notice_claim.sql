@@ -0,0 +1,4 @@
+-- Every node's overdue tracker fires for the loans it loaded, so the node
+-- mailing a loan's overdue notice claims it here first and the others leave
+-- it out (LoanRepository.claimOverdueNotices). Not mapped by the Loan entity.
+alter table loan add column overdue_notice_claim varchar(36);
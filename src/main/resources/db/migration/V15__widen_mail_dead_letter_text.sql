@@ -0,0 +1,3 @@
+-- A late loan digest lists every loan of the customer, so it does not fit
+-- varchar(4000) and a failed one could not be stored for a resend.
+alter table mail_dead_letter alter column text set data type clob;
@@ -0,0 +1,3 @@
+-- Lateness is told by due_date (V9) and the late loan mail walks the loans
+-- by id, so no query seeks on loan_date any more; the index only cost writes.
+drop index ix_loan_returned_loan_date;
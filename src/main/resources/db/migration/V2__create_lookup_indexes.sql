@@ -0,0 +1,21 @@
+-- isbn identifies a book: the unique index backs findByIsbn/existsByIsbn and
+-- closes the check-then-insert race in BookServiceImpl.save.
+create unique index ux_book_isbn on book (isbn);
+
+-- Loans are always written with returned set, so "not returned" is a plain
+-- equality the indexes below can seek on.
+update loan set returned = false where returned is null;
+alter table loan alter column returned set default false;
+alter table loan alter column returned set not null;
+
+-- Open loan of a book (existsByBookAndNotReturned). The foreign key is
+-- recreated so it reuses this index instead of its own id_book index.
+alter table loan drop constraint fk_loan_book;
+create index ix_loan_book_returned on loan (id_book, returned);
+alter table loan add constraint fk_loan_book foreign key (id_book) references book (id);
+
+-- Late loans: returned = false and loan_date <= ? (findByLoanDateLessThanAndNotReturned).
+create index ix_loan_returned_loan_date on loan (returned, loan_date);
+
+-- Loans of a customer (findByBookIsbnOrCustomer).
+create index ix_loan_customer on loan (customer);
@@ -0,0 +1,13 @@
+-- Progress of the batch jobs, so a restarted job resumes after the last
+-- processed id instead of starting over.
+create table job_checkpoint (
+  name varchar(100) not null,
+  run_date date not null,
+  last_id bigint not null,
+  finished boolean not null,
+  primary key (name)
+);
+
+-- Keyset walk over the open loans in id order (findLateLoansAfter); the
+-- query orders by returned, id so the index is read in order.
+create index ix_loan_returned_id on loan (returned, id);
@@ -0,0 +1,11 @@
+-- Mails the dispatcher gave up on after its retries, kept for a resend.
+create table mail_dead_letter (
+  id bigint generated by default as identity,
+  recipient varchar(255),
+  subject varchar(255),
+  text varchar(4000),
+  error varchar(1000),
+  attempts int not null,
+  failed_at timestamp not null,
+  primary key (id)
+);
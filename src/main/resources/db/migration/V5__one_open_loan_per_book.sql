@@ -0,0 +1,6 @@
+-- At most one open loan per book, enforced by the database. open_book_id
+-- is the book of an open loan and null once it is returned; unique indexes
+-- ignore nulls, so returned loans never collide. Being computed, it also
+-- holds for bulk updates that bypass the entity.
+alter table loan add column open_book_id bigint as (case when returned = false then id_book end);
+create unique index ux_loan_open_book on loan (open_book_id);
@@ -0,0 +1,4 @@
+-- Optimistic lock versions, bumped on every update through the entities.
+-- They also give the api a cheap entity tag for conditional requests.
+alter table book add column version bigint default 0 not null;
+alter table loan add column version bigint default 0 not null;
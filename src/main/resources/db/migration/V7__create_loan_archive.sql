@@ -0,0 +1,27 @@
+-- Returned loans past application.loans.archive.after, moved out of loan by
+-- LoanArchiveService so the open loan lookups keep working on a small table.
+-- Rows keep their loan id; there is no open_book_id since nothing here is
+-- open.
+create table loan_archive (
+  id bigint not null,
+  customer varchar(100),
+  customer_email varchar(255),
+  id_book bigint,
+  loan_date date,
+  returned boolean not null,
+  version bigint not null,
+  archived_at timestamp not null,
+  primary key (id)
+);
+
+create index ix_loan_archive_book on loan_archive (id_book);
+alter table loan_archive add constraint fk_loan_archive_book foreign key (id_book) references book (id);
+
+-- History of a customer (findByBookIsbnOrCustomer with archived loans).
+create index ix_loan_archive_customer on loan_archive (customer);
+
+-- Every loan, live or archived, for searches that ask for the history.
+create view loan_history as
+  select id, customer, customer_email, id_book, loan_date, returned, false as archived from loan
+  union all
+  select id, customer, customer_email, id_book, loan_date, returned, true as archived from loan_archive;
@@ -0,0 +1,12 @@
+-- Periodic copies of the in-memory loan counters (LoanStatistics), so the
+-- dashboards can chart them over time without aggregating the loan table.
+create table loan_stats_snapshot (
+  id bigint generated by default as identity,
+  taken_at timestamp not null,
+  open_loans bigint not null,
+  overdue_loans bigint not null,
+  total_loans bigint not null,
+  primary key (id)
+);
+
+create index ix_loan_stats_snapshot_taken_at on loan_stats_snapshot (taken_at);
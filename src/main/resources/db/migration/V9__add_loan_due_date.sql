@@ -0,0 +1,12 @@
+-- The day a loan is due back, set by DueDatePolicy when the loan is made.
+-- A loan is late from its due date on. Existing loans get the four day loan
+-- period the late loan job used to apply to loan_date.
+alter table loan add column due_date date;
+update loan set due_date = dateadd('DAY', 4, loan_date) where loan_date is not null;
+
+alter table loan_archive add column due_date date;
+update loan_archive set due_date = dateadd('DAY', 4, loan_date) where loan_date is not null;
+
+-- Open loans by due date: late loans, the overdue statistics and the
+-- loans OverdueTracker loads at startup.
+create index ix_loan_returned_due_date on loan (returned, due_date);
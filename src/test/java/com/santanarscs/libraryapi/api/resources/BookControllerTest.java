@@ -2,18 +2,27 @@ package com.santanarscs.libraryapi.api.resources;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.santanarscs.libraryapi.api.dto.BookDTO;
+import com.santanarscs.libraryapi.api.dto.SuggestionsDTO;
+import com.santanarscs.libraryapi.api.dto.ImportResultDTO;
+import com.santanarscs.libraryapi.api.pagination.Cursor;
 import com.santanarscs.libraryapi.exception.BusinessException;
 import com.santanarscs.libraryapi.model.entity.Book;
 import com.santanarscs.libraryapi.service.BookService;
 
+import org.assertj.core.api.Assertions;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -24,9 +33,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -34,10 +47,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest(controllers = BookController.class)
 @AutoConfigureMockMvc
+@Import(SimpleMeterRegistry.class)
 public class BookControllerTest {
 
 	static String BOOK_API = "/api/books";
@@ -129,8 +145,31 @@ public class BookControllerTest {
 				.andExpect(jsonPath("id").value(id))
 				.andExpect(jsonPath("title").value(book.getTitle()))
 				.andExpect(jsonPath("author").value(book.getAuthor()))
-				.andExpect(jsonPath("isbn").value(book.getIsbn()));
+				.andExpect(jsonPath("isbn").value(book.getIsbn()))
+				.andExpect(header().string(HttpHeaders.ETAG, "\"b1-0\""));
+
+	}
 
+	@Test
+	@DisplayName("Should be able to answer not modified when the client has the current version")
+	void getBookNotModifiedTest() throws Exception {
+		Book book = Book.builder().id(1L).title("My Book").author("Jhon Doe").isbn("0001").version(3).build();
+		BDDMockito.given(service.getById(1L)).willReturn(Optional.of(book));
+
+		mvc.perform(MockMvcRequestBuilders
+				.get(BOOK_API.concat("/1"))
+				.header(HttpHeaders.IF_NONE_MATCH, "\"b1-3\"")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"b1-3\""))
+				.andExpect(content().string(""));
+
+		mvc.perform(MockMvcRequestBuilders
+				.get(BOOK_API.concat("/1"))
+				.header(HttpHeaders.IF_NONE_MATCH, "\"b1-2\"")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("title").value("My Book"));
 	}
 
 	@Test
@@ -183,7 +222,7 @@ public class BookControllerTest {
 				.willReturn(Optional.of(updatingBook));
 
 		Book updatedBook = Book.builder().id(id).author("Jhon Doe").title("My Book").isbn("0002").build();
-		BDDMockito.given(service.update(updatingBook))
+		BDDMockito.given(service.update(Mockito.any(Book.class)))
 				.willReturn(updatedBook);
 
 		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -201,6 +240,26 @@ public class BookControllerTest {
 
 	}
 
+	@Test
+	@DisplayName("Should not be able to update a book changed by another request")
+	void conflictingUpdateBookTest() throws Exception {
+		Book book = Book.builder().id(1L).title("Other Book").author("Other Author").isbn("0002").build();
+		BDDMockito.given(service.getById(anyLong())).willReturn(Optional.of(book));
+		BDDMockito.given(service.update(Mockito.any(Book.class)))
+				.willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1L));
+
+		mvc.perform(MockMvcRequestBuilders
+				.put(BOOK_API.concat("/1"))
+				.content(new ObjectMapper().writeValueAsString(createNewBook()))
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isConflict())
+				.andExpect(jsonPath("errors[0]").value("Resource was changed by another request"));
+
+		Assertions.assertThat(book.getTitle()).isEqualTo("Other Book");
+		Assertions.assertThat(book.getAuthor()).isEqualTo("Other Author");
+	}
+
 	@Test
 	@DisplayName("Should not be able to update a book")
 	void noUpdateBookTest() throws Exception {
@@ -242,6 +301,204 @@ public class BookControllerTest {
 				.andExpect(jsonPath("pageable.pageNumber").value(0));
 	}
 
+	@Test
+	@DisplayName("should be able to answer not modified for an unchanged page")
+	void findBooksNotModifiedTest() throws Exception {
+		Book book = Book.builder().id(1L).title("My Book").author("Jhon Doe").isbn("0001").build();
+		BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+				.willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 100), 1));
+
+		String etag = mvc.perform(MockMvcRequestBuilders
+				.get(BOOK_API.concat("?title=book&page=0&size=100"))
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mvc.perform(MockMvcRequestBuilders
+				.get(BOOK_API.concat("?title=book&page=0&size=100"))
+				.header(HttpHeaders.IF_NONE_MATCH, etag)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+
+		book.setVersion(1);
+
+		mvc.perform(MockMvcRequestBuilders
+				.get(BOOK_API.concat("?title=book&page=0&size=100"))
+				.header(HttpHeaders.IF_NONE_MATCH, etag)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, Matchers.not(etag)));
+	}
+
+	@Test
+	@DisplayName("should be able to get many books in the order asked, with the misses")
+	void getBatchTest() throws Exception {
+		Book book = Book.builder().id(2L).title("My Book").author("Jhon Doe").isbn("0002").build();
+		BDDMockito.given(service.getByIds(Arrays.asList(3L, 2L)))
+				.willReturn(Arrays.asList(Optional.empty(), Optional.of(book)));
+
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/batch?ids=3,2")).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)))
+				.andExpect(jsonPath("[0].key").value("3"))
+				.andExpect(jsonPath("[0].found").value(false))
+				.andExpect(jsonPath("[0].book").doesNotExist())
+				.andExpect(jsonPath("[1].key").value("2"))
+				.andExpect(jsonPath("[1].found").value(true))
+				.andExpect(jsonPath("[1].book.title").value("My Book"));
+	}
+
+	@Test
+	@DisplayName("should be able to get many books by isbn")
+	void getBatchByIsbnTest() throws Exception {
+		Book book = Book.builder().id(2L).title("My Book").author("Jhon Doe").isbn("0002").build();
+		BDDMockito.given(service.getByIsbns(Arrays.asList("0002")))
+				.willReturn(Arrays.asList(Optional.of(book)));
+
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/batch?isbns=0002")).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("[0].key").value("0002"))
+				.andExpect(jsonPath("[0].book.id").value(2));
+	}
+
+	@Test
+	@DisplayName("should not be able to get a batch without exactly one kind of key or with too many keys")
+	void invalidBatchTest() throws Exception {
+		StringBuilder ids = new StringBuilder("0");
+		for (int i = 1; i <= 100; i++) {
+			ids.append(',').append(i);
+		}
+
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/batch")))
+				.andExpect(status().isBadRequest());
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/batch?ids=1&isbns=001")))
+				.andExpect(status().isBadRequest());
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/batch?ids=" + ids)))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("errors[0]").value("At most 100 books per call"));
+		Mockito.verifyNoInteractions(service);
+	}
+
+	@Test
+	@DisplayName("should be able to return a page after a cursor")
+	void findBooksByCursorTest() throws Exception {
+		Book first = Book.builder().id(11L).title("My Book").author("Jhon Doe").isbn("011").build();
+		Book second = Book.builder().id(12L).title("My Book").author("Jhon Doe").isbn("012").build();
+		BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.eq(10L), Mockito.eq(2)))
+				.willReturn(new SliceImpl<Book>(Arrays.asList(first, second), PageRequest.of(0, 2), true));
+		BDDMockito.given(service.count(Mockito.any(Book.class))).willReturn(30L);
+
+		String queryString = String.format("?title=%s&cursor=%s&size=2&total=true", first.getTitle(), Cursor.encode(10L));
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+				.get(BOOK_API.concat(queryString))
+				.accept(MediaType.APPLICATION_JSON);
+
+		mvc.perform(request)
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("content", Matchers.hasSize(2)))
+				.andExpect(jsonPath("content[1].id").value(12))
+				.andExpect(jsonPath("nextCursor").value(Cursor.encode(12L)))
+				.andExpect(jsonPath("totalElements").value(30));
+	}
+
+	@Test
+	@DisplayName("should not be able to seek with an invalid cursor")
+	void findBooksByInvalidCursorTest() throws Exception {
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+				.get(BOOK_API.concat("?cursor=not-a-cursor"))
+				.accept(MediaType.APPLICATION_JSON);
+
+		mvc.perform(request)
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("errors[0]").value("Invalid cursor"));
+		Mockito.verify(service, Mockito.never()).findAfter(Mockito.any(Book.class), Mockito.anyLong(), Mockito.anyInt());
+	}
+
+	@Test
+	@DisplayName("Should be able to suggest titles and authors for a prefix")
+	void suggestTest() throws Exception {
+		BDDMockito.given(service.suggest("du", 5)).willReturn(SuggestionsDTO.builder()
+				.titles(Arrays.asList("Dune", "Dune Messiah"))
+				.authors(Arrays.asList("Dumas"))
+				.build());
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+				.get(BOOK_API.concat("/suggestions?prefix=du&limit=5"))
+				.accept(MediaType.APPLICATION_JSON);
+
+		mvc.perform(request)
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("titles", Matchers.hasSize(2)))
+				.andExpect(jsonPath("titles[1]").value("Dune Messiah"))
+				.andExpect(jsonPath("authors[0]").value("Dumas"));
+	}
+
+	@Test
+	@DisplayName("Should not be able to suggest more than the limit allows")
+	void suggestInvalidLimitTest() throws Exception {
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+				.get(BOOK_API.concat("/suggestions?prefix=du&limit=500"))
+				.accept(MediaType.APPLICATION_JSON);
+
+		mvc.perform(request)
+				.andExpect(status().isBadRequest());
+		Mockito.verify(service, Mockito.never()).suggest(Mockito.anyString(), Mockito.anyInt());
+	}
+
+	@Test
+	@DisplayName("Should be able to import books from a CSV body")
+	@SuppressWarnings("unchecked")
+	void importBooksFromCsvTest() throws Exception {
+		List<Book> imported = new ArrayList<>();
+		BDDMockito.given(service.importBooks(Mockito.any(Iterator.class))).willAnswer(invocation -> {
+			((Iterator<Book>) invocation.getArgument(0)).forEachRemaining(imported::add);
+			return ImportResultDTO.builder().imported(imported.size()).failed(0).errors(List.of()).build();
+		});
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+				.post(BOOK_API.concat("/import"))
+				.contentType("text/csv")
+				.accept(MediaType.APPLICATION_JSON)
+				.content("title,author,isbn\r\nMy Book,Jhon Doe,001\r\n\"Other, Book\",Jane Doe,002\r\n");
+
+		mvc.perform(request)
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("imported").value(2))
+				.andExpect(jsonPath("failed").value(0));
+
+		Assertions.assertThat(imported).extracting(Book::getTitle).containsExactly("My Book", "Other, Book");
+		Assertions.assertThat(imported).extracting(Book::getIsbn).containsExactly("001", "002");
+	}
+
+	@Test
+	@DisplayName("Should be able to import books from a NDJSON body")
+	@SuppressWarnings("unchecked")
+	void importBooksFromNdjsonTest() throws Exception {
+		List<Book> imported = new ArrayList<>();
+		BDDMockito.given(service.importBooks(Mockito.any(Iterator.class))).willAnswer(invocation -> {
+			((Iterator<Book>) invocation.getArgument(0)).forEachRemaining(imported::add);
+			return ImportResultDTO.builder().imported(imported.size()).failed(0).errors(List.of()).build();
+		});
+
+		ObjectMapper mapper = new ObjectMapper();
+		String body = mapper.writeValueAsString(createNewBook()) + "\n"
+				+ mapper.writeValueAsString(BookDTO.builder().title("Other").author("Jane Doe").isbn("002").build()) + "\n";
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+				.post(BOOK_API.concat("/import"))
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.accept(MediaType.APPLICATION_JSON)
+				.content(body);
+
+		mvc.perform(request)
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("imported").value(2));
+
+		Assertions.assertThat(imported).extracting(Book::getIsbn).containsExactly("001", "002");
+	}
+
 	private BookDTO createNewBook() {
 		return BookDTO.builder().author("Jhon Doe").title("My Book").isbn("001").build();
 	}
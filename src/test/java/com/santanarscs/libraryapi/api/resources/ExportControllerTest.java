@@ -0,0 +1,101 @@
+package com.santanarscs.libraryapi.api.resources;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.service.ExportService;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = ExportController.class)
+@AutoConfigureMockMvc
+@Import(SimpleMeterRegistry.class)
+public class ExportControllerTest {
+
+	static final String EXPORT_API = "/api/export";
+
+	@Autowired
+	MockMvc mvc;
+
+	@MockBean
+	ExportService service;
+
+	@Test
+	@DisplayName("Should be able to stream books as NDJSON")
+	@SuppressWarnings("unchecked")
+	void exportBooksAsNdjsonTest() throws Exception {
+		BDDMockito.willAnswer(invocation -> {
+			Consumer<Book> action = invocation.getArgument(0);
+			action.accept(Book.builder().id(1L).title("My Book").author("Jhon Doe").isbn("001").build());
+			action.accept(Book.builder().id(2L).title("Other Book").author("Jane Doe").isbn("002").build());
+			return null;
+		}).given(service).forEachBook(Mockito.any(Consumer.class));
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.get(EXPORT_API.concat("/books")))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Content-Type", "application/x-ndjson"))
+				.andExpect(header().string("Content-Disposition", "attachment; filename=\"books.ndjson\""))
+				.andExpect(content().string(
+						"{\"id\":1,\"title\":\"My Book\",\"author\":\"Jhon Doe\",\"isbn\":\"001\"}\n"
+								+ "{\"id\":2,\"title\":\"Other Book\",\"author\":\"Jane Doe\",\"isbn\":\"002\"}\n"));
+	}
+
+	@Test
+	@DisplayName("Should be able to stream loans as CSV")
+	@SuppressWarnings("unchecked")
+	void exportLoansAsCsvTest() throws Exception {
+		Book book = Book.builder().id(1L).title("My, \"Book\"").author("Jhon Doe").isbn("001").build();
+		BDDMockito.willAnswer(invocation -> {
+			Consumer<Loan> action = invocation.getArgument(0);
+			action.accept(Loan.builder().id(5L).book(book).customer("Jhon").customerEmail("jhon@example.com")
+					.loanDate(LocalDate.now()).build());
+			return null;
+		}).given(service).forEachLoan(Mockito.any(Consumer.class));
+
+		MvcResult result = mvc.perform(MockMvcRequestBuilders.get(EXPORT_API.concat("/loans?format=csv")))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType("text/csv;charset=UTF-8"))
+				.andExpect(content().string("id,isbn,customer,email,book_id,title,author\r\n"
+						+ "5,001,Jhon,jhon@example.com,1,\"My, \"\"Book\"\"\",Jhon Doe\r\n"));
+	}
+
+	@Test
+	@DisplayName("Should not be able to export in an unknown format")
+	void exportUnknownFormatTest() throws Exception {
+		mvc.perform(MockMvcRequestBuilders.get(EXPORT_API.concat("/books?format=xml")))
+				.andExpect(status().isBadRequest());
+	}
+}
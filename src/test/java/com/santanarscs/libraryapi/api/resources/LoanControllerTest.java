@@ -4,13 +4,18 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.santanarscs.libraryapi.api.dto.LoanDTO;
 import com.santanarscs.libraryapi.api.dto.LoanFilterDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnResultDTO;
 import com.santanarscs.libraryapi.api.dto.ReturnedLoanDTO;
+import com.santanarscs.libraryapi.api.pagination.Cursor;
 import com.santanarscs.libraryapi.exception.BusinessException;
 import com.santanarscs.libraryapi.model.entity.Book;
 import com.santanarscs.libraryapi.model.entity.Loan;
@@ -28,8 +33,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -38,10 +46,13 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest(controllers = LoanController.class)
 @AutoConfigureMockMvc
+@Import(SimpleMeterRegistry.class)
 public class LoanControllerTest {
 
 	static final String LOAN_API = "/api/loans";
@@ -128,6 +139,35 @@ public class LoanControllerTest {
 				.andExpect(jsonPath("errors[0]").value("Book already loaned"));
 	}
 
+	@Test
+	@DisplayName("Should be able to get a loan tagged by its version and the book version")
+	void getLoanTest() throws Exception {
+		Book book = Book.builder().id(1L).title("My Book").isbn("001").version(2).build();
+		Loan loan = Loan.builder().id(1L).customer("Jhon Doe").book(book).version(1).build();
+		BDDMockito.given(loanService.getById(1L)).willReturn(Optional.of(loan));
+
+		mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/1")).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("customer").value("Jhon Doe"))
+				.andExpect(jsonPath("isbn").value("001"))
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"l1-1-2\""));
+
+		mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/1"))
+				.header(HttpHeaders.IF_NONE_MATCH, "\"l1-1-2\"")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNotModified())
+				.andExpect(MockMvcResultMatchers.content().string(""));
+	}
+
+	@Test
+	@DisplayName("Should be able to return not found for a loan that doesnt exists")
+	void loanNotFoundTest() throws Exception {
+		BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+
+		mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/1")).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNotFound());
+	}
+
 	@Test
 	@DisplayName("Should be able to return a loan")
 	void returnBookTest() throws Exception {
@@ -145,6 +185,48 @@ public class LoanControllerTest {
 		Mockito.verify(loanService, Mockito.times(1)).update(loan);
 	}
 
+	@Test
+	@DisplayName("Should be able to return many loans in one call")
+	void returnBooksTest() throws Exception {
+		List<LoanReturnDTO> loans = Arrays.asList(LoanReturnDTO.builder().id(1L).version(0L).build(),
+				LoanReturnDTO.builder().id(2L).build());
+		BDDMockito.given(loanService.returnAll(loans)).willReturn(Arrays.asList(
+				LoanReturnResultDTO.builder().id(1L).status(LoanReturnResultDTO.Status.RETURNED).build(),
+				LoanReturnResultDTO.builder().id(2L).status(LoanReturnResultDTO.Status.NOT_FOUND).build()));
+
+		mvc.perform(
+				MockMvcRequestBuilders.patch(LOAN_API)
+						.contentType(MediaType.APPLICATION_JSON)
+						.accept(MediaType.APPLICATION_JSON)
+						.content(new ObjectMapper().writeValueAsString(loans)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("[0].id").value(1))
+				.andExpect(jsonPath("[0].status").value("RETURNED"))
+				.andExpect(jsonPath("[1].status").value("NOT_FOUND"));
+	}
+
+	@Test
+	@DisplayName("Should not be able to return too many loans or loans without id in one call")
+	void invalidReturnBooksTest() throws Exception {
+		List<LoanReturnDTO> tooMany = new ArrayList<>();
+		for (long id = 0; id <= 1000; id++) {
+			tooMany.add(LoanReturnDTO.builder().id(id).build());
+		}
+
+		mvc.perform(
+				MockMvcRequestBuilders.patch(LOAN_API)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(new ObjectMapper().writeValueAsString(tooMany)))
+				.andExpect(status().isBadRequest());
+		mvc.perform(
+				MockMvcRequestBuilders.patch(LOAN_API)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("[{\"version\": 1}]"))
+				.andExpect(status().isBadRequest())
+				.andExpect(jsonPath("errors[0]").value("Loan id is required"));
+		Mockito.verifyNoInteractions(loanService);
+	}
+
 	@Test
 	@DisplayName("Should not be able to return a loan")
 	void notReturnBookTest() throws Exception {
@@ -163,15 +245,12 @@ public class LoanControllerTest {
 	@Test
 	@DisplayName("should be able to return a list filtred")
 	void findLoansTest() throws Exception {
-		Long id = 1L;
-		Loan loan = createLoan();
-		loan.setId(id);
+		LoanDTO loan = new LoanDTO(1L, "Jhon", "jhon@example.com", 1L, "My Book", "Jhon Doe", "001");
 
-		
 		BDDMockito.given(loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
-				.willReturn(new PageImpl<Loan>(Arrays.asList(loan), PageRequest.of(0, 100), 1));
+				.willReturn(new PageImpl<LoanDTO>(Arrays.asList(loan), PageRequest.of(0, 100), 1));
 
-		String queryString = String.format("?isbn=%s&customer=%s&page=0&size=100", loan.getBook().getIsbn(), loan.getCustomer());
+		String queryString = String.format("?isbn=%s&customer=%s&page=0&size=100", loan.getIsbn(), loan.getCustomer());
 
 		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
 				.get(LOAN_API.concat(queryString))
@@ -180,11 +259,33 @@ public class LoanControllerTest {
 		mvc.perform(request)
 				.andExpect(status().isOk())
 				.andExpect(jsonPath("content", Matchers.hasSize(1)))
+				.andExpect(jsonPath("content[0].isbn").value("001"))
+				.andExpect(jsonPath("content[0].book.id").value(1))
 				.andExpect(jsonPath("totalElements").value(1))
 				.andExpect(jsonPath("pageable.pageSize").value(100))
 				.andExpect(jsonPath("pageable.pageNumber").value(0));
 	}
 
+	@Test
+	@DisplayName("should be able to return the last page after a cursor")
+	void findLoansByCursorTest() throws Exception {
+		LoanDTO loan = new LoanDTO(5L, "Jhon", "jhon@example.com", 1L, "My Book", "Jhon Doe", "001");
+
+		BDDMockito.given(loanService.findAfter(Mockito.any(LoanFilterDTO.class), Mockito.eq(0L), Mockito.eq(20)))
+				.willReturn(new SliceImpl<LoanDTO>(Arrays.asList(loan), PageRequest.of(0, 20), false));
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+				.get(LOAN_API.concat("?customer=Jhon&cursor="))
+				.accept(MediaType.APPLICATION_JSON);
+
+		mvc.perform(request)
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("content", Matchers.hasSize(1)))
+				.andExpect(jsonPath("nextCursor").doesNotExist())
+				.andExpect(jsonPath("totalElements").doesNotExist());
+		Mockito.verify(loanService, Mockito.never()).count(Mockito.any(LoanFilterDTO.class));
+	}
+
 	private Loan createLoan() {
     Book book = Book.builder().id(1L).isbn("001").build();
     return Loan.builder().book(book).customer("Jhon").loanDate(LocalDate.now()).build();
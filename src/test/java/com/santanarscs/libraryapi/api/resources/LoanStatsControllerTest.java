@@ -0,0 +1,91 @@
+package com.santanarscs.libraryapi.api.resources;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.santanarscs.libraryapi.api.dto.LoanStatsDTO;
+import com.santanarscs.libraryapi.service.LoanStatisticsService;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = LoanStatsController.class)
+@AutoConfigureMockMvc
+@Import(SimpleMeterRegistry.class)
+public class LoanStatsControllerTest {
+
+	static final String STATS_API = "/api/loans/stats";
+
+	@Autowired
+	MockMvc mvc;
+
+	@MockBean
+	LoanStatisticsService service;
+
+	@Test
+	@DisplayName("Should be able to get the loan counters")
+	void getStatsTest() throws Exception {
+		BDDMockito.given(service.getStatistics(LocalDate.now())).willReturn(LoanStatsDTO.builder()
+				.openLoans(3).overdueLoans(1).totalLoans(10).takenAt(LocalDateTime.now()).build());
+
+		mvc.perform(MockMvcRequestBuilders.get(STATS_API).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("openLoans").value(3))
+				.andExpect(jsonPath("overdueLoans").value(1))
+				.andExpect(jsonPath("totalLoans").value(10));
+	}
+
+	@Test
+	@DisplayName("Should be able to count the loans of a book and of a customer")
+	void getCountsTest() throws Exception {
+		BDDMockito.given(service.countLoansOfBook(7L)).willReturn(12L);
+		BDDMockito.given(service.countLoansOfCustomer("Jhon")).willReturn(4L);
+
+		mvc.perform(MockMvcRequestBuilders.get(STATS_API + "/books/7").accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("key").value("7"))
+				.andExpect(jsonPath("loans").value(12));
+		mvc.perform(MockMvcRequestBuilders.get(STATS_API + "/customers/Jhon").accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("key").value("Jhon"))
+				.andExpect(jsonPath("loans").value(4));
+	}
+
+	@Test
+	@DisplayName("Should be able to page the stored snapshots")
+	void getSnapshotsTest() throws Exception {
+		LoanStatsDTO snapshot = LoanStatsDTO.builder().openLoans(3).totalLoans(10).takenAt(LocalDateTime.now()).build();
+		BDDMockito.given(service.getSnapshots(Mockito.any(Pageable.class)))
+				.willReturn(new PageImpl<>(List.of(snapshot), PageRequest.of(0, 10), 1));
+
+		mvc.perform(MockMvcRequestBuilders.get(STATS_API + "/snapshots?page=0&size=10")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("content[0].openLoans").value(3))
+				.andExpect(jsonPath("totalElements").value(1));
+	}
+}
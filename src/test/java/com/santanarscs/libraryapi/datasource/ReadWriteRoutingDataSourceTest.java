@@ -0,0 +1,109 @@
+package com.santanarscs.libraryapi.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ActiveProfiles("test")
+public class ReadWriteRoutingDataSourceTest {
+
+  DataSource primary;
+  DataSource replica;
+  Connection primaryConnection;
+  Connection replicaConnection;
+  MeterRegistry meterRegistry;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    primary = Mockito.mock(DataSource.class);
+    replica = Mockito.mock(DataSource.class);
+    primaryConnection = Mockito.mock(Connection.class);
+    replicaConnection = Mockito.mock(Connection.class);
+    Mockito.when(primary.getConnection()).thenReturn(primaryConnection);
+    Mockito.when(replica.getConnection()).thenReturn(replicaConnection);
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    TransactionSynchronizationManager.clear();
+  }
+
+  @Test
+  @DisplayName("Should route read-only transactions to the replica and the rest to the primary")
+  void routeTest() throws Exception {
+    ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(primary, replica, Duration.ZERO,
+        meterRegistry);
+
+    assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+
+    TransactionSynchronizationManager.initSynchronization();
+    assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    assertThat(dataSource.getConnection()).isSameAs(replicaConnection);
+
+    assertThat(meterRegistry.get("datasource.connections.routed").tag("pool", "primary").counter().count())
+        .isEqualTo(2);
+    assertThat(meterRegistry.get("datasource.connections.routed").tag("pool", "replica").counter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should keep reads on the primary for the window after a write commits")
+  void readYourWritesTest() throws Exception {
+    ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(primary, replica, Duration.ofMinutes(1),
+        meterRegistry);
+    TransactionSynchronizationManager.initSynchronization();
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    assertThat(dataSource.getConnection()).isSameAs(replicaConnection);
+
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    dataSource.getConnection();
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    assertThat(dataSource.getConnection()).isSameAs(replicaConnection);
+
+    TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+    assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+  }
+
+  @Test
+  @DisplayName("Should keep primary reads on the primary without counting them as writes")
+  void readPrimaryTest() throws Exception {
+    ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(primary, replica, Duration.ofMinutes(1),
+        meterRegistry);
+    TransactionSynchronizationManager.initSynchronization();
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+    assertThat(ReadWriteRoutingDataSource.readPrimary(() -> connection(dataSource))).isSameAs(primaryConnection);
+    assertThat(TransactionSynchronizationManager.getSynchronizations()).isEmpty();
+    assertThat(dataSource.getConnection()).isSameAs(replicaConnection);
+  }
+
+  private Connection connection(DataSource dataSource) {
+    try {
+      return dataSource.getConnection();
+    } catch (SQLException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
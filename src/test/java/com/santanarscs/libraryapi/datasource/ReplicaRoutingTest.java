@@ -0,0 +1,93 @@
+package com.santanarscs.libraryapi.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.service.BookService;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Two separate H2 databases stand in for the primary and its replica.
+ * Nothing replicates between them, so what a read sees tells which one it
+ * went to.
+ */
+@SpringBootTest(properties = {
+    "application.datasource.replica.enabled=true",
+    "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+    "application.datasource.replica.url=" + ReplicaRoutingTest.REPLICA_URL,
+    "application.datasource.replica.read-your-writes-window=0s",
+    "application.search.index.enabled=false" })
+@ActiveProfiles("test")
+public class ReplicaRoutingTest {
+
+  static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+  static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+  @Autowired
+  BookService service;
+
+  @Autowired
+  @Qualifier("replicaDataSource")
+  HikariDataSource replica;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @BeforeAll
+  public static void migrateReplica() {
+    Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+  }
+
+  @Test
+  @DisplayName("Should be able to write to the primary and read from the replica")
+  void routingTest() {
+    Book book = service.save(Book.builder().title("Routed").author("Jhon Doe").isbn("routing-001").build());
+
+    assertThat(service.find(Book.builder().title("Routed").build(), PageRequest.of(0, 10))).isEmpty();
+
+    new JdbcTemplate(replica).update("insert into book (id, title, author, isbn) values (?, ?, ?, ?)",
+        book.getId(), "Routed", "Jhon Doe", "routing-001");
+
+    assertThat(service.find(Book.builder().title("Routed").build(), PageRequest.of(0, 10))).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Should be able to fill the caches from the primary")
+  void cacheFromPrimaryTest() {
+    Book book = service.save(Book.builder().title("Cached").author("Jhon Doe").isbn("routing-002").build());
+    service.save(Book.builder().title("Cached").author("Jhon Doe").isbn("routing-003").build());
+
+    assertThat(service.getById(book.getId())).map(Book::getTitle).contains("Cached");
+    assertThat(service.getBookByIsbn("routing-002")).map(Book::getTitle).contains("Cached");
+    assertThat(service.getByIsbns(List.of("routing-003"))).extracting(Optional::isPresent).containsExactly(true);
+    assertThat(service.find(Book.builder().title("Cached").build(), PageRequest.of(0, 10))).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should be able to publish connection metrics for each pool")
+  void poolMetricsTest() {
+    service.count(new Book());
+
+    assertThat(meterRegistry.get("hikaricp.connections").tag("pool", "primary").gauge().value()).isPositive();
+    assertThat(meterRegistry.get("hikaricp.connections").tag("pool", "replica").gauge().value()).isPositive();
+    assertThat(meterRegistry.get("datasource.connections.routed").tag("pool", "replica").counter().count())
+        .isPositive();
+  }
+}
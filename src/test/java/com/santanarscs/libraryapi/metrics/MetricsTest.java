@@ -0,0 +1,98 @@
+package com.santanarscs.libraryapi.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.santanarscs.libraryapi.service.ScheduleService;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@ActiveProfiles("test")
+public class MetricsTest {
+
+  @Autowired
+  MockMvc mvc;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Autowired
+  ScheduleService scheduleService;
+
+  @Test
+  @DisplayName("Should be able to time a request in the controller, the service and the repository")
+  void timingsTest() throws Exception {
+    mvc.perform(createBook("metrics-001")).andExpect(status().isCreated());
+
+    Timer request = meterRegistry.get("http.server.requests").tag("uri", "/api/books").tag("method", "POST").timer();
+    Timer service = meterRegistry.get("service.invocations").tag("class", "BookServiceImpl").tag("method", "save")
+        .timer();
+    Timer query = meterRegistry.get("spring.data.repository.invocations").tag("repository", "BookRepository")
+        .tag("method", "save").timer();
+
+    assertThat(request.count()).isPositive();
+    assertThat(service.count()).isPositive();
+    assertThat(query.count()).isPositive();
+    assertThat(request.takeSnapshot().percentileValues()).hasSize(3);
+    assertThat(service.takeSnapshot().percentileValues()).hasSize(3);
+    assertThat(query.takeSnapshot().percentileValues()).hasSize(3);
+  }
+
+  @Test
+  @DisplayName("Should be able to count business rejections by reason")
+  void businessRejectionsTest() throws Exception {
+    mvc.perform(createBook("metrics-002")).andExpect(status().isCreated());
+    double before = meterRegistry.counter("business.rejections", "reason", "Alread exists ISBN registred").count();
+
+    mvc.perform(createBook("metrics-002")).andExpect(status().isBadRequest());
+
+    assertThat(meterRegistry.get("business.rejections").tag("reason", "Alread exists ISBN registred").counter()
+        .count()).isEqualTo(before + 1);
+  }
+
+  @Test
+  @DisplayName("Should be able to time a scheduled job run")
+  void schedulerTest() {
+    scheduleService.sendMailToLateLoans();
+
+    Timer run = meterRegistry.get("scheduler.run").tag("method", "sendMailToLateLoans").timer();
+
+    assertThat(run.count()).isEqualTo(1);
+    assertThat(run.takeSnapshot().percentileValues()).hasSize(3);
+  }
+
+  @Test
+  @DisplayName("Should be able to scrape the metrics in the prometheus format")
+  void prometheusTest() throws Exception {
+    mvc.perform(createBook("metrics-003")).andExpect(status().isCreated());
+
+    mvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+        .andExpect(status().isOk())
+        .andExpect(content().string(org.hamcrest.Matchers.containsString("service_invocations_seconds{")))
+        .andExpect(content().string(org.hamcrest.Matchers.containsString("quantile=\"0.999\"")));
+  }
+
+  private MockHttpServletRequestBuilder createBook(String isbn) {
+    return MockMvcRequestBuilders.post("/api/books")
+        .contentType(MediaType.APPLICATION_JSON)
+        .accept(MediaType.APPLICATION_JSON)
+        .content("{\"title\":\"Metrics\",\"author\":\"Jhon Doe\",\"isbn\":\"" + isbn + "\"}");
+  }
+}
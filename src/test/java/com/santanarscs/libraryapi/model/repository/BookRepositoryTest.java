@@ -2,16 +2,25 @@ package com.santanarscs.libraryapi.model.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.PersistenceException;
 
 import com.santanarscs.libraryapi.model.entity.Book;
 
+import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -84,6 +93,109 @@ public class BookRepositoryTest {
 
   }
 
+  @Test
+  @DisplayName("Should be able to find the books of many isbns with one query")
+  void findByIsbnInTest() {
+    entityManager.persist(createNewBook("001"));
+    entityManager.persist(createNewBook("002"));
+    entityManager.persist(createNewBook("003"));
+
+    List<Book> books = repository.findByIsbnIn(List.of("001", "003", "404"));
+
+    assertThat(books).extracting(Book::getIsbn).containsExactlyInAnyOrder("001", "003");
+  }
+
+  @Test
+  @DisplayName("Should be able to bump the version on update and reject stale copies")
+  void versionTest() {
+    Book book = entityManager.persistFlushFind(createNewBook("001"));
+    entityManager.detach(book);
+    Book stale = Book.builder().id(book.getId()).title("Stale").author(book.getAuthor()).isbn(book.getIsbn())
+        .version(book.getVersion()).build();
+
+    book.setTitle("Updated");
+    Book updated = repository.saveAndFlush(book);
+
+    assertThat(updated.getVersion()).isEqualTo(book.getVersion() + 1);
+    entityManager.clear();
+    Assertions.assertThatThrownBy(() -> repository.saveAndFlush(stale))
+        .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+  }
+
+  @Test
+  @DisplayName("Should be able to seek books after an id in id order")
+  void findAfterTest() {
+    Book first = entityManager.persist(createNewBook("001"));
+    Book second = entityManager.persist(createNewBook("002"));
+    Book third = entityManager.persist(createNewBook("003"));
+    entityManager.persist(Book.builder().title("Other").author("Other").isbn("004").build());
+
+    Book filter = Book.builder().title("my book").build();
+
+    Slice<Book> result = repository.findAfter(first.getId(), filter, 1);
+
+    assertThat(result.getContent()).extracting(Book::getId).containsExactly(second.getId());
+    assertThat(result.hasNext()).isTrue();
+
+    result = repository.findAfter(second.getId(), filter, 1);
+
+    assertThat(result.getContent()).extracting(Book::getId).containsExactly(third.getId());
+    assertThat(result.hasNext()).isFalse();
+    assertThat(repository.countByFilter(filter)).isEqualTo(3);
+  }
+
+  @Test
+  @DisplayName("Should be able to stream every book in id order")
+  void streamAllTest() {
+    Book first = entityManager.persist(createNewBook("001"));
+    Book second = entityManager.persist(createNewBook("002"));
+
+    try (Stream<Book> books = repository.streamAll()) {
+      assertThat(books.map(Book::getId).collect(Collectors.toList())).containsExactly(first.getId(), second.getId());
+    }
+  }
+
+  @Test
+  @DisplayName("Should be able to return which isbns already exist")
+  void findExistingIsbnsTest() {
+    entityManager.persist(createNewBook("001"));
+    entityManager.persist(createNewBook("002"));
+
+    assertThat(repository.findExistingIsbns(List.of("001", "002", "003"))).containsExactlyInAnyOrder("001", "002");
+  }
+
+  @Test
+  @DisplayName("Should not be able to store two books with the same isbn")
+  void uniqueIsbnTest() {
+    entityManager.persistAndFlush(createNewBook("001"));
+
+    Assertions.assertThatThrownBy(() -> entityManager.persistAndFlush(createNewBook("001")))
+        .isInstanceOf(PersistenceException.class);
+  }
+
+  @Test
+  @DisplayName("Should be able to look a book up by isbn through the unique index")
+  void findByIsbnUsesIndexTest() {
+    assertThat(explain("select id from book where isbn = '001'")).contains("UX_BOOK_ISBN");
+  }
+
+  @Test
+  @DisplayName("Should be able to find distinct titles and authors by prefix ignoring case")
+  void findStartingWithTest() {
+    entityManager.persist(Book.builder().title("Dune").author("Frank Herbert").isbn("001").build());
+    entityManager.persist(Book.builder().title("dune").author("Frank Herbert").isbn("002").build());
+    entityManager.persist(Book.builder().title("Dune Messiah").author("Frank Herbert").isbn("003").build());
+    entityManager.persist(Book.builder().title("Foundation").author("Isaac Asimov").isbn("004").build());
+
+    assertThat(repository.findTitlesStartingWith("DU", PageRequest.of(0, 2))).hasSize(2);
+    assertThat(repository.findTitlesStartingWith("dune m", PageRequest.of(0, 10))).containsExactly("Dune Messiah");
+    assertThat(repository.findAuthorsStartingWith("fr", PageRequest.of(0, 10))).containsExactly("Frank Herbert");
+  }
+
+  private String explain(String sql) {
+    return entityManager.getEntityManager().createNativeQuery("explain " + sql).getSingleResult().toString();
+  }
+
   private Book createNewBook(String isbn) {
     return Book.builder().title("My Book").author("Jhon Doe").isbn(isbn).build();
   }
@@ -0,0 +1,47 @@
+package com.santanarscs.libraryapi.model.repository;
+
+import java.time.LocalDate;
+
+import com.santanarscs.libraryapi.model.entity.JobCheckpoint;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class JobCheckpointRepositoryTest {
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  @Autowired
+  JobCheckpointRepository repository;
+
+  @Test
+  @DisplayName("should be able to find the ranges of a job in range order")
+  void findByNamePrefixTest() {
+    entityManager.persist(checkpoint("late-loans-mail", 0L, null));
+    entityManager.persist(checkpoint("late-loans-mail#1", 500L, Long.MAX_VALUE));
+    entityManager.persist(checkpoint("late-loans-mail#0", 0L, 500L));
+    entityManager.persist(checkpoint("other-job#0", 0L, 10L));
+
+    for (int call = 0; call < 2; call++) {
+      Assertions.assertThat(repository.findByNamePrefix("late-loans-mail#"))
+          .extracting(JobCheckpoint::getName)
+          .containsExactly("late-loans-mail#0", "late-loans-mail#1");
+    }
+  }
+
+  private JobCheckpoint checkpoint(String name, Long lastId, Long untilId) {
+    return JobCheckpoint.builder().name(name).runDate(LocalDate.now()).lastId(lastId).untilId(untilId)
+        .finished(false).build();
+  }
+}
@@ -1,12 +1,20 @@
 package com.santanarscs.libraryapi.model.repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.persistence.PersistenceException;
+
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
 import com.santanarscs.libraryapi.model.entity.Book;
 import com.santanarscs.libraryapi.model.entity.Loan;
 
 import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,12 +23,15 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
-@DataJpaTest
+@DataJpaTest(properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN" })
 public class LoanRepositoryTest {
   
   @Autowired
@@ -29,6 +40,9 @@ public class LoanRepositoryTest {
   @Autowired
   LoanRepository repository;
 
+  @Autowired
+  LoanHistoryRepository historyRepository;
+
   @Test
   @DisplayName("Should be able verify if exists load to book")
   void existsByBookAndNotReturnedTest() {
@@ -53,7 +67,7 @@ public class LoanRepositoryTest {
     Loan loan = createNewLoan(book);
     entityManager.persist(loan);
 
-    Page<Loan> result = repository.findByBookIsbnOrCustomer("001", "Jhon", PageRequest.of(0, 10));
+    Page<LoanDTO> result = repository.findByBookIsbnOrCustomer("001", "Jhon", PageRequest.of(0, 10));
     Assertions.assertThat(result.getContent()).hasSize(1);
     Assertions.assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
     Assertions.assertThat(result.getPageable().getPageSize()).isEqualTo(10);
@@ -61,37 +75,336 @@ public class LoanRepositoryTest {
   }
 
   @Test
-  @DisplayName("shoud be able to return late loans")
-  void findByLoanDateLessThanAndNotReturnedTest() {
-    Book book = createNewBook(); 
+  @DisplayName("Should be able to search a page of loans with one query and no entities")
+  void findByBookIsbnOrCustomerStatementsTest() {
+    for (int i = 0; i < 5; i++) {
+      Book book = Book.builder().title("Book " + i).isbn("00" + i).author("Jhon Doe").build();
+      entityManager.persist(book);
+      entityManager.persist(createNewLoan(book));
+    }
+    entityManager.flush();
+    entityManager.clear();
+    Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+        .unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    Page<LoanDTO> result = repository.findByBookIsbnOrCustomer("001", "Jhon", PageRequest.of(0, 2));
+
+    Assertions.assertThat(result.getContent()).hasSize(2);
+    Assertions.assertThat(result.getTotalElements()).isEqualTo(5);
+    Assertions.assertThat(result.getContent().get(0).getBook().getTitle()).isEqualTo("Book 0");
+    Assertions.assertThat(result.getContent().get(0).getEmail()).isEqualTo("jhondoe@example.com");
+    Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    Assertions.assertThat(statistics.getEntityLoadCount()).isZero();
+  }
+
+  @Test
+  @DisplayName("should be able to stream every loan with its book")
+  void streamAllTest() {
+    Book book = createNewBook();
     entityManager.persist(book);
 
     Loan loan = createNewLoan(book);
-    loan.setLoanDate(LocalDate.now().minusDays(5));
     entityManager.persist(loan);
+    entityManager.flush();
+    entityManager.clear();
 
-    List<Loan> result = repository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
-    Assertions.assertThat(result).hasSize(1).contains(loan);
+    try (Stream<Loan> loans = repository.streamAll()) {
+      List<Loan> result = loans.collect(Collectors.toList());
+      Assertions.assertThat(result).extracting(Loan::getId).containsExactly(loan.getId());
+      Assertions.assertThat(result.get(0).getBook().getIsbn()).isEqualTo("001");
+    }
   }
 
   @Test
-  @DisplayName("shoud not be able to return late loans")
-  void notFindByLoanDateLessThanAndNotReturnedTest() {
-    Book book = createNewBook(); 
+  @DisplayName("shoud be able to return late loans in an id range")
+  void findLateLoansBetweenTest() {
+    Book book = createNewBook();
     entityManager.persist(book);
 
-    Loan loan = createNewLoan(book);
-    loan.setLoanDate(LocalDate.now());
-    entityManager.persist(loan);
+    Loan first = createNewLoan(book);
+    first.setDueDate(LocalDate.now().minusDays(1));
+    first.setReturned(true);
+    entityManager.persist(first);
+    Loan second = createNewLoan(book);
+    second.setDueDate(LocalDate.now().minusDays(1));
+    entityManager.persist(second);
+    Book otherBook = Book.builder().title("Other Book").isbn("002").author("Jhon Doe").build();
+    entityManager.persist(otherBook);
+    Loan third = createNewLoan(otherBook);
+    third.setDueDate(LocalDate.now());
+    entityManager.persist(third);
+    Book notDueBook = Book.builder().title("Not Due").isbn("003").author("Jhon Doe").build();
+    entityManager.persist(notDueBook);
+    entityManager.persist(createNewLoan(notDueBook));
+
+    Slice<Loan> result = repository.findLateLoansBetween(LocalDate.now(), 0L, Long.MAX_VALUE, PageRequest.of(0, 1));
+    Assertions.assertThat(result.getContent()).containsExactly(second);
+    Assertions.assertThat(result.hasNext()).isTrue();
+
+    result = repository.findLateLoansBetween(LocalDate.now(), second.getId(), Long.MAX_VALUE, PageRequest.of(0, 1));
+    Assertions.assertThat(result.getContent()).containsExactly(third);
+    Assertions.assertThat(result.hasNext()).isFalse();
+
+    result = repository.findLateLoansBetween(LocalDate.now(), 0L, second.getId(), PageRequest.of(0, 2));
+    Assertions.assertThat(result.getContent()).containsExactly(second);
+    Assertions.assertThat(result.hasNext()).isFalse();
+  }
+
+  @Test
+  @DisplayName("should be able to return the open loans of the customers with a late loan in a range")
+  void findOpenLoansOfCustomersBetweenTest() {
+    Book book = createNewBook();
+    entityManager.persist(book);
+    Book otherBook = Book.builder().title("Other Book").isbn("002").author("Jhon Doe").build();
+    entityManager.persist(otherBook);
+    Book returnedBook = Book.builder().title("Returned").isbn("003").author("Jhon Doe").build();
+    entityManager.persist(returnedBook);
+    Book otherCustomerBook = Book.builder().title("Not Theirs").isbn("004").author("Jhon Doe").build();
+    entityManager.persist(otherCustomerBook);
+
+    Loan first = createNewLoan(book);
+    first.setDueDate(LocalDate.now().minusDays(2));
+    entityManager.persist(first);
+    Loan second = createNewLoan(otherBook);
+    second.setDueDate(LocalDate.now().plusDays(2));
+    entityManager.persist(second);
+    Loan returned = createNewLoan(returnedBook);
+    returned.setDueDate(LocalDate.now().minusDays(2));
+    returned.setReturned(true);
+    entityManager.persist(returned);
+    Loan otherCustomer = createNewLoan(otherCustomerBook);
+    otherCustomer.setCustomerEmail("other@example.com");
+    otherCustomer.setDueDate(LocalDate.now().minusDays(2));
+    entityManager.persist(otherCustomer);
+    entityManager.flush();
+    entityManager.clear();
+
+    List<Loan> result = repository.findOpenLoansOfCustomersBetween(LocalDate.now(), first.getId() - 1,
+        first.getId());
+
+    Assertions.assertThat(result).extracting(Loan::getId).containsExactly(first.getId(), second.getId());
+    entityManager.clear();
+    Assertions.assertThat(result).extracting(loan -> loan.getBook().getTitle()).containsExactly("My Book",
+        "Other Book");
+    Assertions.assertThat(repository.findOpenLoansOfCustomersBetween(LocalDate.now(), first.getId(),
+        second.getId())).isEmpty();
+  }
+
+  @Test
+  @DisplayName("should not be able to store two open loans for the same book")
+  void oneOpenLoanPerBookTest() {
+    Book book = createNewBook();
+    entityManager.persist(book);
+    entityManager.persistAndFlush(createNewLoan(book));
+
+    Assertions.assertThatThrownBy(() -> entityManager.persistAndFlush(createNewLoan(book)))
+        .isInstanceOf(PersistenceException.class);
+  }
+
+  @Test
+  @DisplayName("should be able to loan a book again once it was returned")
+  void loanReturnedBookAgainTest() {
+    Book book = createNewBook();
+    entityManager.persist(book);
+    Loan returned = createNewLoan(book);
+    returned.setReturned(true);
+    entityManager.persistAndFlush(returned);
+
+    Loan loan = entityManager.persistAndFlush(createNewLoan(book));
+
+    Assertions.assertThat(repository.existsByBookAndNotReturned(book)).isTrue();
+    Assertions.assertThat(loan.getId()).isNotNull();
+  }
+
+  @Test
+  @DisplayName("should be able to store a new loan as not returned")
+  void defaultReturnedTest() {
+    Book book = createNewBook();
+    entityManager.persist(book);
+
+    Loan loan = entityManager.persistAndFlush(createNewLoan(book));
 
-    List<Loan> result = repository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
-    Assertions.assertThat(result).hasSize(0);
+    Assertions.assertThat(loan.getReturned()).isFalse();
   }
 
+  @Test
+  @DisplayName("should be able to return many loans with one statement, only at the version read")
+  void markReturnedTest() {
+    Loan[] loans = new Loan[3];
+    for (int i = 0; i < loans.length; i++) {
+      Book book = entityManager.persist(Book.builder().title("Book " + i).isbn("00" + i).author("Jhon Doe").build());
+      loans[i] = entityManager.persist(createNewLoan(book));
+    }
+    loans[2].setReturned(true);
+    entityManager.flush();
+    entityManager.clear();
+    List<Long> ids = List.of(loans[0].getId(), loans[1].getId(), loans[2].getId());
+
+    Assertions.assertThat(repository.findReturnStates(ids))
+        .extracting(LoanRepository.ReturnState::getId, LoanRepository.ReturnState::getVersion,
+            LoanRepository.ReturnState::getReturned)
+        .containsExactlyInAnyOrder(
+            Assertions.tuple(loans[0].getId(), 0L, false),
+            Assertions.tuple(loans[1].getId(), 0L, false),
+            Assertions.tuple(loans[2].getId(), 1L, true));
+    Assertions.assertThat(repository.markReturned(List.of(loans[0].getId()), 1)).isZero();
+    Assertions.assertThat(repository.markReturned(ids, 0)).isEqualTo(2);
+
+    entityManager.clear();
+    Loan returned = entityManager.find(Loan.class, loans[0].getId());
+    Assertions.assertThat(returned.getReturned()).isTrue();
+    Assertions.assertThat(returned.getVersion()).isEqualTo(1);
+    Assertions.assertThat(repository.existsByBookAndNotReturned(returned.getBook())).isFalse();
+    entityManager.persistAndFlush(createNewLoan(returned.getBook()));
+  }
+
+  @Test
+  @DisplayName("should be able to move the old returned loans of an id range to the archive")
+  void archiveTest() {
+    Loan[] loans = new Loan[4];
+    for (int i = 0; i < loans.length; i++) {
+      Book book = entityManager.persist(Book.builder().title("Book " + i).isbn("00" + i).author("Jhon Doe").build());
+      loans[i] = createNewLoan(book);
+      loans[i].setLoanDate(LocalDate.now().minusDays(200));
+      loans[i].setReturned(true);
+      entityManager.persist(loans[i]);
+    }
+    loans[1].setReturned(false);
+    loans[2].setLoanDate(LocalDate.now());
+    entityManager.flush();
+    entityManager.clear();
+    long after = loans[0].getId() - 1;
+    long until = loans[2].getId();
+    LocalDate cutoff = LocalDate.now().minusDays(180);
+
+    Assertions.assertThat(repository.copyToArchive(after, until, cutoff, LocalDateTime.now())).isEqualTo(1);
+    Assertions.assertThat(repository.deleteArchived(after, until, cutoff)).isEqualTo(1);
+
+    Assertions.assertThat(repository.findAll()).extracting(Loan::getId)
+        .containsExactlyInAnyOrder(loans[1].getId(), loans[2].getId(), loans[3].getId());
+    Assertions.assertThat(historyRepository.findByBookIsbnOrCustomer("000", null, PageRequest.of(0, 10)))
+        .extracting(LoanDTO::getId)
+        .containsExactly(String.valueOf(loans[0].getId()));
+    Assertions.assertThat(historyRepository.countByBookIsbnOrCustomer(null, "Jhon")).isEqualTo(4);
+    Assertions.assertThat(historyRepository.findByBookIsbnOrCustomerAfter(null, "Jhon", after, PageRequest.of(0, 2)))
+        .extracting(LoanDTO::getId)
+        .containsExactly(String.valueOf(loans[0].getId()), String.valueOf(loans[1].getId()));
+    Assertions.assertThat(repository.findByBookIsbnOrCustomer("000", null, PageRequest.of(0, 10))).isEmpty();
+  }
+
+  @Test
+  @DisplayName("should be able to count open loans per due date and all loans per book and customer")
+  void loanCountsTest() {
+    Book book = entityManager.persist(createNewBook());
+    Book otherBook = entityManager.persist(Book.builder().title("Other").isbn("002").author("Jhon Doe").build());
+    Loan returned = createNewLoan(book);
+    returned.setReturned(true);
+    entityManager.persist(returned);
+    entityManager.persist(createNewLoan(book));
+    entityManager.persist(createNewLoan(otherBook));
+    entityManager.flush();
+
+    Assertions.assertThat(repository.countOpenLoansByDueDate())
+        .extracting(LoanRepository.LoanCount::getKey, LoanRepository.LoanCount::getLoans)
+        .containsExactly(Assertions.tuple(LocalDate.now().plusDays(4), 2L));
+    Assertions.assertThat(historyRepository.count()).isEqualTo(3);
+    try (Stream<LoanRepository.LoanCount<Long>> counts = historyRepository.streamLoansByBook()) {
+      Assertions.assertThat(counts.collect(Collectors.toMap(LoanRepository.LoanCount::getKey,
+          LoanRepository.LoanCount::getLoans)))
+          .containsOnly(Assertions.entry(book.getId(), 2L), Assertions.entry(otherBook.getId(), 1L));
+    }
+    try (Stream<LoanRepository.LoanCount<String>> counts = historyRepository.streamLoansByCustomer()) {
+      Assertions.assertThat(counts.map(LoanRepository.LoanCount::getLoans).collect(Collectors.toList()))
+          .containsExactly(3L);
+    }
+  }
+
+  @Test
+  @DisplayName("should be able to archive an id range through the primary key")
+  void archiveUsesPrimaryKeyTest() {
+    Assertions.assertThat(explain("select id from loan where id > 0 and id <= 1000 and returned <> false "
+        + "and loan_date <= current_date"))
+        .contains("PRIMARY_KEY");
+  }
+
+  @Test
+  @DisplayName("should be able to check the open loan of a book through an index")
+  void existsByBookAndNotReturnedUsesIndexTest() {
+    Assertions.assertThat(explain("select count(id) from loan where id_book = 1 and returned = false"))
+        .contains("IX_LOAN_BOOK_RETURNED");
+  }
 
+  @Test
+  @DisplayName("should be able to stream the open loans not yet due")
+  void streamOpenLoansDueAfterTest() {
+    Book book = entityManager.persist(createNewBook());
+    Book otherBook = entityManager.persist(Book.builder().title("Other").isbn("002").author("Jhon Doe").build());
+    Loan returned = createNewLoan(book);
+    returned.setReturned(true);
+    entityManager.persist(returned);
+    Loan late = createNewLoan(book);
+    late.setDueDate(LocalDate.now());
+    entityManager.persist(late);
+    Loan open = entityManager.persist(createNewLoan(otherBook));
+    entityManager.flush();
+
+    try (Stream<LoanRepository.DueLoan> loans = repository.streamOpenLoansDueAfter(LocalDate.now())) {
+      Assertions.assertThat(loans.collect(Collectors.toList()))
+          .extracting(LoanRepository.DueLoan::getId, LoanRepository.DueLoan::getDueDate)
+          .containsExactly(Assertions.tuple(open.getId(), LocalDate.now().plusDays(4)));
+    }
+  }
+
+  @Test
+  @DisplayName("should be able to claim the overdue notice of an open loan only once")
+  void claimOverdueNoticesTest() {
+    Loan[] loans = new Loan[3];
+    for (int i = 0; i < loans.length; i++) {
+      Book book = entityManager.persist(Book.builder().title("Book " + i).isbn("00" + i).author("Jhon Doe").build());
+      loans[i] = entityManager.persist(createNewLoan(book));
+    }
+    loans[2].setReturned(true);
+    entityManager.flush();
+    List<Long> ids = List.of(loans[0].getId(), loans[1].getId(), loans[2].getId());
+
+    Assertions.assertThat(repository.claimOverdueNotices(List.of(loans[0].getId()), "first")).isEqualTo(1);
+    Assertions.assertThat(repository.claimOverdueNotices(ids, "second")).isEqualTo(1);
+
+    Assertions.assertThat(repository.findOverdueNoticeClaims(ids, "first")).containsExactly(loans[0].getId());
+    Assertions.assertThat(repository.findOverdueNoticeClaims(ids, "second")).containsExactly(loans[1].getId());
+    Assertions.assertThat(repository.claimOverdueNotices(ids, "third")).isZero();
+  }
+
+  @Test
+  @DisplayName("should be able to find the open loans due after a date through an index")
+  void streamOpenLoansDueAfterUsesIndexTest() {
+    Assertions.assertThat(explain("select id, due_date from loan where returned = false and due_date > current_date"))
+        .contains("IX_LOAN_RETURNED_DUE_DATE");
+  }
+
+  @Test
+  @DisplayName("should be able to find the loans of a customer through an index")
+  void findByCustomerUsesIndexTest() {
+    Assertions.assertThat(explain("select id from loan where customer = 'Jhon'")).contains("IX_LOAN_CUSTOMER");
+  }
+
+  @Test
+  @DisplayName("should be able to walk the late loans in index order")
+  void findLateLoansBetweenUsesIndexTest() {
+    Assertions.assertThat(explain("select id from loan where due_date <= current_date and returned = false "
+        + "and id > 0 and id <= 1000 order by returned, id limit 10"))
+        .contains("IX_LOAN_RETURNED_ID")
+        .contains("index sorted");
+  }
+
+  private String explain(String sql) {
+    return entityManager.getEntityManager().createNativeQuery("explain " + sql).getSingleResult().toString();
+  }
 
   private Loan createNewLoan(Book book) {
-    return Loan.builder().book(book).customer("Jhon").customerEmail("jhondoe@example.com").loanDate(LocalDate.now()).build();
+    return Loan.builder().book(book).customer("Jhon").customerEmail("jhondoe@example.com").loanDate(LocalDate.now())
+        .dueDate(LocalDate.now().plusDays(4)).build();
   }
 
   private Book createNewBook() {
@@ -0,0 +1,40 @@
+package com.santanarscs.libraryapi.model.repository;
+
+import java.time.LocalDateTime;
+
+import com.santanarscs.libraryapi.model.entity.MailDeadLetter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class MailDeadLetterRepositoryTest {
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  @Autowired
+  MailDeadLetterRepository repository;
+
+  @Test
+  @DisplayName("should be able to store a dead letter longer than 4000 characters")
+  void longTextTest() {
+    String text = "- Book, devolução em 01/01/2022\n".repeat(500);
+    MailDeadLetter saved = repository.saveAndFlush(MailDeadLetter.builder().recipient("jhondoe@example.com")
+        .subject("Late loans").text(text).error("Mail server down").attempts(3).failedAt(LocalDateTime.now())
+        .build());
+    entityManager.clear();
+
+    Assertions.assertThat(repository.findById(saved.getId())).hasValueSatisfying(
+        letter -> Assertions.assertThat(letter.getText()).isEqualTo(text));
+  }
+}
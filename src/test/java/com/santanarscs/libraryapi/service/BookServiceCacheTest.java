@@ -0,0 +1,149 @@
+package com.santanarscs.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Optional;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.repository.BookRepository;
+import com.santanarscs.libraryapi.service.impl.BookServiceImpl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(properties = "application.search.index.enabled=false")
+@ActiveProfiles("test")
+public class BookServiceCacheTest {
+
+  @Autowired
+  BookService service;
+
+  @Autowired
+  CacheManager cacheManager;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @MockBean
+  BookRepository repository;
+
+  @BeforeEach
+  public void setup() {
+    cacheManager.getCache(BookServiceImpl.BOOKS_CACHE).clear();
+    cacheManager.getCache(BookServiceImpl.BOOKS_BY_ISBN_CACHE).clear();
+  }
+
+  @Test
+  @DisplayName("Should be able to serve a book by id from the cache")
+  void getByIdCachedTest() {
+    Mockito.when(repository.findById(1L)).thenReturn(Optional.of(createValidBook()));
+
+    service.getById(1L);
+    Optional<Book> book = service.getById(1L);
+
+    assertThat(book).isPresent();
+    assertThat(book.get().getIsbn()).isEqualTo("001");
+    Mockito.verify(repository, Mockito.times(1)).findById(1L);
+  }
+
+  @Test
+  @DisplayName("Should be able to serve a book by isbn from the cache")
+  void getBookByIsbnCachedTest() {
+    Mockito.when(repository.findByIsbn("001")).thenReturn(Optional.of(createValidBook()));
+
+    service.getBookByIsbn("001");
+    Optional<Book> book = service.getBookByIsbn("001");
+
+    assertThat(book).isPresent();
+    Mockito.verify(repository, Mockito.times(1)).findByIsbn("001");
+  }
+
+  @Test
+  @DisplayName("Should not cache a book that was not found")
+  void notFoundNotCachedTest() {
+    Mockito.when(repository.findByIsbn("001")).thenReturn(Optional.empty());
+
+    service.getBookByIsbn("001");
+    Mockito.when(repository.findByIsbn("001")).thenReturn(Optional.of(createValidBook()));
+    Optional<Book> book = service.getBookByIsbn("001");
+
+    assertThat(book).isPresent();
+    Mockito.verify(repository, Mockito.times(2)).findByIsbn("001");
+  }
+
+  @Test
+  @DisplayName("Should be able to evict a book from both caches on update")
+  void updateEvictsTest() {
+    Book book = createValidBook();
+    Mockito.when(repository.findById(1L)).thenReturn(Optional.of(book));
+    Mockito.when(repository.findByIsbn("001")).thenReturn(Optional.of(book));
+    Mockito.when(repository.save(book)).thenReturn(book);
+
+    service.getById(1L);
+    service.getBookByIsbn("001");
+    service.update(book);
+    service.getById(1L);
+    service.getBookByIsbn("001");
+
+    Mockito.verify(repository, Mockito.times(2)).findById(1L);
+    Mockito.verify(repository, Mockito.times(2)).findByIsbn("001");
+  }
+
+  @Test
+  @DisplayName("Should keep serving the original book when the update of a copy fails")
+  void failedUpdateTest() {
+    Mockito.when(repository.findById(1L)).thenReturn(Optional.of(createValidBook()));
+    Book changed = service.getById(1L).get().toBuilder().title("Other Book").build();
+    Mockito.when(repository.save(changed)).thenThrow(new ObjectOptimisticLockingFailureException(Book.class, 1L));
+
+    assertThatThrownBy(() -> service.update(changed)).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+
+    assertThat(service.getById(1L).get().getTitle()).isEqualTo("My Book");
+  }
+
+  @Test
+  @DisplayName("Should be able to evict a book from both caches on delete")
+  void deleteEvictsTest() {
+    Book book = createValidBook();
+    Mockito.when(repository.findById(1L)).thenReturn(Optional.of(book));
+    Mockito.when(repository.findByIsbn("001")).thenReturn(Optional.of(book));
+
+    service.getById(1L);
+    service.getBookByIsbn("001");
+    service.delete(book);
+    Mockito.when(repository.findById(1L)).thenReturn(Optional.empty());
+    Mockito.when(repository.findByIsbn("001")).thenReturn(Optional.empty());
+
+    assertThat(service.getById(1L)).isEmpty();
+    assertThat(service.getBookByIsbn("001")).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should be able to publish the cache hits and misses")
+  void cacheMetricsTest() {
+    Mockito.when(repository.findById(1L)).thenReturn(Optional.of(createValidBook()));
+    double hits = meterRegistry.get("cache.gets").tag("cache", "books").tag("result", "hit").functionCounter().count();
+
+    service.getById(1L);
+    service.getById(1L);
+
+    assertThat(meterRegistry.get("cache.gets").tag("cache", "books").tag("result", "hit").functionCounter().count())
+        .isEqualTo(hits + 1);
+    assertThat(meterRegistry.find("cache.evictions").tag("cache", "books").functionCounter()).isNotNull();
+  }
+
+  private Book createValidBook() {
+    return Book.builder().id(1L).isbn("001").author("Jhon Doe").title("My Book").build();
+  }
+}
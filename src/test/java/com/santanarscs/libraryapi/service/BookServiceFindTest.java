@@ -0,0 +1,41 @@
+package com.santanarscs.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.repository.BookRepository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+public class BookServiceFindTest {
+
+  @Autowired
+  BookService service;
+
+  @Autowired
+  BookRepository repository;
+
+  @Test
+  @DisplayName("Should be able to find an updated book with a contains query on the table")
+  void findUpdatedBookTest() {
+    Book book = repository.saveAndFlush(Book.builder().title("Dune").author("Frank Herbert").isbn("find-001").build());
+    book.setTitle("Dune Messiah");
+    book = repository.saveAndFlush(book);
+
+    Page<Book> result = service.find(Book.builder().title("messiah").build(), PageRequest.of(0, 10, Sort.by("id")));
+
+    assertThat(book.getVersion()).isEqualTo(1);
+    assertThat(result.getContent()).extracting(Book::getId).containsExactly(book.getId());
+  }
+}
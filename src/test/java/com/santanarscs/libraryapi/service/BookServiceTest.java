@@ -2,15 +2,24 @@ package com.santanarscs.libraryapi.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import com.santanarscs.libraryapi.api.dto.ImportResultDTO;
+import com.santanarscs.libraryapi.api.dto.SuggestionsDTO;
 import com.santanarscs.libraryapi.exception.BusinessException;
 import com.santanarscs.libraryapi.model.entity.Book;
 import com.santanarscs.libraryapi.model.repository.BookRepository;
 import com.santanarscs.libraryapi.service.impl.BookServiceImpl;
+import com.santanarscs.libraryapi.service.search.BookIndexer;
+import com.santanarscs.libraryapi.service.search.BookSearchIndex;
+import com.santanarscs.libraryapi.service.search.BookSuggestIndex;
+import com.santanarscs.libraryapi.service.search.IsbnBloomFilter;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.assertj.core.api.Assertions;
@@ -20,8 +29,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -31,12 +45,28 @@ public class BookServiceTest {
 
   BookService service;
 
+  CacheManager cacheManager;
+
   @MockBean
   BookRepository repository;
 
+  @MockBean
+  BookIndexer indexer;
+
+  @MockBean
+  BookSearchIndex searchIndex;
+
+  @MockBean
+  BookSuggestIndex suggestIndex;
+
+  @MockBean
+  IsbnBloomFilter isbnFilter;
+
   @BeforeEach
   public void setup() {
-    this.service = new BookServiceImpl(repository);
+    this.cacheManager = new ConcurrentMapCacheManager(BookServiceImpl.BOOKS_CACHE,
+        BookServiceImpl.BOOKS_BY_ISBN_CACHE);
+    this.service = new BookServiceImpl(repository, indexer, searchIndex, suggestIndex, isbnFilter, cacheManager);
   }
 
   @Test
@@ -52,6 +82,36 @@ public class BookServiceTest {
     assertThat(savedBook.getIsbn()).isEqualTo("001");
     assertThat(savedBook.getAuthor()).isEqualTo("Jhon Doe");
     assertThat(savedBook.getTitle()).isEqualTo("My Book");
+    Mockito.verify(indexer).indexed(expectedBook);
+  }
+
+  @Test
+  @DisplayName("Should be able to save a book without asking the database when the isbn is certainly new")
+  void saveBookSkipsExistsCheckTest() {
+    Book book = createValidBook();
+    Mockito.when(isbnFilter.isReady()).thenReturn(true);
+    Mockito.when(isbnFilter.mightContain("001")).thenReturn(false);
+    Mockito.when(repository.save(book)).thenReturn(book);
+
+    service.save(book);
+
+    Mockito.verify(repository, Mockito.never()).existsByIsbn(Mockito.anyString());
+    Mockito.verify(repository).save(book);
+  }
+
+  @Test
+  @DisplayName("Should be able to count an isbn filter false positive")
+  void saveBookFalsePositiveTest() {
+    Book book = createValidBook();
+    Mockito.when(isbnFilter.isReady()).thenReturn(true);
+    Mockito.when(isbnFilter.mightContain("001")).thenReturn(true);
+    Mockito.when(repository.existsByIsbn("001")).thenReturn(false);
+    Mockito.when(repository.save(book)).thenReturn(book);
+
+    service.save(book);
+
+    Mockito.verify(isbnFilter).falsePositives(1);
+    Mockito.verify(repository).save(book);
   }
 
   @Test
@@ -105,6 +165,7 @@ public class BookServiceTest {
     org.junit.jupiter.api.Assertions.assertDoesNotThrow(() -> service.delete(book));
 
     Mockito.verify(repository, Mockito.times(1)).delete(book);
+    Mockito.verify(indexer).removed(book);
 
   }
 
@@ -149,6 +210,7 @@ public class BookServiceTest {
     assertThat(book.getIsbn()).isEqualTo(createValidBook().getIsbn());
     assertThat(book.getAuthor()).isEqualTo(createValidBook().getAuthor());
     assertThat(book.getTitle()).isEqualTo(createValidBook().getTitle());
+    Mockito.verify(indexer).indexed(updatedBook);
   }
 
   @Test
@@ -169,6 +231,54 @@ public class BookServiceTest {
     assertThat(result.getPageable().getPageSize()).isEqualTo(10);
   }
 
+  @Test
+  @DisplayName("Should be able to filter books through the search index")
+  void findBookInIndexTest() {
+    Book filter = Book.builder().title("book").build();
+    PageRequest pageRequest = PageRequest.of(1, 2);
+    Book first = Book.builder().id(7L).title("Book").build();
+    Book second = Book.builder().id(3L).title("My Book").build();
+
+    Mockito.when(searchIndex.canSearch(filter)).thenReturn(true);
+    Mockito.when(searchIndex.search(filter, 2L, 2)).thenReturn(new BookSearchIndex.Hits(Arrays.asList(7L, 3L), 5));
+    Mockito.when(repository.findAllById(Arrays.asList(7L, 3L))).thenReturn(Arrays.asList(second, first));
+
+    Page<Book> result = service.find(filter, pageRequest);
+
+    assertThat(result.getContent()).containsExactly(first, second);
+    assertThat(result.getTotalElements()).isEqualTo(5);
+    Mockito.verify(repository, Mockito.never()).findAll(Mockito.any(Example.class), Mockito.any(PageRequest.class));
+  }
+
+  @Test
+  @DisplayName("Should be able to filter books on the database when a sort is requested")
+  void findBookSortedTest() {
+    Book filter = Book.builder().title("book").build();
+    PageRequest pageRequest = PageRequest.of(0, 10, Sort.by("title"));
+    Mockito.when(searchIndex.canSearch(filter)).thenReturn(true);
+    Mockito.when(repository.findAll(Mockito.any(Example.class), Mockito.any(PageRequest.class)))
+        .thenReturn(new PageImpl<Book>(Arrays.asList(createValidBook()), pageRequest, 1));
+
+    Page<Book> result = service.find(filter, pageRequest);
+
+    assertThat(result.getTotalElements()).isEqualTo(1);
+    Mockito.verify(searchIndex, Mockito.never()).search(Mockito.any(), Mockito.anyLong(), Mockito.anyInt());
+  }
+
+  @Test
+  @DisplayName("Should be able to seek books after an id")
+  void findAfterTest() {
+    Book filter = Book.builder().title("My").build();
+    Slice<Book> slice = new SliceImpl<Book>(Arrays.asList(createValidBook()), PageRequest.of(0, 10), false);
+
+    Mockito.when(repository.findAfter(5L, filter, 10)).thenReturn(slice);
+
+    Slice<Book> result = service.findAfter(filter, 5L, 10);
+
+    assertThat(result.getContent()).hasSize(1);
+    assertThat(result.hasNext()).isFalse();
+  }
+
   @Test
   @DisplayName("Should be able to return a book by isbn")
   void getBookByIsbnTest() {
@@ -186,6 +296,142 @@ public class BookServiceTest {
     Mockito.verify(repository, Mockito.times(1)).findByIsbn(isbn);
   }
 
+  @Test
+  @DisplayName("Should not be able to save a book when a concurrent insert took the isbn")
+  void saveBookWithConcurrentDuplicatedIsbnTest() {
+    Book book = createValidBook();
+    Mockito.when(repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
+    Mockito.when(repository.save(book)).thenThrow(new DataIntegrityViolationException("ux_book_isbn"));
+
+    Throwable exception = Assertions.catchThrowable(() -> service.save(book));
+
+    assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Alread exists ISBN registred");
+  }
+
+  @Test
+  @DisplayName("Should be able to import books reporting the rows that failed")
+  @SuppressWarnings("unchecked")
+  void importBooksTest() {
+    Book valid = createValidBook();
+    Book withoutTitle = Book.builder().isbn("003").author("Jhon Doe").build();
+    Book repeated = createValidBook();
+    Book existing = Book.builder().isbn("002").author("Jhon Doe").title("Other Book").build();
+
+    Mockito.when(repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(Set.of("002"));
+
+    ImportResultDTO result = service.importBooks(Arrays.asList(valid, withoutTitle, repeated, existing).iterator());
+
+    assertThat(result.getImported()).isEqualTo(1);
+    assertThat(result.getFailed()).isEqualTo(3);
+    assertThat(result.getErrors()).extracting("row", "message").containsExactlyInAnyOrder(
+        Assertions.tuple(2L, "Title, author and isbn are required"),
+        Assertions.tuple(3L, "Duplicated ISBN in import"),
+        Assertions.tuple(4L, "Alread exists ISBN registred"));
+    Mockito.verify(repository, Mockito.times(1)).findExistingIsbns(Mockito.anyCollection());
+    Mockito.verify(repository).saveAll(Arrays.asList(valid));
+  }
+
+  @Test
+  @DisplayName("Should be able to only look up the isbns the filter is not sure about on import")
+  @SuppressWarnings("unchecked")
+  void importBooksWithIsbnFilterTest() {
+    Book first = createValidBook();
+    Book second = Book.builder().isbn("002").author("Jhon Doe").title("Other Book").build();
+    Mockito.when(isbnFilter.isReady()).thenReturn(true);
+    Mockito.when(isbnFilter.mightContain("001")).thenReturn(false);
+    Mockito.when(isbnFilter.mightContain("002")).thenReturn(true);
+    Mockito.when(repository.findExistingIsbns(Arrays.asList("002"))).thenReturn(Set.of("002"));
+
+    ImportResultDTO result = service.importBooks(Arrays.asList(first, second).iterator());
+
+    assertThat(result.getImported()).isEqualTo(1);
+    assertThat(result.getFailed()).isEqualTo(1);
+    Mockito.verify(repository).findExistingIsbns(Arrays.asList("002"));
+    Mockito.verify(isbnFilter).falsePositives(0);
+  }
+
+  @Test
+  @DisplayName("Should be able to retry a failed import batch row by row")
+  @SuppressWarnings("unchecked")
+  void importBooksBatchFailureTest() {
+    Book first = createValidBook();
+    Book second = Book.builder().isbn("002").author("Jhon Doe").title("Other Book").build();
+
+    Mockito.when(repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(Set.of());
+    Mockito.when(repository.saveAll(Mockito.anyIterable())).thenThrow(new DataIntegrityViolationException("isbn"));
+    Mockito.when(repository.save(second)).thenThrow(new DataIntegrityViolationException("isbn"));
+
+    ImportResultDTO result = service.importBooks(Arrays.asList(first, second).iterator());
+
+    assertThat(result.getImported()).isEqualTo(1);
+    assertThat(result.getFailed()).isEqualTo(1);
+    assertThat(result.getErrors().get(0).getIsbn()).isEqualTo("002");
+    assertThat(result.getErrors().get(0).getMessage()).isEqualTo("Alread exists ISBN registred");
+    Mockito.verify(repository).save(first);
+  }
+
+  @Test
+  @DisplayName("Should be able to suggest from the suggestion index")
+  void suggestFromIndexTest() {
+    Mockito.when(suggestIndex.isReady()).thenReturn(true);
+    Mockito.when(suggestIndex.suggestTitles("my", 5)).thenReturn(Arrays.asList("My Book"));
+    Mockito.when(suggestIndex.suggestAuthors("my", 5)).thenReturn(Arrays.asList());
+
+    SuggestionsDTO result = service.suggest("my", 5);
+
+    assertThat(result.getTitles()).containsExactly("My Book");
+    assertThat(result.getAuthors()).isEmpty();
+    Mockito.verifyNoInteractions(repository);
+  }
+
+  @Test
+  @DisplayName("Should be able to suggest from the database until the index is ready")
+  void suggestFromDatabaseTest() {
+    Mockito.when(repository.findTitlesStartingWith("50\\%", PageRequest.of(0, 5))).thenReturn(Arrays.asList("50% Off"));
+    Mockito.when(repository.findAuthorsStartingWith("50\\%", PageRequest.of(0, 5))).thenReturn(Arrays.asList());
+
+    SuggestionsDTO result = service.suggest("50%", 5);
+
+    assertThat(result.getTitles()).containsExactly("50% Off");
+    Mockito.verify(suggestIndex, Mockito.never()).suggestTitles(Mockito.anyString(), Mockito.anyInt());
+  }
+
+  @Test
+  @DisplayName("Should be able to get many books by id in order, loading only the ones not cached")
+  void getByIdsTest() {
+    Book cached = Book.builder().id(2L).isbn("002").build();
+    Book stored = Book.builder().id(1L).isbn("001").build();
+    cacheManager.getCache(BookServiceImpl.BOOKS_CACHE).put(2L, cached);
+    Mockito.when(repository.findAllById(Mockito.anyCollection())).thenReturn(Arrays.asList(stored));
+
+    List<Optional<Book>> result = service.getByIds(Arrays.asList(1L, 2L, 3L, 1L));
+
+    assertThat(result).containsExactly(Optional.of(stored), Optional.of(cached), Optional.empty(),
+        Optional.of(stored));
+    Mockito.verify(repository).findAllById(Arrays.asList(1L, 3L));
+    assertThat(cacheManager.getCache(BookServiceImpl.BOOKS_CACHE).get(1L, Book.class)).isSameAs(stored);
+  }
+
+  @Test
+  @DisplayName("Should be able to get many books by isbn with one query per chunk")
+  void getByIsbnsTest() {
+    List<String> isbns = new ArrayList<>();
+    for (int i = 0; i < 600; i++) {
+      isbns.add(String.valueOf(i));
+    }
+    Book stored = Book.builder().id(1L).isbn("7").build();
+    Mockito.when(repository.findByIsbnIn(Mockito.anyCollection())).thenReturn(Arrays.asList());
+    Mockito.when(repository.findByIsbnIn(Mockito.argThat(chunk -> chunk.contains("7"))))
+        .thenReturn(Arrays.asList(stored));
+
+    List<Optional<Book>> result = service.getByIsbns(isbns);
+
+    assertThat(result).hasSize(600);
+    assertThat(result.get(7)).contains(stored);
+    assertThat(result.stream().filter(Optional::isPresent)).hasSize(1);
+    Mockito.verify(repository, Mockito.times(2)).findByIsbnIn(Mockito.anyCollection());
+  }
+
   private Book createValidBook() {
     return Book.builder().isbn("001").author("Jhon Doe").title("My Book").build();
   }
@@ -0,0 +1,75 @@
+package com.santanarscs.libraryapi.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.mail.Message.RecipientType;
+import javax.mail.internet.MimeMessage;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(properties = {
+    "spring.mail.host=localhost",
+    "spring.mail.port=3025",
+    "spring.mail.username=",
+    "spring.mail.password=",
+    "spring.mail.properties.mail.smtp.auth=false",
+    "spring.mail.properties.mail.smtp.starttls.enable=false" })
+@ActiveProfiles("test")
+public class EmailServiceTest {
+
+  @RegisterExtension
+  static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+  @Autowired
+  EmailService service;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Test
+  @DisplayName("Should be able to deliver each recipient its own mail in the background")
+  void sendMailsTest() throws Exception {
+    Map<String, String> messages = new LinkedHashMap<>();
+    messages.put("a@mail.com", "late a");
+    messages.put("b@mail.com", "late b");
+    messages.put("c@mail.com", "late c");
+    service.sendMails(messages);
+
+    Assertions.assertThat(greenMail.waitForIncomingEmail(5000, 3)).isTrue();
+    MimeMessage[] received = greenMail.getReceivedMessages();
+    Assertions.assertThat(received).allSatisfy(message -> {
+      Assertions.assertThat(message.getRecipients(RecipientType.TO)).hasSize(1);
+      Assertions.assertThat(message.getSubject()).isEqualTo("Livro com empréstimo atrasado.");
+      Assertions.assertThat(GreenMailUtil.getBody(message))
+          .isEqualTo("late " + message.getRecipients(RecipientType.TO)[0].toString().charAt(0));
+    });
+    Assertions.assertThat(Arrays.stream(received).map(message -> {
+      try {
+        return message.getRecipients(RecipientType.TO)[0].toString();
+      } catch (Exception ex) {
+        throw new IllegalStateException(ex);
+      }
+    })).containsExactlyInAnyOrder("a@mail.com", "b@mail.com", "c@mail.com");
+    // the batch is timed once the last mail is out, which can land after GreenMail saw it
+    long deadline = System.currentTimeMillis() + 5000;
+    while (meterRegistry.get("mail.send").timer().count() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assertions.assertThat(meterRegistry.get("mail.send").timer().count()).isPositive();
+    Assertions.assertThat(meterRegistry.get("mail.queue.size").gauge().value()).isZero();
+  }
+}
@@ -0,0 +1,108 @@
+package com.santanarscs.libraryapi.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+import com.santanarscs.libraryapi.service.lease.JobLeases;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanArchiveServiceTest {
+
+  static final LocalDate TODAY = LocalDate.of(2022, 6, 30);
+  static final LocalDate CUTOFF = TODAY.minusDays(180);
+
+  LoanArchiveService service;
+
+  MeterRegistry meterRegistry;
+
+  @MockBean
+  LoanRepository repository;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @MockBean
+  JobLeases leases;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    service = new LoanArchiveService(repository, new TransactionTemplate(transactionManager), leases, meterRegistry,
+        Duration.ofDays(180), 10);
+  }
+
+  @Test
+  @DisplayName("Should be able to archive old returned loans range by range")
+  void archiveTest() {
+    Mockito.when(repository.findMinId()).thenReturn(1L);
+    Mockito.when(repository.findMaxId()).thenReturn(25L);
+    Mockito.when(repository.copyToArchive(Mockito.eq(0L), Mockito.eq(10L), Mockito.eq(CUTOFF), Mockito.any()))
+        .thenReturn(4);
+    Mockito.when(repository.deleteArchived(0L, 10L, CUTOFF)).thenReturn(4);
+    Mockito.when(repository.copyToArchive(Mockito.eq(20L), Mockito.eq(25L), Mockito.eq(CUTOFF), Mockito.any()))
+        .thenReturn(2);
+    Mockito.when(repository.deleteArchived(20L, 25L, CUTOFF)).thenReturn(2);
+
+    long archived = service.archive(TODAY);
+
+    Assertions.assertThat(archived).isEqualTo(6);
+    Mockito.verify(repository).copyToArchive(Mockito.eq(10L), Mockito.eq(20L), Mockito.eq(CUTOFF), Mockito.any());
+    Mockito.verify(repository, Mockito.never()).deleteArchived(10L, 20L, CUTOFF);
+    Mockito.verify(transactionManager, Mockito.times(3)).commit(Mockito.any());
+    Assertions.assertThat(meterRegistry.counter("loans.archived").count()).isEqualTo(6);
+  }
+
+  @Test
+  @DisplayName("Should roll back a range whose loans changed while being archived")
+  void archiveConflictTest() {
+    Mockito.when(repository.findMinId()).thenReturn(1L);
+    Mockito.when(repository.findMaxId()).thenReturn(20L);
+    Mockito.when(repository.copyToArchive(Mockito.anyLong(), Mockito.anyLong(), Mockito.eq(CUTOFF), Mockito.any()))
+        .thenReturn(3);
+    Mockito.when(repository.deleteArchived(0L, 10L, CUTOFF)).thenReturn(2);
+    Mockito.when(repository.deleteArchived(10L, 20L, CUTOFF)).thenReturn(3);
+
+    long archived = service.archive(TODAY);
+
+    Assertions.assertThat(archived).isEqualTo(3);
+    Mockito.verify(transactionManager).rollback(Mockito.any());
+    Mockito.verify(transactionManager).commit(Mockito.any());
+  }
+
+  @Test
+  @DisplayName("Should not archive anything from an empty loan table")
+  void archiveEmptyTest() {
+    Assertions.assertThat(service.archive(TODAY)).isZero();
+
+    Mockito.verify(repository, Mockito.never())
+        .copyToArchive(Mockito.anyLong(), Mockito.anyLong(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  @DisplayName("Should leave the archiving to the node holding the lease")
+  void archiveReturnedLoansOnOtherNodeTest() {
+    Mockito.when(leases.tryAcquire(LoanArchiveService.ARCHIVE_JOB)).thenReturn(false);
+
+    service.archiveReturnedLoans();
+
+    Mockito.verifyNoInteractions(repository);
+    Mockito.verify(leases, Mockito.never()).release(Mockito.anyString());
+  }
+}
@@ -0,0 +1,116 @@
+package com.santanarscs.libraryapi.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.santanarscs.libraryapi.exception.BusinessException;
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.model.repository.BookRepository;
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class LoanServiceConcurrencyTest {
+
+  private static final Logger log = LoggerFactory.getLogger(LoanServiceConcurrencyTest.class);
+
+  private static final int CLIENTS = 64;
+  private static final int BOOKS = 16;
+  private static final int ATTEMPTS_PER_CLIENT = 50;
+
+  @Autowired
+  LoanService service;
+
+  @Autowired
+  BookRepository bookRepository;
+
+  @Autowired
+  LoanRepository loanRepository;
+
+  @Autowired
+  JdbcTemplate jdbc;
+
+  List<Book> books;
+  ExecutorService clients;
+
+  @BeforeEach
+  public void setup() {
+    books = new ArrayList<>();
+    for (int i = 0; i < BOOKS; i++) {
+      books.add(bookRepository.save(Book.builder().title("Book " + i).author("Jhon Doe").isbn("STRESS-" + i).build()));
+    }
+    clients = Executors.newFixedThreadPool(CLIENTS);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    clients.shutdownNow();
+    loanRepository.deleteAllInBatch();
+    bookRepository.deleteAllInBatch();
+  }
+
+  @Test
+  @DisplayName("Should be able to lend each book once under 64 concurrent clients")
+  void concurrentLoansTest() throws Exception {
+    AtomicInteger loaned = new AtomicInteger();
+    AtomicInteger rejected = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+
+    List<Future<?>> results = new ArrayList<>();
+    for (int client = 0; client < CLIENTS; client++) {
+      int offset = client;
+      results.add(clients.submit((Callable<Void>) () -> {
+        start.await();
+        for (int attempt = 0; attempt < ATTEMPTS_PER_CLIENT; attempt++) {
+          Book book = books.get((offset + attempt) % BOOKS);
+          try {
+            service.save(Loan.builder().book(book).customer("Client " + offset)
+                .customerEmail("client" + offset + "@example.com").loanDate(LocalDate.now()).build());
+            loaned.incrementAndGet();
+          } catch (BusinessException ex) {
+            rejected.incrementAndGet();
+          }
+        }
+        return null;
+      }));
+    }
+
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Future<?> result : results) {
+      result.get(60, TimeUnit.SECONDS);
+    }
+    double seconds = (System.nanoTime() - begin) / 1e9;
+    int attempts = CLIENTS * ATTEMPTS_PER_CLIENT;
+    log.info("{} loan attempts by {} clients in {} s ({} attempts/s), {} loaned, {} rejected",
+        attempts, CLIENTS, String.format("%.2f", seconds), Math.round(attempts / seconds), loaned, rejected);
+
+    Assertions.assertThat(loaned.get()).isEqualTo(BOOKS);
+    Assertions.assertThat(rejected.get()).isEqualTo(attempts - BOOKS);
+    Assertions.assertThat(jdbc.queryForObject(
+        "select count(*) from (select id_book from loan where returned = false group by id_book having count(*) > 1)",
+        Integer.class)).isZero();
+    Assertions.assertThat(jdbc.queryForObject("select count(*) from loan", Integer.class)).isEqualTo(BOOKS);
+  }
+}
@@ -0,0 +1,60 @@
+package com.santanarscs.libraryapi.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.model.repository.BookRepository;
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The tracker is off, so the loans are claimed by the test only.
+ */
+@SpringBootTest(properties = "application.loans.overdue.enabled=false")
+@ActiveProfiles("test")
+public class LoanServiceOverdueNoticeTest {
+
+  @Autowired
+  LoanService service;
+
+  @Autowired
+  BookRepository bookRepository;
+
+  @Autowired
+  LoanRepository loanRepository;
+
+  @AfterEach
+  public void tearDown() {
+    loanRepository.deleteAllInBatch();
+    bookRepository.deleteAllInBatch();
+  }
+
+  @Test
+  @DisplayName("Should be able to notice a loan again once it was returned and reopened")
+  void reopenedLoanTest() {
+    Book book = bookRepository.save(Book.builder().title("Dune").author("Frank Herbert").isbn("notice-001").build());
+    Long id = service.save(Loan.builder().book(book).customer("Jhon").customerEmail("jhon@example.com")
+        .loanDate(LocalDate.now()).dueDate(LocalDate.now()).build()).getId();
+
+    Assertions.assertThat(service.claimOverdueNotices(List.of(id))).extracting(Loan::getId).containsExactly(id);
+    Assertions.assertThat(service.claimOverdueNotices(List.of(id))).isEmpty();
+
+    Loan loan = service.getById(id).orElseThrow();
+    loan.setReturned(true);
+    service.update(loan);
+    loan = service.getById(id).orElseThrow();
+    loan.setReturned(false);
+    service.update(loan);
+
+    Assertions.assertThat(service.claimOverdueNotices(List.of(id))).extracting(Loan::getId).containsExactly(id);
+  }
+}
@@ -2,29 +2,45 @@ package com.santanarscs.libraryapi.service;
 
 import static org.mockito.Mockito.never;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import com.santanarscs.libraryapi.api.dto.LoanDTO;
 import com.santanarscs.libraryapi.api.dto.LoanFilterDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnResultDTO;
+import com.santanarscs.libraryapi.api.dto.LoanReturnResultDTO.Status;
 import com.santanarscs.libraryapi.exception.BusinessException;
 import com.santanarscs.libraryapi.model.entity.Book;
 import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.model.repository.LoanHistoryRepository;
 import com.santanarscs.libraryapi.model.repository.LoanRepository;
 import com.santanarscs.libraryapi.service.impl.LoanServiceImpl;
+import com.santanarscs.libraryapi.service.overdue.DueDatePolicy;
+import com.santanarscs.libraryapi.service.overdue.OverdueTracker;
+import com.santanarscs.libraryapi.service.stats.LoanStatistics;
 
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -32,14 +48,26 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 @ActiveProfiles("test")
 public class LoanServiceTest {
 
+  static final LocalDate DUE_DATE = LocalDate.of(2022, 6, 1);
+
   LoanService service;
 
   @MockBean
   LoanRepository repository;
 
+  @MockBean
+  LoanHistoryRepository historyRepository;
+
+  @MockBean
+  LoanStatistics statistics;
+
+  @MockBean
+  OverdueTracker overdueTracker;
+
   @BeforeEach
   public void setup() {
-    this.service = new LoanServiceImpl(repository);
+    DueDatePolicy dueDatePolicy = new DueDatePolicy(Duration.ofDays(4), Set.of());
+    this.service = new LoanServiceImpl(repository, historyRepository, statistics, dueDatePolicy, overdueTracker);
   }
 
   @Test
@@ -55,6 +83,9 @@ public class LoanServiceTest {
     Assertions.assertThat(loan.getBook().getId()).isEqualTo(savedLoan.getBook().getId());
     Assertions.assertThat(loan.getCustomer()).isEqualTo(savedLoan.getCustomer());
     Assertions.assertThat(loan.getLoanDate()).isEqualTo(savedLoan.getLoanDate());
+    Assertions.assertThat(savingLoan.getDueDate()).isEqualTo(LocalDate.now().plusDays(4));
+    Mockito.verify(statistics).loaned(savedLoan);
+    Mockito.verify(overdueTracker).track(savedLoan.getId(), savedLoan.getDueDate());
   }
 
   @Test
@@ -69,9 +100,25 @@ public class LoanServiceTest {
         .hasMessage("Book already loaned");
 
     Mockito.verify(repository, never()).save(savingLoan);
+    Mockito.verify(statistics, never()).loaned(Mockito.any());
+    Mockito.verifyNoInteractions(overdueTracker);
 
   }
 
+  @Test
+  @DisplayName("Should not be able to create a loan when a concurrent loan took the book")
+  void notSaveConcurrentLoanTest() {
+    Loan savingLoan = createLoan();
+    Mockito.when(repository.existsByBookAndNotReturned(savingLoan.getBook())).thenReturn(false);
+    Mockito.when(repository.save(savingLoan)).thenThrow(new DataIntegrityViolationException("ux_loan_open_book"));
+
+    Throwable exception = Assertions.catchThrowable(() -> service.save(savingLoan));
+
+    Assertions.assertThat(exception)
+        .isInstanceOf(BusinessException.class)
+        .hasMessage("Book already loaned");
+  }
+
   @Test
   @DisplayName("Should be able to return a loan")
   void getLoanDetailsTest() {
@@ -108,20 +155,94 @@ public class LoanServiceTest {
 
   }
 
+  @Test
+  @DisplayName("Should count a loan as returned only when the update returns it")
+  void updateLoanStatisticsTest() {
+    Loan loan = createLoan();
+    loan.setId(1L);
+    loan.setReturned(true);
+    Mockito.when(repository.save(loan)).thenReturn(loan);
+    Mockito.when(repository.findReturnStates(List.of(1L)))
+        .thenReturn(List.of(returnState(1L, 0, false)))
+        .thenReturn(List.of(returnState(1L, 1, true)));
+
+    service.update(loan);
+    service.update(loan);
+
+    Mockito.verify(statistics).returned(DUE_DATE);
+    Mockito.verify(statistics, never()).reopened(Mockito.any());
+    Mockito.verify(overdueTracker).untrack(1L);
+    Mockito.verify(overdueTracker, never()).track(Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  @DisplayName("Should track a reopened loan again and clear its overdue notice claim")
+  void reopenLoanTest() {
+    Loan loan = createLoan();
+    loan.setId(1L);
+    loan.setReturned(false);
+    loan.setDueDate(DUE_DATE);
+    Mockito.when(repository.save(loan)).thenReturn(loan);
+    Mockito.when(repository.findReturnStates(List.of(1L))).thenReturn(List.of(returnState(1L, 1, true)));
+
+    service.update(loan);
+
+    Mockito.verify(repository).clearOverdueNoticeClaim(1L);
+    Mockito.verify(statistics).reopened(DUE_DATE);
+    Mockito.verify(overdueTracker).track(1L, DUE_DATE);
+  }
+
+  @Test
+  @DisplayName("Should move an open loan given another due date and clear its overdue notice claim")
+  void moveDueDateTest() {
+    Loan loan = createLoan();
+    loan.setId(1L);
+    loan.setReturned(false);
+    loan.setDueDate(DUE_DATE.plusDays(7));
+    Mockito.when(repository.save(loan)).thenReturn(loan);
+    Mockito.when(repository.findReturnStates(List.of(1L)))
+        .thenReturn(List.of(returnState(1L, 0, false)))
+        .thenReturn(List.of(returnState(1L, 0, false)));
+
+    service.update(loan);
+    loan.setDueDate(DUE_DATE);
+    service.update(loan);
+
+    Mockito.verify(repository, Mockito.times(1)).clearOverdueNoticeClaim(1L);
+    Mockito.verify(statistics).returned(DUE_DATE);
+    Mockito.verify(statistics).reopened(DUE_DATE.plusDays(7));
+    Mockito.verify(overdueTracker).track(1L, DUE_DATE.plusDays(7));
+    Mockito.verify(overdueTracker, never()).untrack(Mockito.any());
+  }
+
+  @Test
+  @DisplayName("Should not count an update that failed")
+  void updateLoanConflictStatisticsTest() {
+    Loan loan = createLoan();
+    loan.setId(1L);
+    loan.setReturned(true);
+    Mockito.when(repository.findReturnStates(List.of(1L))).thenReturn(List.of(returnState(1L, 0, false)));
+    Mockito.when(repository.save(loan)).thenThrow(new ObjectOptimisticLockingFailureException(Loan.class, 1L));
+
+    Assertions.assertThatThrownBy(() -> service.update(loan))
+        .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+
+    Mockito.verifyNoInteractions(statistics, overdueTracker);
+  }
+
   @Test
   @DisplayName("Should be able to filter loans")
   void findLoanTest() {
     LoanFilterDTO dto = LoanFilterDTO.builder().customer("Jhon").isbn("001").build();
-    Loan loan = createLoan();
-    loan.setId(1L);
-    
+    LoanDTO loan = new LoanDTO(1L, "Jhon", "jhon@example.com", 1L, "My Book", "Jhon Doe", "001");
+
     PageRequest pageRequest = PageRequest.of(0, 10);
-    List<Loan> list = Arrays.asList(loan);
-    Page<Loan> page = new PageImpl<Loan>(list, pageRequest, 1);
+    List<LoanDTO> list = Arrays.asList(loan);
+    Page<LoanDTO> page = new PageImpl<LoanDTO>(list, pageRequest, 1);
 
     Mockito.when(repository.findByBookIsbnOrCustomer(Mockito.anyString(), Mockito.anyString(), Mockito.any(PageRequest.class) )).thenReturn(page);
 
-    Page<Loan> result = service.find(dto, pageRequest);
+    Page<LoanDTO> result = service.find(dto, pageRequest);
 
     Assertions.assertThat(result.getTotalElements()).isEqualTo(1);
     Assertions.assertThat(result.getContent()).isEqualTo(list);
@@ -129,6 +250,143 @@ public class LoanServiceTest {
     Assertions.assertThat(result.getPageable().getPageSize()).isEqualTo(10);
   }
 
+  @Test
+  @DisplayName("Should be able to seek loans after an id")
+  void findAfterTest() {
+    LoanFilterDTO dto = LoanFilterDTO.builder().customer("Jhon").isbn("001").build();
+    LoanDTO loan = new LoanDTO(8L, "Jhon", "jhon@example.com", 1L, "My Book", "Jhon Doe", "001");
+    Slice<LoanDTO> slice = new SliceImpl<LoanDTO>(Arrays.asList(loan), PageRequest.of(0, 10), true);
+
+    Mockito.when(repository.findByBookIsbnOrCustomerAfter("001", "Jhon", 7L, PageRequest.of(0, 10))).thenReturn(slice);
+
+    Slice<LoanDTO> result = service.findAfter(dto, 7L, 10);
+
+    Assertions.assertThat(result.getContent()).containsExactly(loan);
+    Assertions.assertThat(result.hasNext()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should be able to search archived loans when asked for")
+  void findArchivedLoanTest() {
+    LoanFilterDTO dto = LoanFilterDTO.builder().customer("Jhon").includeArchived(true).build();
+    LoanDTO loan = new LoanDTO(1L, "Jhon", "jhon@example.com", 1L, "My Book", "Jhon Doe", "001");
+    PageRequest pageRequest = PageRequest.of(0, 10);
+    Mockito.when(historyRepository.findByBookIsbnOrCustomer(null, "Jhon", pageRequest))
+        .thenReturn(new PageImpl<LoanDTO>(Arrays.asList(loan), pageRequest, 1));
+    Mockito.when(historyRepository.countByBookIsbnOrCustomer(null, "Jhon")).thenReturn(1L);
+
+    Assertions.assertThat(service.find(dto, pageRequest).getContent()).containsExactly(loan);
+    Assertions.assertThat(service.count(dto)).isEqualTo(1L);
+    Mockito.verify(repository, never()).findByBookIsbnOrCustomer(Mockito.any(), Mockito.any(), Mockito.any());
+    Mockito.verify(repository, never()).countByBookIsbnOrCustomer(Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  @DisplayName("Should be able to return many loans with one update per version")
+  void returnAllTest() {
+    Mockito.when(repository.findReturnStates(Mockito.anyCollection())).thenReturn(Arrays.asList(
+        returnState(1L, 0, false), returnState(2L, 0, true), returnState(3L, 2, false), returnState(4L, 0, false),
+        returnState(5L, 2, false)));
+    Mockito.when(repository.markReturned(Mockito.anyCollection(), Mockito.eq(0L))).thenReturn(2);
+    Mockito.when(repository.markReturned(Mockito.anyCollection(), Mockito.eq(2L))).thenReturn(1);
+
+    List<LoanReturnResultDTO> result = service.returnAll(Arrays.asList(
+        LoanReturnDTO.builder().id(1L).build(),
+        LoanReturnDTO.builder().id(2L).build(),
+        LoanReturnDTO.builder().id(3L).version(1L).build(),
+        LoanReturnDTO.builder().id(9L).build(),
+        LoanReturnDTO.builder().id(4L).version(0L).build(),
+        LoanReturnDTO.builder().id(5L).build(),
+        LoanReturnDTO.builder().id(1L).build()));
+
+    Assertions.assertThat(result).extracting(LoanReturnResultDTO::getId, LoanReturnResultDTO::getStatus)
+        .containsExactly(
+            Assertions.tuple(1L, Status.RETURNED),
+            Assertions.tuple(2L, Status.ALREADY_RETURNED),
+            Assertions.tuple(3L, Status.CONFLICT),
+            Assertions.tuple(9L, Status.NOT_FOUND),
+            Assertions.tuple(4L, Status.RETURNED),
+            Assertions.tuple(5L, Status.RETURNED),
+            Assertions.tuple(1L, Status.RETURNED));
+    Mockito.verify(repository).findReturnStates(Arrays.asList(1L, 2L, 3L, 9L, 4L, 5L));
+    Mockito.verify(repository).markReturned(Arrays.asList(1L, 4L), 0L);
+    Mockito.verify(repository).markReturned(Arrays.asList(5L), 2L);
+    Mockito.verify(repository, never()).save(Mockito.any(Loan.class));
+    Mockito.verify(statistics, Mockito.times(3)).returned(DUE_DATE);
+    Mockito.verify(overdueTracker).untrack(1L);
+    Mockito.verify(overdueTracker).untrack(4L);
+    Mockito.verify(overdueTracker).untrack(5L);
+  }
+
+  @Test
+  @DisplayName("Should be able to tell the range of loan ids")
+  void getLoanIdsTest() {
+    Mockito.when(repository.findMinId()).thenReturn(3L);
+    Mockito.when(repository.findMaxId()).thenReturn(42L);
+
+    Assertions.assertThat(service.getLoanIds()).isEqualTo(Range.closed(3L, 42L));
+  }
+
+  @Test
+  @DisplayName("Should be able to claim and load the open loans among ids")
+  void claimOverdueNoticesTest() {
+    Loan open = createLoan();
+    open.setId(1L);
+    List<Long> ids = List.of(1L, 2L, 3L);
+    ArgumentCaptor<String> claim = ArgumentCaptor.forClass(String.class);
+    Mockito.when(repository.claimOverdueNotices(Mockito.eq(ids), claim.capture())).thenReturn(1);
+    Mockito.when(repository.findOverdueNoticeClaims(Mockito.eq(ids), Mockito.anyString())).thenReturn(List.of(1L));
+    Mockito.when(repository.findAllWithBookById(List.of(1L))).thenReturn(List.of(open));
+
+    Assertions.assertThat(service.claimOverdueNotices(ids)).containsExactly(open);
+    Mockito.verify(repository).findOverdueNoticeClaims(ids, claim.getValue());
+  }
+
+  @Test
+  @DisplayName("Should not load anything when every loan among ids was claimed already")
+  void claimOverdueNoticesClaimedTest() {
+    Mockito.when(repository.claimOverdueNotices(Mockito.eq(List.of(1L)), Mockito.anyString())).thenReturn(0);
+
+    Assertions.assertThat(service.claimOverdueNotices(List.of(1L))).isEmpty();
+    Mockito.verify(repository, never()).findAllWithBookById(Mockito.anyCollection());
+  }
+
+  @Test
+  @DisplayName("Should fail the bulk return when a loan changed after it was read")
+  void returnAllConflictTest() {
+    Mockito.when(repository.findReturnStates(Mockito.anyCollection()))
+        .thenReturn(Arrays.asList(returnState(1L, 0, false), returnState(2L, 0, false)));
+    Mockito.when(repository.markReturned(Mockito.anyCollection(), Mockito.eq(0L))).thenReturn(1);
+
+    Assertions.assertThatThrownBy(() -> service.returnAll(Arrays.asList(
+        LoanReturnDTO.builder().id(1L).build(), LoanReturnDTO.builder().id(2L).build())))
+        .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+  }
+
+  private LoanRepository.ReturnState returnState(Long id, long version, boolean returned) {
+    return new LoanRepository.ReturnState() {
+      @Override
+      public Long getId() {
+        return id;
+      }
+
+      @Override
+      public long getVersion() {
+        return version;
+      }
+
+      @Override
+      public Boolean getReturned() {
+        return returned;
+      }
+
+      @Override
+      public LocalDate getDueDate() {
+        return DUE_DATE;
+      }
+    };
+  }
+
   private Loan createLoan() {
     Book book = Book.builder().id(1L).build();
     return Loan.builder().book(book).customer("Jhon").loanDate(LocalDate.now()).build();
@@ -0,0 +1,155 @@
+package com.santanarscs.libraryapi.service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.santanarscs.libraryapi.api.dto.LoanStatsDTO;
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.model.entity.LoanStatsSnapshot;
+import com.santanarscs.libraryapi.model.repository.LoanHistoryRepository;
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+import com.santanarscs.libraryapi.model.repository.LoanRepository.LoanCount;
+import com.santanarscs.libraryapi.model.repository.LoanStatsSnapshotRepository;
+import com.santanarscs.libraryapi.service.impl.LoanStatisticsServiceImpl;
+import com.santanarscs.libraryapi.service.lease.JobLeases;
+import com.santanarscs.libraryapi.service.stats.LoanStatistics;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanStatisticsServiceTest {
+
+  static final LocalDate TODAY = LocalDate.now();
+
+  LoanStatisticsService service;
+  LoanStatistics statistics;
+  MeterRegistry meterRegistry;
+
+  @MockBean
+  LoanRepository loanRepository;
+
+  @MockBean
+  LoanHistoryRepository historyRepository;
+
+  @MockBean
+  LoanStatsSnapshotRepository snapshotRepository;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @MockBean
+  JobLeases leases;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    statistics = new LoanStatistics(meterRegistry);
+    Mockito.when(leases.tryAcquire(LoanStatisticsServiceImpl.SNAPSHOT_JOB)).thenReturn(true);
+    service = new LoanStatisticsServiceImpl(statistics, loanRepository, historyRepository, snapshotRepository,
+        new TransactionTemplate(transactionManager), leases, meterRegistry, true);
+  }
+
+  @Test
+  @DisplayName("Should be able to load the counters from the database and report overdue loans, not those due today")
+  void reconcileTest() {
+    mockDatabase();
+
+    Assertions.assertThat(service.getStatistics(TODAY).getReconciledAt()).isNull();
+    service.reconcile();
+    LoanStatsDTO stats = service.getStatistics(TODAY);
+
+    Assertions.assertThat(stats.getOpenLoans()).isEqualTo(3);
+    Assertions.assertThat(stats.getOverdueLoans()).isEqualTo(1);
+    Assertions.assertThat(stats.getTotalLoans()).isEqualTo(10);
+    Assertions.assertThat(stats.getReconciledAt()).isNotNull();
+    Assertions.assertThat(service.countLoansOfBook(1L)).isEqualTo(7);
+    Assertions.assertThat(service.countLoansOfCustomer("Jhon")).isEqualTo(10);
+    Assertions.assertThat(meterRegistry.get("loans.overdue").gauge().value()).isEqualTo(1);
+    Assertions.assertThat(meterRegistry.counter("loans.stats.drift").count()).isZero();
+  }
+
+  @Test
+  @DisplayName("Should be able to report and correct counters that drifted from the database")
+  void reconcileDriftTest() {
+    mockDatabase();
+    service.reconcile();
+    statistics.loaned(Loan.builder().book(Book.builder().id(1L).build()).customer("Jhon").loanDate(TODAY)
+        .dueDate(TODAY.plusDays(4)).build());
+
+    long drift = service.reconcile();
+
+    Assertions.assertThat(drift).isEqualTo(5);
+    Assertions.assertThat(service.getStatistics(TODAY).getOpenLoans()).isEqualTo(3);
+    Assertions.assertThat(meterRegistry.counter("loans.stats.drift").count()).isEqualTo(5);
+  }
+
+  @Test
+  @DisplayName("Should be able to store snapshots only once the counters were loaded")
+  void snapshotTest() {
+    service.snapshot();
+    Mockito.verify(snapshotRepository, Mockito.never()).save(Mockito.any());
+
+    mockDatabase();
+    service.reconcile();
+    service.snapshot();
+
+    ArgumentCaptor<LoanStatsSnapshot> captor = ArgumentCaptor.forClass(LoanStatsSnapshot.class);
+    Mockito.verify(snapshotRepository).save(captor.capture());
+    Assertions.assertThat(captor.getValue().getOpenLoans()).isEqualTo(3);
+    Assertions.assertThat(captor.getValue().getOverdueLoans()).isEqualTo(1);
+    Assertions.assertThat(captor.getValue().getTotalLoans()).isEqualTo(10);
+  }
+
+  @Test
+  @DisplayName("Should leave the snapshots to the node holding the lease")
+  void snapshotLeasedByOtherNodeTest() {
+    mockDatabase();
+    service.reconcile();
+    Mockito.when(leases.tryAcquire(LoanStatisticsServiceImpl.SNAPSHOT_JOB)).thenReturn(false);
+
+    service.snapshot();
+
+    Mockito.verify(snapshotRepository, Mockito.never()).save(Mockito.any());
+    Mockito.verify(leases, Mockito.never()).release(Mockito.anyString());
+  }
+
+  private void mockDatabase() {
+    Mockito.when(loanRepository.countOpenLoansByDueDate()).thenReturn(List.of(
+        count(TODAY.minusDays(6), 1), count(TODAY, 1), count(TODAY.plusDays(4), 1)));
+    Mockito.when(historyRepository.count()).thenReturn(10L);
+    Mockito.when(historyRepository.streamLoansByBook())
+        .thenAnswer(invocation -> Stream.of(count(1L, 7), count(2L, 3)));
+    Mockito.when(historyRepository.streamLoansByCustomer()).thenAnswer(invocation -> Stream.of(count("Jhon", 10)));
+  }
+
+  private <K> LoanCount<K> count(K key, long loans) {
+    return new LoanCount<K>() {
+      @Override
+      public K getKey() {
+        return key;
+      }
+
+      @Override
+      public long getLoans() {
+        return loans;
+      }
+    };
+  }
+}
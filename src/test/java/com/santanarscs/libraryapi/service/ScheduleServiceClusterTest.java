@@ -0,0 +1,173 @@
+package com.santanarscs.libraryapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.santanarscs.libraryapi.LibraryApiApplication;
+import com.santanarscs.libraryapi.service.overdue.OverdueTracker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Three application contexts stand in for three nodes sharing one H2
+ * database. They all fire the late loan mail at once, as they would at
+ * midnight, or their overdue trackers for the same loans, and every late
+ * customer must be mailed exactly once. Mail is
+ * recorded per node, slowly enough that a run outlasts the start of the
+ * others.
+ */
+@ActiveProfiles("test")
+public class ScheduleServiceClusterTest {
+
+  static final int NODES = 3;
+  static final int CUSTOMERS = 60;
+
+  List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+  @AfterEach
+  public void tearDown() {
+    nodes.forEach(ConfigurableApplicationContext::close);
+  }
+
+  @Test
+  @DisplayName("Should mail every late customer once, from the node holding the lease")
+  void leaseTest() throws Exception {
+    start(false, false);
+
+    Map<String, List<String>> mailed = runOnEveryNode();
+
+    assertThat(mailed.values().stream().flatMap(List::stream)).hasSize(CUSTOMERS).doesNotHaveDuplicates();
+    assertThat(mailed.values().stream().filter(mails -> !mails.isEmpty())).hasSize(1);
+    assertThat(runFinished()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should mail every late customer once, with the ranges shared between the nodes")
+  void shareRangesTest() throws Exception {
+    start(true, false);
+
+    Map<String, List<String>> mailed = runOnEveryNode();
+
+    assertThat(mailed.values().stream().flatMap(List::stream)).hasSize(CUSTOMERS).doesNotHaveDuplicates();
+    assertThat(mailed.values().stream().filter(mails -> !mails.isEmpty()).count()).isGreaterThan(1);
+    assertThat(runFinished()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should notice every overdue loan once, whichever nodes' trackers fire for it")
+  void overdueNoticeTest() throws Exception {
+    start(false, true);
+    List<Long> ids = nodes.get(0).getBean(JdbcTemplate.class).queryForList("select id from loan", Long.class);
+    for (ConfigurableApplicationContext node : nodes) {
+      OverdueTracker tracker = node.getBean(OverdueTracker.class);
+      ids.forEach(id -> tracker.track(id, LocalDate.now()));
+    }
+
+    Map<String, List<String>> mailed = onEveryNode(
+        node -> node.getBean(OverdueTracker.class).tick(System.currentTimeMillis()));
+
+    assertThat(mailed.values().stream().flatMap(List::stream)).hasSize(CUSTOMERS).doesNotHaveDuplicates();
+  }
+
+  private void start(boolean shareRanges, boolean overdueNotices) {
+    String url = "jdbc:h2:mem:cluster-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    for (int node = 0; node < NODES; node++) {
+      nodes.add(new SpringApplicationBuilder(LibraryApiApplication.class, RecordingEmailService.class)
+          .web(WebApplicationType.NONE)
+          .profiles("test")
+          .logStartupInfo(false)
+          .run("--spring.datasource.url=" + url,
+              "--application.scheduling.node-id=node-" + node,
+              "--application.mail.lateloans.share-ranges=" + shareRanges,
+              "--application.mail.lateloans.partitions=6",
+              "--application.mail.lateloans.parallelism=1",
+              "--application.mail.lateloans.chunk-size=5",
+              "--application.loans.overdue.enabled=" + overdueNotices,
+              "--application.loans.stats.enabled=false",
+              "--application.search.index.enabled=false"));
+    }
+    JdbcTemplate jdbc = nodes.get(0).getBean(JdbcTemplate.class);
+    jdbc.update("insert into book (id, title, author, isbn) "
+        + "select x, 'Title ' || x, 'Author', 'ISBN-' || x from system_range(1, ?)", CUSTOMERS);
+    jdbc.update("insert into loan (customer, customer_email, id_book, loan_date, due_date, returned) "
+        + "select 'Customer ' || x, 'customer' || x || '@example.com', x, dateadd('DAY', -10, current_date), "
+        + "dateadd('DAY', -6, current_date), false from system_range(1, ?)", CUSTOMERS);
+  }
+
+  /**
+   * @return what each node mailed, by node
+   */
+  private Map<String, List<String>> runOnEveryNode() throws Exception {
+    return onEveryNode(node -> node.getBean(ScheduleService.class).sendMailToLateLoans());
+  }
+
+  /**
+   * Runs the job on every node at once.
+   *
+   * @return what each node mailed, by node
+   */
+  private Map<String, List<String>> onEveryNode(Consumer<ConfigurableApplicationContext> job) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(NODES);
+    CountDownLatch midnight = new CountDownLatch(1);
+    try {
+      List<Future<?>> runs = new ArrayList<>();
+      for (ConfigurableApplicationContext node : nodes) {
+        runs.add(executor.submit(() -> {
+          midnight.await();
+          job.accept(node);
+          return null;
+        }));
+      }
+      midnight.countDown();
+      for (Future<?> run : runs) {
+        run.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    return nodes.stream().collect(Collectors.toMap(
+        node -> node.getEnvironment().getProperty("application.scheduling.node-id"),
+        node -> node.getBean(RecordingEmailService.class).mails));
+  }
+
+  private boolean runFinished() {
+    return nodes.get(0).getBean(JdbcTemplate.class).queryForObject(
+        "select finished from job_checkpoint where name = ?", Boolean.class, ScheduleService.LATE_LOANS_JOB);
+  }
+
+  @Primary
+  static class RecordingEmailService implements EmailService {
+
+    final List<String> mails = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void sendMails(Map<String, String> messagesByAddress) {
+      mails.addAll(messagesByAddress.keySet());
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,374 @@
+package com.santanarscs.libraryapi.service;
+
+import static org.mockito.Mockito.never;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.JobCheckpoint;
+import com.santanarscs.libraryapi.model.entity.Loan;
+import com.santanarscs.libraryapi.model.repository.JobCheckpointRepository;
+import com.santanarscs.libraryapi.service.lease.JobLeases;
+import com.santanarscs.libraryapi.service.mail.LateLoanTemplate;
+import com.santanarscs.libraryapi.service.overdue.LoansOverdueEvent;
+import com.santanarscs.libraryapi.service.overdue.OverdueTracker;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The checkpoints live in a map behind the mocked repository, and claims
+ * succeed on ranges nobody owns, as the job_checkpoint table would have them.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class ScheduleServiceTest {
+
+  static final String NODE = "node-1";
+
+  ScheduleService service;
+
+  Map<String, JobCheckpoint> checkpoints;
+
+  List<Loan> lateLoans;
+
+  @MockBean
+  LoanService loanService;
+
+  @MockBean
+  EmailService emailService;
+
+  @MockBean
+  JobCheckpointRepository checkpointRepository;
+
+  @MockBean
+  JobLeases leases;
+
+  @MockBean
+  OverdueTracker overdueTracker;
+
+  @BeforeEach
+  public void setup() {
+    service = service(false, false);
+    checkpoints = new ConcurrentHashMap<>();
+    lateLoans = new ArrayList<>();
+    Mockito.when(loanService.getLateLoansOfCustomersBetween(Mockito.any(), Mockito.anyLong(), Mockito.anyLong()))
+        .thenAnswer(invocation -> {
+          long after = invocation.getArgument(1);
+          long until = invocation.getArgument(2);
+          Set<String> emails = lateLoans.stream().filter(loan -> loan.getId() > after && loan.getId() <= until)
+              .map(Loan::getCustomerEmail).collect(Collectors.toSet());
+          return lateLoans.stream().filter(loan -> emails.contains(loan.getCustomerEmail()))
+              .sorted(Comparator.comparing(Loan::getCustomerEmail).thenComparing(Loan::getId))
+              .collect(Collectors.toList());
+        });
+    Mockito.when(checkpointRepository.findById(Mockito.anyString()))
+        .thenAnswer(invocation -> Optional.ofNullable(checkpoints.get(invocation.getArgument(0))));
+    Mockito.when(checkpointRepository.findByNamePrefix(Mockito.anyString()))
+        .thenAnswer(invocation -> checkpoints.values().stream()
+            .filter(checkpoint -> checkpoint.getName().startsWith(invocation.getArgument(0)))
+            .sorted(Comparator.comparing(JobCheckpoint::getLastId))
+            .collect(Collectors.toList()));
+    Mockito.when(checkpointRepository.save(Mockito.any(JobCheckpoint.class)))
+        .thenAnswer(invocation -> store(invocation.getArgument(0)));
+    Mockito.when(checkpointRepository.saveAll(Mockito.anyList()))
+        .thenAnswer(invocation -> {
+          List<JobCheckpoint> saved = invocation.getArgument(0);
+          saved.forEach(this::store);
+          return saved;
+        });
+    Mockito.doAnswer(invocation -> {
+      Iterable<JobCheckpoint> deleted = invocation.getArgument(0);
+      deleted.forEach(checkpoint -> checkpoints.remove(checkpoint.getName()));
+      return null;
+    }).when(checkpointRepository).deleteAll(Mockito.anyIterable());
+
+    Mockito.when(leases.getTtl()).thenReturn(Duration.ofMinutes(5));
+    Mockito.when(leases.acquire(Mockito.anyString(), Mockito.any())).thenReturn(true);
+    Mockito.when(leases.renew(Mockito.anyString())).thenReturn(true);
+    Mockito.when(leases.claim(Mockito.anyString())).thenAnswer(invocation -> {
+      synchronized (checkpoints) {
+        JobCheckpoint range = checkpoints.get(invocation.getArgument(0));
+        if (range == null || range.getFinished() || range.getOwner() != null) {
+          return false;
+        }
+        range.setOwner(NODE);
+        return true;
+      }
+    });
+    Mockito.when(leases.saveClaimed(Mockito.any()))
+        .thenAnswer(invocation -> NODE.equals(store(invocation.getArgument(0)).getOwner()));
+  }
+
+  @AfterEach
+  public void tearDown() throws InterruptedException {
+    service.stop();
+  }
+
+  @Test
+  @DisplayName("Should be able to mail late loans range by range, chunk by chunk")
+  void sendMailToLateLoansTest() {
+    Mockito.when(loanService.getLoanIds()).thenReturn(Range.closed(1L, 8L));
+    Mockito.when(loanService.getLateLoans(LocalDate.now(), 0L, 4L, 2))
+        .thenReturn(new SliceImpl<>(Arrays.asList(loan(1L, "a@mail.com"), loan(2L, "a@mail.com")), PageRequest.of(0, 2), true));
+    Mockito.when(loanService.getLateLoans(LocalDate.now(), 2L, 4L, 2))
+        .thenReturn(new SliceImpl<>(Arrays.asList(loan(3L, "b@mail.com")), PageRequest.of(0, 2), false));
+    Mockito.when(loanService.getLateLoans(LocalDate.now(), 4L, Long.MAX_VALUE, 2))
+        .thenReturn(new SliceImpl<>(Arrays.asList(loan(6L, "c@mail.com"), loan(7L, "a@mail.com")), PageRequest.of(0, 2), false));
+
+    service.sendMailToLateLoans();
+
+    Mockito.verify(emailService).sendMails(Map.of("a@mail.com", "a: Book 1 Book 2 Book 7"));
+    Mockito.verify(emailService).sendMails(Map.of("b@mail.com", "b: Book 3"));
+    Mockito.verify(emailService).sendMails(Map.of("c@mail.com", "c: Book 6"));
+    Mockito.verifyNoMoreInteractions(emailService);
+    Mockito.verify(leases, Mockito.times(3)).saveClaimed(Mockito.any());
+    Mockito.verify(leases).renew(ScheduleService.LATE_LOANS_JOB);
+    Mockito.verify(leases).release(ScheduleService.LATE_LOANS_JOB);
+
+    Assertions.assertThat(checkpoints.get(ScheduleService.LATE_LOANS_PARTITION + 0))
+        .extracting(JobCheckpoint::getLastId, JobCheckpoint::getUntilId, JobCheckpoint::getFinished)
+        .containsExactly(3L, 4L, true);
+    Assertions.assertThat(checkpoints.get(ScheduleService.LATE_LOANS_PARTITION + 1))
+        .extracting(JobCheckpoint::getLastId, JobCheckpoint::getUntilId, JobCheckpoint::getFinished)
+        .containsExactly(7L, Long.MAX_VALUE, true);
+    Assertions.assertThat(checkpoints.get(ScheduleService.LATE_LOANS_JOB).getFinished()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should be able to resume the unfinished ranges of a run interrupted today after their checkpoints")
+  void resumeSendMailToLateLoansTest() {
+    LocalDate runDate = LocalDate.now();
+    JobCheckpoint checkpoint = store(JobCheckpoint.builder()
+        .name(ScheduleService.LATE_LOANS_JOB).runDate(runDate).lastId(0L).finished(false).build());
+    store(range(0, runDate, 4L, 4L, true));
+    store(range(1, runDate, 6L, Long.MAX_VALUE, false));
+    store(range(2, runDate.minusDays(1), 0L, Long.MAX_VALUE, false));
+    Mockito.when(loanService.getLateLoans(runDate, 6L, Long.MAX_VALUE, 2))
+        .thenReturn(new SliceImpl<>(Arrays.asList(loan(7L, "b@mail.com")), PageRequest.of(0, 2), false));
+
+    service.sendMailToLateLoans();
+
+    Mockito.verify(loanService).getLateLoans(runDate, 6L, Long.MAX_VALUE, 2);
+    Mockito.verify(loanService, never()).getLateLoans(Mockito.any(), Mockito.eq(0L), Mockito.anyLong(), Mockito.anyInt());
+    Mockito.verify(loanService, never()).getLoanIds();
+    Mockito.verify(emailService).sendMails(Map.of("b@mail.com", "b: Book 7"));
+    Assertions.assertThat(checkpoint.getFinished()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should be able to resume a run checkpointed before runs were split")
+  void resumeUnsplitRunTest() {
+    LocalDate runDate = LocalDate.now();
+    JobCheckpoint checkpoint = store(JobCheckpoint.builder()
+        .name(ScheduleService.LATE_LOANS_JOB).runDate(runDate).lastId(2L).finished(false).build());
+    Mockito.when(loanService.getLateLoans(runDate, 2L, Long.MAX_VALUE, 2))
+        .thenReturn(new SliceImpl<>(Arrays.asList(loan(3L, "b@mail.com")), PageRequest.of(0, 2), false));
+
+    service.sendMailToLateLoans();
+
+    Mockito.verify(emailService).sendMails(Map.of("b@mail.com", "b: Book 3"));
+    Assertions.assertThat(checkpoint.getFinished()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should be able to start a new run when the last one finished")
+  void newRunAfterFinishedCheckpointTest() {
+    LocalDate yesterday = LocalDate.now().minusDays(1);
+    store(JobCheckpoint.builder()
+        .name(ScheduleService.LATE_LOANS_JOB).runDate(yesterday).lastId(3L).finished(true).build());
+    List<JobCheckpoint> oldRanges = Arrays.asList(store(range(0, yesterday, 3L, 3L, true)));
+    Mockito.when(loanService.getLoanIds()).thenReturn(Range.closed(0L, 0L));
+    Mockito.when(loanService.getLateLoans(LocalDate.now(), -1L, Long.MAX_VALUE, 2))
+        .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 2), false));
+
+    service.sendMailToLateLoans();
+
+    Mockito.verify(checkpointRepository).deleteAll(oldRanges);
+    Mockito.verify(loanService).getLateLoans(LocalDate.now(), -1L, Long.MAX_VALUE, 2);
+    Mockito.verify(emailService, never()).sendMails(Mockito.anyMap());
+    Assertions.assertThat(checkpoints.get(ScheduleService.LATE_LOANS_JOB))
+        .extracting(JobCheckpoint::getRunDate, JobCheckpoint::getFinished)
+        .containsExactly(LocalDate.now(), true);
+  }
+
+  @Test
+  @DisplayName("Should drop yesterday's unfinished run and start today's")
+  void staleUnfinishedRunTest() {
+    LocalDate yesterday = LocalDate.now().minusDays(1);
+    store(JobCheckpoint.builder()
+        .name(ScheduleService.LATE_LOANS_JOB).runDate(yesterday).lastId(0L).finished(false).build());
+    List<JobCheckpoint> oldRanges = Arrays.asList(store(range(0, yesterday, 2L, Long.MAX_VALUE, false)));
+    Mockito.when(loanService.getLoanIds()).thenReturn(Range.closed(1L, 1L));
+    Mockito.when(loanService.getLateLoans(LocalDate.now(), 0L, Long.MAX_VALUE, 2))
+        .thenReturn(new SliceImpl<>(Arrays.asList(loan(1L, "a@mail.com")), PageRequest.of(0, 2), false));
+
+    service.sendMailToLateLoans();
+
+    Mockito.verify(checkpointRepository).deleteAll(oldRanges);
+    Mockito.verify(loanService, never()).getLateLoans(Mockito.eq(yesterday), Mockito.anyLong(), Mockito.anyLong(),
+        Mockito.anyInt());
+    Mockito.verify(emailService).sendMails(Map.of("a@mail.com", "a: Book 1"));
+    Assertions.assertThat(checkpoints.get(ScheduleService.LATE_LOANS_JOB))
+        .extracting(JobCheckpoint::getRunDate, JobCheckpoint::getFinished)
+        .containsExactly(LocalDate.now(), true);
+  }
+
+  @Test
+  @DisplayName("Should not mail again on the day the run finished")
+  void alreadyFinishedTodayTest() {
+    store(JobCheckpoint.builder()
+        .name(ScheduleService.LATE_LOANS_JOB).runDate(LocalDate.now()).lastId(0L).finished(true).build());
+
+    service.sendMailToLateLoans();
+
+    Mockito.verifyNoInteractions(loanService, emailService);
+    Mockito.verify(leases).release(ScheduleService.LATE_LOANS_JOB);
+  }
+
+  @Test
+  @DisplayName("Should leave the run to the node holding the lease")
+  void leasedByOtherNodeTest() {
+    Mockito.when(leases.acquire(ScheduleService.LATE_LOANS_JOB, Duration.ZERO)).thenReturn(false);
+
+    service.sendMailToLateLoans();
+
+    Mockito.verifyNoInteractions(loanService, emailService, checkpointRepository);
+    Mockito.verify(leases, never()).release(Mockito.anyString());
+  }
+
+  @Test
+  @DisplayName("Should walk only the ranges it claimed when sharing them with other nodes")
+  void shareRangesTest() throws InterruptedException {
+    service.stop();
+    service = service(false, true);
+    LocalDate runDate = LocalDate.now();
+    store(JobCheckpoint.builder()
+        .name(ScheduleService.LATE_LOANS_JOB).runDate(runDate).lastId(0L).finished(false).build());
+    store(range(0, runDate, 0L, 4L, false)).setOwner("node-2");
+    store(range(1, runDate, 4L, Long.MAX_VALUE, false));
+    Mockito.when(loanService.getLateLoans(runDate, 4L, Long.MAX_VALUE, 2))
+        .thenReturn(new SliceImpl<>(Arrays.asList(loan(6L, "c@mail.com")), PageRequest.of(0, 2), false));
+
+    service.sendMailToLateLoans();
+
+    Mockito.verify(leases).acquire(ScheduleService.LATE_LOANS_JOB, Duration.ofMinutes(5));
+    Mockito.verify(leases).release(ScheduleService.LATE_LOANS_JOB);
+    Mockito.verify(leases, never()).renew(Mockito.anyString());
+    Mockito.verify(loanService, never()).getLateLoans(Mockito.any(), Mockito.eq(0L), Mockito.anyLong(), Mockito.anyInt());
+    Mockito.verify(emailService).sendMails(Map.of("c@mail.com", "c: Book 6"));
+    Assertions.assertThat(checkpoints.get(ScheduleService.LATE_LOANS_PARTITION + 1).getFinished()).isTrue();
+    Assertions.assertThat(checkpoints.get(ScheduleService.LATE_LOANS_JOB).getFinished()).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should leave the run unfinished when a range fails")
+  void failedRangeTest() {
+    Mockito.when(loanService.getLoanIds()).thenReturn(Range.closed(1L, 8L));
+    Mockito.when(loanService.getLateLoans(LocalDate.now(), 0L, 4L, 2)).thenThrow(new IllegalStateException("down"));
+    Mockito.when(loanService.getLateLoans(LocalDate.now(), 4L, Long.MAX_VALUE, 2))
+        .thenReturn(new SliceImpl<>(Arrays.asList(loan(6L, "c@mail.com")), PageRequest.of(0, 2), false));
+
+    service.sendMailToLateLoans();
+
+    Mockito.verify(emailService).sendMails(Map.of("c@mail.com", "c: Book 6"));
+    Mockito.verify(loanService).getLateLoans(LocalDate.now(), 0L, 4L, 2);
+    Assertions.assertThat(checkpoints.get(ScheduleService.LATE_LOANS_PARTITION + 0).getFinished()).isFalse();
+    Assertions.assertThat(checkpoints.get(ScheduleService.LATE_LOANS_JOB).getFinished()).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should leave the loans due on the run date to the overdue notices")
+  void sendMailToLateLoansWithOverdueNoticesTest() throws InterruptedException {
+    service.stop();
+    service = service(true, false);
+    Mockito.when(loanService.getLoanIds()).thenReturn(Range.closed(1L, 1L));
+    Mockito.when(loanService.getLateLoans(LocalDate.now().minusDays(1), 0L, Long.MAX_VALUE, 2))
+        .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 2), false));
+
+    service.sendMailToLateLoans();
+
+    Mockito.verify(loanService).getLateLoans(LocalDate.now().minusDays(1), 0L, Long.MAX_VALUE, 2);
+  }
+
+  @Test
+  @DisplayName("Should mail the loans that just became overdue chunk by chunk, one notice per customer")
+  void notifyOverdueLoansTest() {
+    Mockito.when(loanService.claimOverdueNotices(Arrays.asList(1L, 2L)))
+        .thenReturn(Arrays.asList(loan(1L, "a@mail.com"), loan(2L, "a@mail.com")));
+    Mockito.when(loanService.claimOverdueNotices(Arrays.asList(3L))).thenReturn(List.of());
+
+    service.notifyOverdueLoans(new LoansOverdueEvent(Arrays.asList(1L, 2L, 3L)));
+
+    Mockito.verify(emailService).sendMails(Map.of("a@mail.com", "a due: Book 1 Book 2"));
+    Mockito.verifyNoMoreInteractions(emailService);
+  }
+
+  @Test
+  @DisplayName("Should mail the other chunks of overdue loans when one fails, retrying one that was not claimed")
+  void notifyOverdueLoansFailureTest() {
+    Mockito.when(loanService.claimOverdueNotices(Arrays.asList(1L, 2L)))
+        .thenThrow(new IllegalStateException("database down"));
+    Mockito.when(loanService.claimOverdueNotices(Arrays.asList(3L, 4L))).thenReturn(List.of(loan(3L, "c@mail.com")));
+    Mockito.when(loanService.claimOverdueNotices(Arrays.asList(5L))).thenReturn(List.of(loan(5L, "e@mail.com")));
+    Mockito.doThrow(new IllegalStateException("dispatcher stopped")).when(emailService)
+        .sendMails(Map.of("c@mail.com", "c due: Book 3"));
+
+    service.notifyOverdueLoans(new LoansOverdueEvent(Arrays.asList(1L, 2L, 3L, 4L, 5L)));
+
+    Mockito.verify(overdueTracker).retry(Arrays.asList(1L, 2L));
+    Mockito.verify(emailService).sendMails(Map.of("e@mail.com", "e due: Book 5"));
+    Mockito.verifyNoMoreInteractions(overdueTracker);
+  }
+
+  private ScheduleService service(boolean overdueNotices, boolean shareRanges) {
+    ScheduleService service = new ScheduleService(loanService, emailService, checkpointRepository, leases,
+        overdueTracker, new LateLoanTemplate("{customer}:{#loans} {title}{/loans}"), new SimpleMeterRegistry(), 2, 2, 2, shareRanges,
+        overdueNotices, "{customer} due:{#loans} {title}{/loans}");
+    service.start();
+    return service;
+  }
+
+  private JobCheckpoint store(JobCheckpoint checkpoint) {
+    checkpoints.put(checkpoint.getName(), checkpoint);
+    return checkpoint;
+  }
+
+  private JobCheckpoint range(int partition, LocalDate runDate, Long lastId, Long untilId, boolean finished) {
+    return JobCheckpoint.builder().name(ScheduleService.LATE_LOANS_PARTITION + partition).runDate(runDate)
+        .lastId(lastId).untilId(untilId).finished(finished).build();
+  }
+
+  /**
+   * A late loan, also returned as one of its customer's late loans.
+   */
+  private Loan loan(Long id, String email) {
+    Loan loan = Loan.builder().id(id).customer(email.substring(0, email.indexOf('@'))).customerEmail(email)
+        .book(Book.builder().title("Book " + id).build()).dueDate(LocalDate.now().minusDays(2)).build();
+    lateLoans.add(loan);
+    return loan;
+  }
+}
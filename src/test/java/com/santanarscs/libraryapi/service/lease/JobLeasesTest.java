@@ -0,0 +1,107 @@
+package com.santanarscs.libraryapi.service.lease;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import com.santanarscs.libraryapi.model.entity.JobCheckpoint;
+import com.santanarscs.libraryapi.model.repository.JobCheckpointRepository;
+import com.santanarscs.libraryapi.model.repository.JobLeaseRepository;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Two {@link JobLeases} on one database stand in for two nodes. Every call
+ * commits, so each test works on leases and checkpoints of its own.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class JobLeasesTest {
+
+  @Autowired
+  JobLeaseRepository leaseRepository;
+
+  @Autowired
+  JobCheckpointRepository checkpointRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Test
+  @DisplayName("Should let one node hold a lease until it releases it")
+  void acquireTest() {
+    JobLeases first = leases("node-1", Duration.ofMinutes(5));
+    JobLeases second = leases("node-2", Duration.ofMinutes(5));
+
+    Assertions.assertThat(first.tryAcquire("acquire-job")).isTrue();
+    Assertions.assertThat(second.tryAcquire("acquire-job")).isFalse();
+    Assertions.assertThat(first.tryAcquire("acquire-job")).isTrue();
+    Assertions.assertThat(second.acquire("acquire-job", Duration.ofMillis(150))).isFalse();
+    Assertions.assertThat(second.renew("acquire-job")).isFalse();
+
+    first.release("acquire-job");
+
+    Assertions.assertThat(second.tryAcquire("acquire-job")).isTrue();
+    Assertions.assertThat(first.renew("acquire-job")).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should let another node take a lease that expired")
+  void expiryTest() throws InterruptedException {
+    JobLeases first = leases("node-1", Duration.ofMillis(200));
+    JobLeases second = leases("node-2", Duration.ofMillis(200));
+
+    Assertions.assertThat(first.tryAcquire("expiry-job")).isTrue();
+    Assertions.assertThat(first.renew("expiry-job")).isTrue();
+    Thread.sleep(300);
+
+    Assertions.assertThat(second.tryAcquire("expiry-job")).isTrue();
+    Assertions.assertThat(first.renew("expiry-job")).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should let one node claim and checkpoint an unfinished range")
+  void claimTest() throws InterruptedException {
+    JobLeases first = leases("node-1", Duration.ofMillis(200));
+    JobLeases second = leases("node-2", Duration.ofMillis(200));
+    checkpointRepository.save(JobCheckpoint.builder()
+        .name("claim-job#0").runDate(LocalDate.now()).lastId(0L).untilId(10L).finished(false).build());
+
+    Assertions.assertThat(first.claim("claim-job#0")).isTrue();
+    Assertions.assertThat(second.claim("claim-job#0")).isFalse();
+    JobCheckpoint range = checkpointRepository.findById("claim-job#0").get();
+    range.setLastId(5L);
+    Assertions.assertThat(first.saveClaimed(range)).isTrue();
+    Assertions.assertThat(second.saveClaimed(range)).isFalse();
+    Thread.sleep(300);
+
+    Assertions.assertThat(second.claim("claim-job#0")).isTrue();
+    Assertions.assertThat(first.saveClaimed(range)).isFalse();
+    range.setLastId(10L);
+    range.setFinished(true);
+    Assertions.assertThat(second.saveClaimed(range)).isTrue();
+    Thread.sleep(300);
+
+    Assertions.assertThat(first.claim("claim-job#0")).isFalse();
+    Assertions.assertThat(checkpointRepository.findById("claim-job#0").get())
+        .extracting(JobCheckpoint::getLastId, JobCheckpoint::getOwner, JobCheckpoint::getFinished)
+        .containsExactly(10L, "node-2", true);
+  }
+
+  private JobLeases leases(String node, Duration ttl) {
+    return new JobLeases(leaseRepository, checkpointRepository, new TransactionTemplate(transactionManager), node,
+        ttl);
+  }
+}
@@ -0,0 +1,74 @@
+package com.santanarscs.libraryapi.service.mail;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+public class LateLoanTemplateTest {
+
+  static final LocalDate TODAY = LocalDate.of(2022, 6, 30);
+
+  @Test
+  @DisplayName("Should be able to render one digest of a customer's late loans")
+  void renderTest() {
+    LateLoanTemplate template = new LateLoanTemplate(
+        "Hi {customer}, {count} late:\n{#loans}- {title}, due {dueDate}, {daysOverdue} days\n{/loans}Bye {customer}");
+    List<Loan> loans = Arrays.asList(loan("Dune", TODAY.minusDays(3)), loan("Emma", LocalDate.of(2022, 1, 5)));
+
+    Assertions.assertThat(template.render("Jhon", loans, TODAY)).isEqualTo("Hi Jhon, 2 late:\n"
+        + "- Dune, due 27/06/2022, 3 days\n"
+        + "- Emma, due 05/01/2022, 176 days\n"
+        + "Bye Jhon");
+    Assertions.assertThat(template.render("Mary", loans.subList(0, 1), TODAY))
+        .isEqualTo("Hi Mary, 1 late:\n- Dune, due 27/06/2022, 3 days\nBye Mary");
+  }
+
+  @Test
+  @DisplayName("Should be able to render a template without a loan block and loans without a book")
+  void renderWithoutLoansTest() {
+    Assertions.assertThat(new LateLoanTemplate("{customer} has {count} late loans").render("Jhon",
+        Arrays.asList(loan("Dune", TODAY), loan("Emma", TODAY)), TODAY)).isEqualTo("Jhon has 2 late loans");
+    Assertions.assertThat(new LateLoanTemplate("{#loans}[{title}]{/loans}").render(null,
+        List.of(Loan.builder().dueDate(TODAY).build()), TODAY)).isEqualTo("[]");
+  }
+
+  @Test
+  @DisplayName("Should be able to list only the first loans of a very large digest, counting them all")
+  void renderLargeDigestTest() {
+    List<Loan> loans = Collections.nCopies(LateLoanTemplate.MAX_LISTED + 50, loan("Dune", TODAY));
+
+    String digest = new LateLoanTemplate("{count} late:{#loans}[{title}]{/loans}").render("Jhon", loans, TODAY);
+
+    Assertions.assertThat(digest)
+        .isEqualTo((LateLoanTemplate.MAX_LISTED + 50) + " late:" + "[Dune]".repeat(LateLoanTemplate.MAX_LISTED));
+  }
+
+  @Test
+  @DisplayName("Should not compile a template with unknown placeholders or a broken loan block")
+  void invalidTemplateTest() {
+    Assertions.assertThatThrownBy(() -> new LateLoanTemplate("Hi {name}"))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new LateLoanTemplate("Hi {title}"))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new LateLoanTemplate("Hi {customer"))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new LateLoanTemplate("{#loans}{title}"))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new LateLoanTemplate("{/loans}{#loans}"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private Loan loan(String title, LocalDate dueDate) {
+    return Loan.builder().book(Book.builder().title(title).build()).dueDate(dueDate).build();
+  }
+}
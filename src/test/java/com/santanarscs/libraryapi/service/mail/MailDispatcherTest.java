@@ -0,0 +1,134 @@
+package com.santanarscs.libraryapi.service.mail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.santanarscs.libraryapi.model.entity.MailDeadLetter;
+import com.santanarscs.libraryapi.model.repository.MailDeadLetterRepository;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class MailDispatcherTest {
+
+  MailDispatcher dispatcher;
+  MeterRegistry meterRegistry;
+
+  @MockBean
+  JavaMailSender javaMailSender;
+
+  @MockBean
+  MailDeadLetterRepository deadLetterRepository;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    dispatcher = new MailDispatcher(javaMailSender, deadLetterRepository, meterRegistry, 10, 1, 10, 1000, 3, 1);
+  }
+
+  @Test
+  @DisplayName("Should be able to send a batch in one call")
+  void deliverTest() throws Exception {
+    SimpleMailMessage first = message("a@mail.com");
+    SimpleMailMessage second = message("b@mail.com");
+
+    dispatcher.deliver(Arrays.asList(first, second));
+
+    Mockito.verify(javaMailSender, Mockito.times(1)).send(first, second);
+    Assertions.assertThat(meterRegistry.get("mail.send").timer().count()).isEqualTo(1);
+    Assertions.assertThat(meterRegistry.get("mail.sent").counter().count()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Should be able to retry only the messages the server rejected")
+  void retryFailedMessagesTest() throws Exception {
+    SimpleMailMessage first = message("a@mail.com");
+    SimpleMailMessage second = message("b@mail.com");
+    Mockito.doThrow(new MailSendException(Map.of(second, new Exception("busy"))))
+        .when(javaMailSender).send(first, second);
+
+    dispatcher.deliver(Arrays.asList(first, second));
+
+    Mockito.verify(javaMailSender).send(new SimpleMailMessage[] { second });
+    Assertions.assertThat(meterRegistry.get("mail.retries").counter().count()).isEqualTo(1);
+    Assertions.assertThat(meterRegistry.get("mail.sent").counter().count()).isEqualTo(2);
+    Mockito.verify(deadLetterRepository, Mockito.never()).save(Mockito.any());
+  }
+
+  @Test
+  @DisplayName("Should be able to store a dead letter when the attempts run out")
+  void deadLetterTest() throws Exception {
+    SimpleMailMessage message = message("a@mail.com");
+    Mockito.doThrow(new MailSendException("connection refused")).when(javaMailSender)
+        .send(new SimpleMailMessage[] { message });
+
+    dispatcher.deliver(List.of(message));
+
+    Mockito.verify(javaMailSender, Mockito.times(3)).send(new SimpleMailMessage[] { message });
+    ArgumentCaptor<MailDeadLetter> captor = ArgumentCaptor.forClass(MailDeadLetter.class);
+    Mockito.verify(deadLetterRepository).save(captor.capture());
+    Assertions.assertThat(captor.getValue().getRecipient()).isEqualTo("a@mail.com");
+    Assertions.assertThat(captor.getValue().getAttempts()).isEqualTo(3);
+    Assertions.assertThat(captor.getValue().getError()).isEqualTo("connection refused");
+    Assertions.assertThat(meterRegistry.get("mail.dead.letters").counter().count()).isEqualTo(1);
+    Assertions.assertThat(meterRegistry.get("mail.failed").counter().count()).isEqualTo(1);
+    Assertions.assertThat(meterRegistry.get("mail.sent").counter().count()).isZero();
+  }
+
+  @Test
+  @DisplayName("Should be able to keep delivering after a batch failed with an unexpected error")
+  void unexpectedFailureTest() throws Exception {
+    SimpleMailMessage broken = message("a@mail.com");
+    SimpleMailMessage next = message("b@mail.com");
+    Mockito.doThrow(new IllegalStateException("no host")).when(javaMailSender)
+        .send(new SimpleMailMessage[] { broken });
+    dispatcher.start();
+    try {
+      dispatcher.dispatch(List.of(broken));
+      Mockito.verify(deadLetterRepository, Mockito.timeout(5000)).save(Mockito.any());
+      dispatcher.dispatch(List.of(next));
+
+      Mockito.verify(javaMailSender, Mockito.timeout(5000)).send(new SimpleMailMessage[] { next });
+    } finally {
+      dispatcher.stop();
+    }
+    Assertions.assertThat(meterRegistry.get("mail.failed").counter().count()).isEqualTo(1);
+    Assertions.assertThat(meterRegistry.get("mail.sent").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should be able to space out permits to the configured rate")
+  void tokenBucketTest() {
+    TokenBucket bucket = new TokenBucket(10);
+    long now = System.nanoTime();
+
+    Assertions.assertThat(bucket.reserve(5, now)).isEqualTo(0);
+    Assertions.assertThat(bucket.reserve(1, now)).isEqualTo(500_000_000L);
+    Assertions.assertThat(bucket.reserve(1, now + 2_000_000_000L)).isEqualTo(0);
+  }
+
+  private SimpleMailMessage message(String to) {
+    SimpleMailMessage message = new SimpleMailMessage();
+    message.setTo(to);
+    message.setSubject("Late");
+    message.setText("late");
+    return message;
+  }
+}
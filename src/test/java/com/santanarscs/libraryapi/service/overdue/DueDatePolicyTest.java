@@ -0,0 +1,54 @@
+package com.santanarscs.libraryapi.service.overdue;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.santanarscs.libraryapi.model.entity.Loan;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+public class DueDatePolicyTest {
+
+  static final LocalDate WEDNESDAY = LocalDate.of(2022, 6, 8);
+
+  @Test
+  @DisplayName("Should be able to set the due date a loan period after the loan")
+  void dueDateTest() {
+    DueDatePolicy policy = new DueDatePolicy(Duration.ofDays(4), Set.of());
+
+    Assertions.assertThat(policy.dueDate(Loan.builder().loanDate(WEDNESDAY).build()))
+        .isEqualTo(WEDNESDAY.plusDays(4));
+  }
+
+  @Test
+  @DisplayName("Should be able to move a due date off the days the library is closed")
+  void closedDaysTest() {
+    DueDatePolicy policy = new DueDatePolicy(Duration.ofDays(4), EnumSet.of(DayOfWeek.SUNDAY, DayOfWeek.MONDAY));
+
+    Assertions.assertThat(policy.dueDate(Loan.builder().loanDate(WEDNESDAY).build()))
+        .isEqualTo(WEDNESDAY.plusDays(6))
+        .matches(date -> date.getDayOfWeek() == DayOfWeek.TUESDAY);
+  }
+
+  @Test
+  @DisplayName("Should be able to tell a loan due today is not overdue yet")
+  void overdueUntilTest() {
+    Assertions.assertThat(DueDatePolicy.overdueUntil(WEDNESDAY)).isEqualTo(WEDNESDAY.minusDays(1));
+  }
+
+  @Test
+  @DisplayName("Should not accept a loan period under a day or a library never open")
+  void invalidPolicyTest() {
+    Assertions.assertThatThrownBy(() -> new DueDatePolicy(Duration.ofHours(12), Set.of()))
+        .isInstanceOf(IllegalArgumentException.class);
+    Assertions.assertThatThrownBy(() -> new DueDatePolicy(Duration.ofDays(4), EnumSet.allOf(DayOfWeek.class)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,131 @@
+package com.santanarscs.libraryapi.service.overdue;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.santanarscs.libraryapi.model.repository.LoanRepository;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class OverdueTrackerTest {
+
+  static final LocalDate TODAY = LocalDate.now();
+
+  OverdueTracker tracker;
+
+  MeterRegistry meterRegistry;
+
+  List<Object> events;
+
+  @MockBean
+  LoanRepository repository;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    events = new ArrayList<>();
+    tracker = tracker(true);
+  }
+
+  @Test
+  @DisplayName("Should publish the loans that reached their due date and not the returned ones")
+  void tickTest() {
+    tracker.track(1L, TODAY.plusDays(1));
+    tracker.track(2L, TODAY.plusDays(1));
+    tracker.track(3L, TODAY.plusDays(2));
+    tracker.untrack(2L);
+
+    Assertions.assertThat(tracker.tick(startOf(TODAY.plusDays(1)) - 1)).isEmpty();
+    Assertions.assertThat(tracker.tick(startOf(TODAY.plusDays(1)))).containsExactly(1L);
+    Assertions.assertThat(tracker.tick(startOf(TODAY.plusDays(3)))).containsExactly(3L);
+
+    Assertions.assertThat(events).hasSize(2);
+    Assertions.assertThat(((LoansOverdueEvent) events.get(0)).getLoanIds()).containsExactly(1L);
+    Assertions.assertThat(meterRegistry.get("loans.overdue.tracked").gauge().value()).isZero();
+  }
+
+  @Test
+  @DisplayName("Should fire the loans handed back for a retry on the next tick")
+  void retryTest() {
+    tracker.track(1L, TODAY.plusDays(1));
+    Assertions.assertThat(tracker.tick(startOf(TODAY.plusDays(1)))).containsExactly(1L);
+
+    tracker.retry(List.of(1L));
+
+    Assertions.assertThat(tracker.tick(startOf(TODAY.plusDays(1)) + Duration.ofMinutes(1).toMillis()))
+        .containsExactly(1L);
+  }
+
+  @Test
+  @DisplayName("Should load the open loans and keep what was tracked while loading")
+  void loadTest() {
+    Mockito.when(repository.streamOpenLoansDueAfter(TODAY)).thenReturn(Stream.of(
+        dueLoan(1L, TODAY.plusDays(1)), dueLoan(2L, TODAY.plusDays(1)), dueLoan(3L, TODAY.plusDays(1))));
+    tracker.untrack(2L);
+    tracker.track(3L, TODAY.plusDays(5));
+
+    tracker.load(TODAY);
+    tracker.track(4L, TODAY.plusDays(1));
+
+    Assertions.assertThat(tracker.size()).isEqualTo(3);
+    Assertions.assertThat(tracker.tick(startOf(TODAY.plusDays(1)))).containsExactlyInAnyOrder(1L, 4L);
+    Assertions.assertThat(tracker.tick(startOf(TODAY.plusDays(5)))).containsExactly(3L);
+  }
+
+  @Test
+  @DisplayName("Should not track anything when disabled")
+  void disabledTest() {
+    tracker = tracker(false);
+
+    tracker.track(1L, TODAY.plusDays(1));
+
+    Assertions.assertThat(tracker.size()).isZero();
+    Assertions.assertThat(tracker.tick(startOf(TODAY.plusDays(2)))).isEmpty();
+    Assertions.assertThat(events).isEmpty();
+  }
+
+  private OverdueTracker tracker(boolean enabled) {
+    return new OverdueTracker(repository, new TransactionTemplate(transactionManager), events::add, meterRegistry,
+        Duration.ofMinutes(1), enabled);
+  }
+
+  private long startOf(LocalDate date) {
+    return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  private LoanRepository.DueLoan dueLoan(Long id, LocalDate dueDate) {
+    return new LoanRepository.DueLoan() {
+      @Override
+      public Long getId() {
+        return id;
+      }
+
+      @Override
+      public LocalDate getDueDate() {
+        return dueDate;
+      }
+    };
+  }
+}
@@ -0,0 +1,150 @@
+package com.santanarscs.libraryapi.service.overdue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+public class TimerWheelTest {
+
+  static final long TICK = 1000;
+
+  TimerWheel wheel;
+  List<Long> fired;
+
+  @BeforeEach
+  public void setup() {
+    wheel = new TimerWheel(TICK, 4, 3, 0);
+    fired = new ArrayList<>();
+  }
+
+  @Test
+  @DisplayName("Should fire an id at the first tick at or after its deadline and not before")
+  void fireTest() {
+    wheel.schedule(1L, 2000);
+    wheel.schedule(2L, 2500);
+
+    assertThat(wheel.advance(1999, fired::add)).isZero();
+    assertThat(wheel.advance(2000, fired::add)).isEqualTo(1);
+    assertThat(fired).containsExactly(1L);
+    assertThat(wheel.advance(2999, fired::add)).isZero();
+    assertThat(wheel.advance(3000, fired::add)).isEqualTo(1);
+    assertThat(fired).containsExactly(1L, 2L);
+    assertThat(wheel.size()).isZero();
+  }
+
+  @Test
+  @DisplayName("Should fire deadlines beyond the lowest level and beyond the top level")
+  void cascadeTest() {
+    wheel.schedule(1L, 5 * TICK);
+    wheel.schedule(2L, 17 * TICK);
+    wheel.schedule(3L, 64 * TICK);
+    wheel.schedule(4L, 200 * TICK);
+
+    for (long tick = 1; tick <= 200; tick++) {
+      int before = fired.size();
+      wheel.advance(tick * TICK, fired::add);
+      if (tick == 5 || tick == 17 || tick == 64 || tick == 200) {
+        assertThat(fired).hasSize(before + 1);
+      } else {
+        assertThat(fired).hasSize(before);
+      }
+    }
+    assertThat(fired).containsExactly(1L, 2L, 3L, 4L);
+  }
+
+  @Test
+  @DisplayName("Should not fire a cancelled id and fire a rescheduled one once, at its new deadline")
+  void cancelTest() {
+    wheel.schedule(1L, 10 * TICK);
+    wheel.schedule(2L, 10 * TICK);
+    wheel.schedule(3L, 10 * TICK);
+
+    assertThat(wheel.cancel(1L)).isTrue();
+    assertThat(wheel.cancel(1L)).isFalse();
+    wheel.schedule(2L, 40 * TICK);
+    wheel.schedule(3L, 5 * TICK);
+    assertThat(wheel.size()).isEqualTo(2);
+
+    wheel.advance(5 * TICK, fired::add);
+    assertThat(fired).containsExactly(3L);
+    wheel.advance(39 * TICK, fired::add);
+    assertThat(fired).containsExactly(3L);
+    wheel.advance(100 * TICK, fired::add);
+    assertThat(fired).containsExactly(3L, 2L);
+    assertThat(wheel.contains(2L)).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should keep memory bounded when ids churn between ticks")
+  void churnTest() {
+    wheel.schedule(1L, 30 * TICK);
+    for (int i = 0; i < 100_000; i++) {
+      wheel.schedule(2L, (10 + i % 40) * TICK);
+      wheel.cancel(2L);
+    }
+    wheel.schedule(2L, 20 * TICK);
+
+    assertThat(wheel.estimatedBytes()).isLessThan(64 * 1024);
+    wheel.advance(100 * TICK, fired::add);
+    assertThat(fired).containsExactly(2L, 1L);
+  }
+
+  @Test
+  @DisplayName("Should fire a deadline already passed on the next advance")
+  void pastDeadlineTest() {
+    wheel.advance(50 * TICK, fired::add);
+    wheel.schedule(1L, 10 * TICK);
+
+    assertThat(wheel.advance(50 * TICK, fired::add)).isEqualTo(1);
+    assertThat(fired).containsExactly(1L);
+  }
+
+  @Test
+  @DisplayName("Should fire every id once, at the first advance past its deadline")
+  void randomDeadlinesTest() {
+    Random random = new Random(42);
+    Map<Long, Long> deadlines = new HashMap<>();
+    for (long id = 1; id <= 10_000; id++) {
+      long deadline = random.nextInt(1_000_000);
+      deadlines.put(id, deadline);
+      wheel.schedule(id, deadline);
+    }
+    for (long id = 1; id <= 10_000; id += 7) {
+      wheel.cancel(id);
+      deadlines.remove(id);
+    }
+
+    long previous = 0;
+    long now = 0;
+    Map<Long, Long> firedAt = new HashMap<>();
+    Map<Long, Long> firedAfter = new HashMap<>();
+    while (now < 1_000_000) {
+      previous = now;
+      now += random.nextInt(5 * (int) TICK);
+      long at = now;
+      long after = previous;
+      wheel.advance(now, id -> {
+        assertThat(firedAt.put(id, at)).isNull();
+        firedAfter.put(id, after);
+      });
+    }
+
+    assertThat(firedAt.keySet()).isEqualTo(deadlines.keySet());
+    firedAt.forEach((id, at) -> {
+      long deadlineTick = (deadlines.get(id) + TICK - 1) / TICK * TICK;
+      assertThat(at).isGreaterThanOrEqualTo(deadlineTick);
+      assertThat(firedAfter.get(id)).isLessThan(deadlineTick);
+    });
+    assertThat(wheel.size()).isZero();
+  }
+}
@@ -0,0 +1,122 @@
+package com.santanarscs.libraryapi.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("test")
+public class BookSearchIndexTest {
+
+  BookSearchIndex index;
+
+  @BeforeEach
+  public void setup() {
+    index = new BookSearchIndex();
+    index.clear();
+    index.load(createBook(1L, "The Lord of the Rings", "J. R. R. Tolkien", "001"));
+    index.load(createBook(2L, "Rings", "Someone", "002"));
+    index.load(createBook(3L, "Boring Stories", "Tolkien Fan", "003"));
+    index.load(createBook(4L, "Dune", "Frank Herbert", "004"));
+    index.ready();
+  }
+
+  @Test
+  @DisplayName("Should be able to find books containing a term ignoring case")
+  void searchTest() {
+    BookSearchIndex.Hits hits = index.search(Book.builder().title("RING").build(), 0, 10);
+
+    assertThat(hits.getTotal()).isEqualTo(3);
+    assertThat(hits.getIds()).containsExactlyInAnyOrder(1L, 2L, 3L);
+  }
+
+  @Test
+  @DisplayName("Should be able to rank exact, prefix and word matches first")
+  void rankingTest() {
+    index.add(createBook(5L, "Rings of Power", "Someone", "005"));
+
+    BookSearchIndex.Hits hits = index.search(Book.builder().title("rings").build(), 0, 10);
+
+    assertThat(hits.getIds()).containsExactly(2L, 5L, 1L);
+  }
+
+  @Test
+  @DisplayName("Should be able to match every field of the filter")
+  void searchManyFieldsTest() {
+    BookSearchIndex.Hits hits = index.search(Book.builder().title("ring").author("tolkien").isbn("1").build(), 0,
+        10);
+
+    assertThat(hits.getIds()).containsExactly(1L);
+  }
+
+  @Test
+  @DisplayName("Should be able to page the ranked hits")
+  void pageTest() {
+    Book filter = Book.builder().author("o").title("rin").build();
+
+    assertThat(index.search(filter, 0, 2).getIds()).containsExactly(2L, 1L);
+    assertThat(index.search(filter, 2, 2).getIds()).containsExactly(3L);
+    assertThat(index.search(filter, 4, 2).getIds()).isEmpty();
+    assertThat(index.search(filter, 4, 2).getTotal()).isEqualTo(3);
+  }
+
+  @Test
+  @DisplayName("Should be able to follow updates and deletes")
+  void updateAndRemoveTest() {
+    index.add(createBook(4L, "Dune Messiah", "Frank Herbert", "004"));
+    index.remove(createBook(2L, "Rings", "Someone", "002"));
+
+    assertThat(index.search(Book.builder().title("messiah").build(), 0, 10).getIds()).containsExactly(4L);
+    assertThat(index.search(Book.builder().title("rings").build(), 0, 10).getIds()).containsExactly(1L);
+    assertThat(index.size()).isEqualTo(3);
+  }
+
+  @Test
+  @DisplayName("Should not count a book twice after its title changes back")
+  void noDuplicatedHitsTest() {
+    index.add(createBook(4L, "Other", "Frank Herbert", "004"));
+    index.add(createBook(4L, "Dune", "Frank Herbert", "004"));
+    index.add(createBook(4L, "Other", "Frank Herbert", "004"));
+    index.add(createBook(4L, "Dune", "Frank Herbert", "004"));
+
+    BookSearchIndex.Hits hits = index.search(Book.builder().title("dune").build(), 0, 10);
+
+    assertThat(hits.getTotal()).isEqualTo(1);
+    assertThat(hits.getIds()).containsExactly(4L);
+  }
+
+  @Test
+  @DisplayName("Should keep live changes made during a rebuild")
+  void rebuildRaceTest() {
+    index.clear();
+    index.add(createBook(1L, "New Title", "J. R. R. Tolkien", "001"));
+    index.remove(createBook(2L, "Rings", "Someone", "002"));
+    index.load(createBook(1L, "The Lord of the Rings", "J. R. R. Tolkien", "001"));
+    index.load(createBook(2L, "Rings", "Someone", "002"));
+    index.ready();
+
+    assertThat(index.search(Book.builder().title("new").build(), 0, 10).getIds()).containsExactly(1L);
+    assertThat(index.search(Book.builder().title("rings").build(), 0, 10).getIds()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should only answer filters with a term of at least three characters and no id once ready")
+  void canSearchTest() {
+    assertThat(index.canSearch(Book.builder().title("du").build())).isFalse();
+    assertThat(index.canSearch(Book.builder().title("du").author("frank").build())).isTrue();
+    assertThat(index.canSearch(new Book())).isFalse();
+    assertThat(index.canSearch(Book.builder().id(5L).title("dune").build())).isFalse();
+
+    index.clear();
+
+    assertThat(index.canSearch(Book.builder().title("dune").build())).isFalse();
+  }
+
+  private Book createBook(Long id, String title, String author, String isbn) {
+    return Book.builder().id(id).title(title).author(author).isbn(isbn).build();
+  }
+}
@@ -0,0 +1,82 @@
+package com.santanarscs.libraryapi.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.unit.DataSize;
+
+@ActiveProfiles("test")
+public class BookSuggestIndexTest {
+
+  BookSuggestIndex index;
+
+  @BeforeEach
+  public void setup() {
+    index = new BookSuggestIndex(DataSize.ofMegabytes(1));
+    index.clear();
+    index.load(createBook(1L, "Dune", "Frank Herbert"));
+    index.load(createBook(2L, "Dune Messiah", "Frank Herbert"));
+    index.load(createBook(3L, "Foundation", "Isaac Asimov"));
+    index.load(createBook(4L, "dune", "Someone Else"));
+    index.ready();
+  }
+
+  @Test
+  @DisplayName("Should be able to suggest distinct titles and authors by prefix ignoring case")
+  void suggestTest() {
+    assertThat(index.suggestTitles("DU", 10)).containsExactly("Dune", "Dune Messiah");
+    assertThat(index.suggestTitles("du", 1)).containsExactly("Dune");
+    assertThat(index.suggestAuthors("f", 10)).containsExactly("Frank Herbert");
+    assertThat(index.suggestTitles("x", 10)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should be able to drop a value once no book uses it")
+  void updateAndRemoveTest() {
+    index.add(createBook(2L, "Children of Dune", "Frank Herbert"));
+    index.remove(createBook(3L, "Foundation", "Isaac Asimov"));
+
+    assertThat(index.suggestTitles("dune", 10)).containsExactly("Dune");
+    assertThat(index.suggestTitles("ch", 10)).containsExactly("Children of Dune");
+    assertThat(index.suggestTitles("fo", 10)).isEmpty();
+    assertThat(index.suggestAuthors("i", 10)).isEmpty();
+
+    index.remove(createBook(1L, "Dune", "Frank Herbert"));
+
+    assertThat(index.suggestTitles("dune", 10)).containsExactly("Dune");
+  }
+
+  @Test
+  @DisplayName("Should keep live changes made during a rebuild")
+  void rebuildRaceTest() {
+    index.clear();
+    index.add(createBook(1L, "Dune Deluxe", "Frank Herbert"));
+    index.load(createBook(1L, "Dune", "Frank Herbert"));
+    index.ready();
+
+    assertThat(index.suggestTitles("dune", 10)).containsExactly("Dune Deluxe");
+  }
+
+  @Test
+  @DisplayName("Should stop adding new values once the memory budget is spent")
+  void memoryBudgetTest() {
+    index = new BookSuggestIndex(DataSize.ofBytes(1000));
+    index.clear();
+    for (long id = 1; id <= 20; id++) {
+      index.load(createBook(id, "Title " + id, "Author"));
+    }
+    index.ready();
+
+    assertThat(index.suggestTitles("title", 50).size()).isBetween(1, 19);
+    assertThat(index.suggestAuthors("author", 10)).containsExactly("Author");
+  }
+
+  private Book createBook(Long id, String title, String author) {
+    return Book.builder().id(id).title(title).author(author).build();
+  }
+}
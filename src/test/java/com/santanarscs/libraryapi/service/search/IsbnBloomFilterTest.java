@@ -0,0 +1,89 @@
+package com.santanarscs.libraryapi.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ActiveProfiles("test")
+public class IsbnBloomFilterTest {
+
+  MeterRegistry meterRegistry;
+  IsbnBloomFilter filter;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    filter = new IsbnBloomFilter(meterRegistry, 10_000, 0.01);
+  }
+
+  @Test
+  @DisplayName("Should never answer no for an added isbn")
+  void noFalseNegativesTest() {
+    for (int i = 0; i < 10_000; i++) {
+      filter.load(createBook("ISBN-" + i));
+    }
+    filter.ready();
+
+    for (int i = 0; i < 10_000; i++) {
+      assertThat(filter.mightContain("ISBN-" + i)).isTrue();
+    }
+  }
+
+  @Test
+  @DisplayName("Should keep the false positive rate near the configured one")
+  void falsePositiveRateTest() {
+    for (int i = 0; i < 10_000; i++) {
+      filter.add(createBook("ISBN-" + i));
+    }
+
+    int falsePositives = 0;
+    for (int i = 0; i < 100_000; i++) {
+      if (filter.mightContain("OTHER-" + i)) {
+        falsePositives++;
+      }
+    }
+
+    assertThat(falsePositives / 100_000d).isLessThan(0.02);
+    assertThat(filter.expectedFalsePositiveRate()).isBetween(0.005, 0.015);
+  }
+
+  @Test
+  @DisplayName("Should be able to forget every isbn on clear")
+  void clearTest() {
+    filter.add(createBook("001"));
+    filter.ready();
+
+    filter.clear();
+
+    assertThat(filter.isReady()).isFalse();
+    assertThat(filter.mightContain("001")).isFalse();
+    assertThat(filter.fill()).isZero();
+  }
+
+  @Test
+  @DisplayName("Should be able to publish memory and check results")
+  void metricsTest() {
+    filter.add(createBook("001"));
+    filter.mightContain("001");
+    filter.mightContain("002");
+    filter.falsePositives(1);
+
+    assertThat(meterRegistry.get("isbn.filter.memory").gauge().value()).isBetween(10_000d, 14_000d);
+    assertThat(meterRegistry.get("isbn.filter.checks").tag("result", "positive").counter().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("isbn.filter.checks").tag("result", "false_positive").counter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("isbn.filter.fill").gauge().value()).isPositive();
+  }
+
+  private Book createBook(String isbn) {
+    return Book.builder().isbn(isbn).build();
+  }
+}
@@ -0,0 +1,98 @@
+package com.santanarscs.libraryapi.service.stats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.santanarscs.libraryapi.model.entity.Book;
+import com.santanarscs.libraryapi.model.entity.Loan;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ActiveProfiles("test")
+public class LoanStatisticsTest {
+
+  static final LocalDate MONDAY = LocalDate.of(2022, 6, 6);
+
+  LoanStatistics statistics;
+  MeterRegistry meterRegistry;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    statistics = new LoanStatistics(meterRegistry);
+  }
+
+  @Test
+  @DisplayName("Should be able to count loans as they are made and returned")
+  void countTest() {
+    statistics.loaned(createLoan(1L, "Jhon", MONDAY));
+    statistics.loaned(createLoan(1L, "Mary", MONDAY.plusDays(1)));
+    statistics.loaned(createLoan(2L, "Jhon", MONDAY.plusDays(2)));
+    statistics.returned(MONDAY);
+
+    assertThat(statistics.openLoans()).isEqualTo(2);
+    assertThat(statistics.totalLoans()).isEqualTo(3);
+    assertThat(statistics.openLoansDueUntil(MONDAY.plusDays(1))).isEqualTo(1);
+    assertThat(statistics.loansOfBook(1L)).isEqualTo(2);
+    assertThat(statistics.loansOfCustomer("Jhon")).isEqualTo(2);
+    assertThat(statistics.loansOfCustomer("Nobody")).isZero();
+    assertThat(meterRegistry.get("loans.open").gauge().value()).isEqualTo(2);
+
+    statistics.reopened(MONDAY);
+
+    assertThat(statistics.openLoansDueUntil(MONDAY.plusDays(1))).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Should not lose counts under concurrent loans")
+  void concurrentCountTest() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 10_000; i++) {
+      long book = i % 10;
+      executor.execute(() -> statistics.loaned(createLoan(book, "Jhon", MONDAY)));
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(statistics.totalLoans()).isEqualTo(10_000);
+    assertThat(statistics.openLoansDueUntil(MONDAY)).isEqualTo(10_000);
+    assertThat(statistics.loansOfBook(3L)).isEqualTo(1_000);
+  }
+
+  @Test
+  @DisplayName("Should correct drifted counters and keep what was counted during the check")
+  void correctTest() {
+    statistics.loaned(createLoan(1L, "Jhon", MONDAY));
+    LoanStatistics.Counts before = statistics.counts();
+    statistics.loaned(createLoan(2L, "Mary", MONDAY));
+    LoanStatistics.Counts database = new LoanStatistics.Counts(3, 4, Map.of(MONDAY, 3L),
+        Map.of(1L, 2L, 3L, 2L), Map.of("Jhon", 4L));
+
+    long drift = statistics.correct(before, database);
+
+    assertThat(drift).isEqualTo(2 + 3 + 2 + 3 + 3);
+    assertThat(statistics.openLoans()).isEqualTo(4);
+    assertThat(statistics.totalLoans()).isEqualTo(5);
+    assertThat(statistics.loansOfBook(1L)).isEqualTo(2);
+    assertThat(statistics.loansOfBook(2L)).isEqualTo(1);
+    assertThat(statistics.loansOfBook(3L)).isEqualTo(2);
+    assertThat(statistics.loansOfCustomer("Mary")).isEqualTo(1);
+    assertThat(statistics.correct(statistics.counts(), statistics.counts())).isZero();
+  }
+
+  private Loan createLoan(Long bookId, String customer, LocalDate dueDate) {
+    return Loan.builder().book(Book.builder().id(bookId).build()).customer(customer).loanDate(dueDate.minusDays(4))
+        .dueDate(dueDate).returned(false).build();
+  }
+}